@@ -0,0 +1,77 @@
+package com.elytraenchants;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted random choice in constant time (Vose's alias method). Built once
+ * from the weights; each sample is one uniform index and one coin flip, with
+ * no allocation.
+ */
+final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Build a table over indices 0..weights.length-1; weights must be
+     * non-negative with a positive sum
+     */
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        double total = 0.0;
+        for (double weight : weights) {
+            if (weight < 0.0 || Double.isNaN(weight)) {
+                throw new IllegalArgumentException("negative weight " + weight);
+            }
+            total += weight;
+        }
+        if (n == 0 || total <= 0.0) {
+            throw new IllegalArgumentException("weights must have a positive sum");
+        }
+        probability = new double[n];
+        alias = new int[n];
+
+        // Scale so the average bucket is 1, then pair underfull with overfull buckets
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is full up to rounding error
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+    }
+
+    int size() {
+        return probability.length;
+    }
+
+    int sample(ThreadLocalRandom random) {
+        int i = random.nextInt(probability.length);
+        return random.nextDouble() < probability[i] ? i : alias[i];
+    }
+}
@@ -0,0 +1,46 @@
+package com.elytraenchants;
+
+/**
+ * Elytra anvil enchantment merge over enchant vectors, with no item or server
+ * access, so it can be checked outside a server. Elytra + elytra keeps the
+ * highest level of each enchantment; a book or chestplate copies its allowed
+ * levels over the elytra's, lower ones included.
+ */
+final class AnvilMerge {
+
+    /** Returned where the plugin leaves the vanilla result; never a valid vector */
+    static final long UNCHANGED = -1L;
+
+    enum Input {
+        ELYTRA,
+        BOOK,
+        CHESTPLATE
+    }
+
+    private AnvilMerge() {
+    }
+
+    /**
+     * Merge the second input's vector into the elytra's. allowedSlots holds a
+     * bit per {@link EnchantVector} slot the policy allows; elytra + elytra
+     * ignores it
+     */
+    static long merge(Input input, long first, long second, int allowedSlots) {
+        long merged = first;
+        boolean changed = false;
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            int level = EnchantVector.level(second, slot);
+            if (input == Input.ELYTRA) {
+                int current = EnchantVector.level(first, slot);
+                changed |= current > 0 || level > 0;
+                if (level > current) {
+                    merged = EnchantVector.with(merged, slot, level);
+                }
+            } else if (level > 0 && (allowedSlots & 1 << slot) != 0) {
+                merged = EnchantVector.with(merged, slot, level);
+                changed = true;
+            }
+        }
+        return changed ? merged : UNCHANGED;
+    }
+}
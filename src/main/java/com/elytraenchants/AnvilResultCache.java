@@ -0,0 +1,84 @@
+package com.elytraenchants;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Recent anvil results by input items, rename text and policy (main thread
+ * only). The client triggers a new prepare event for every keystroke and slot
+ * change, often with inputs it has just sent, and under heavy load results are
+ * served from here alone. Keys hold copies of the inputs, so later changes to
+ * the inventory items cannot corrupt them.
+ */
+final class AnvilResultCache {
+
+    private static final int MAX_ENTRIES = 256;
+
+    /**
+     * A cached computation; outcome is null when the vanilla result stands
+     */
+    static final class Entry {
+        final ElytraEnchantsPlugin.AnvilOutcome outcome;
+
+        private Entry(ElytraEnchantsPlugin.AnvilOutcome outcome) {
+            this.outcome = outcome;
+        }
+    }
+
+    private static final class Key {
+        private final ItemStack first;
+        private final ItemStack second;
+        private final String rename;
+        private final CompiledPolicy policy;
+        private final int hash;
+
+        Key(ItemStack first, ItemStack second, String rename, CompiledPolicy policy) {
+            this.first = first;
+            this.second = second;
+            this.rename = rename == null ? "" : rename;
+            this.policy = policy;
+            this.hash = Objects.hash(first, second, this.rename, System.identityHashCode(policy));
+        }
+
+        Key copy() {
+            return new Key(first.clone(), second == null ? null : second.clone(), rename, policy);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && policy == other.policy
+                && rename.equals(other.rename) && first.equals(other.first) && Objects.equals(second, other.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * The cached result for these inputs, or null if they were not seen recently
+     */
+    Entry get(ItemStack first, ItemStack second, String rename, CompiledPolicy policy) {
+        return entries.get(new Key(first, second, rename, policy));
+    }
+
+    void put(ItemStack first, ItemStack second, String rename, CompiledPolicy policy,
+             ElytraEnchantsPlugin.AnvilOutcome outcome) {
+        entries.put(new Key(first, second, rename, policy).copy(), new Entry(outcome));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,59 @@
+package com.elytraenchants;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockDispenseArmorEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+
+/**
+ * Drops the cached elytra state of players whose chest slot may have changed.
+ * Every handler here fires constantly during normal play and does nothing
+ * but mark the cache entry dirty.
+ */
+final class ArmorChangeListener implements Listener {
+
+    private final WornElytraCache wornElytraCache;
+
+    ArmorChangeListener(WornElytraCache wornElytraCache) {
+        this.wornElytraCache = wornElytraCache;
+    }
+
+    // The events below may change a player's chest slot, so the cached elytra state is dropped
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        wornElytraCache.markDirty(event.getWhoClicked().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        wornElytraCache.markDirty(event.getWhoClicked().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        if (event.getItem() != null) {
+            wornElytraCache.markDirty(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemBreak(PlayerItemBreakEvent event) {
+        wornElytraCache.markDirty(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        wornElytraCache.markDirty(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDispenseArmor(BlockDispenseArmorEvent event) {
+        wornElytraCache.markDirty(event.getTargetEntity().getUniqueId());
+    }
+}
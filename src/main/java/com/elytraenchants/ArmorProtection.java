@@ -0,0 +1,112 @@
+package com.elytraenchants;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Vanilla Enchantment Protection Factor (EPF) over all worn armor, elytra
+ * included. Per item: Protection gives its level against everything, Fire,
+ * Blast and Projectile Protection twice their level and Feather Falling three
+ * times its level against their own damage types. The total is capped at 20
+ * and each point removes 4% of the damage left after armor.
+ */
+final class ArmorProtection {
+
+    static final int MAX_EPF = 20;
+
+    private static final EntityDamageEvent.DamageCause[] CAUSES = EntityDamageEvent.DamageCause.values();
+
+    // Damage type flags by cause ordinal, resolved by name so newer causes on newer servers still map
+    private static final int FIRE = 1;
+    private static final int EXPLOSION = 1 << 1;
+    private static final int PROJECTILE = 1 << 2;
+    private static final int FALL = 1 << 3;
+    private static final int BYPASS = 1 << 4;
+    private static final int[] TYPES = new int[CAUSES.length];
+
+    static {
+        for (EntityDamageEvent.DamageCause cause : CAUSES) {
+            switch (cause.name()) {
+                case "FIRE":
+                case "FIRE_TICK":
+                case "LAVA":
+                case "HOT_FLOOR":
+                    TYPES[cause.ordinal()] = FIRE;
+                    break;
+                case "BLOCK_EXPLOSION":
+                case "ENTITY_EXPLOSION":
+                    TYPES[cause.ordinal()] = EXPLOSION;
+                    break;
+                case "PROJECTILE":
+                    TYPES[cause.ordinal()] = PROJECTILE;
+                    break;
+                case "FALL":
+                    TYPES[cause.ordinal()] = FALL;
+                    break;
+                case "VOID":
+                case "STARVATION":
+                case "SUICIDE":
+                    // Bypasses enchantment protection entirely
+                    TYPES[cause.ordinal()] = BYPASS;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private ArmorProtection() {
+    }
+
+    /**
+     * Combined EPF for every damage cause, indexed by cause ordinal.
+     * Items may be null; this reads each item's enchantments once.
+     */
+    static byte[] compute(ItemStack... armor) {
+        int protection = 0;
+        int fire = 0;
+        int blast = 0;
+        int projectile = 0;
+        int fall = 0;
+        for (ItemStack item : armor) {
+            if (item == null || !item.hasItemMeta()) {
+                continue;
+            }
+            protection += item.getEnchantmentLevel(Enchantment.PROTECTION_ENVIRONMENTAL);
+            fire += item.getEnchantmentLevel(Enchantment.PROTECTION_FIRE);
+            blast += item.getEnchantmentLevel(Enchantment.PROTECTION_EXPLOSIONS);
+            projectile += item.getEnchantmentLevel(Enchantment.PROTECTION_PROJECTILE);
+            fall += item.getEnchantmentLevel(Enchantment.PROTECTION_FALL);
+        }
+        return fromLevels(protection, fire, blast, projectile, fall);
+    }
+
+    /**
+     * Combined EPF by cause ordinal from protection levels summed over all
+     * pieces; split out so the fuzzer can run it without ItemStacks
+     */
+    static byte[] fromLevels(int protection, int fire, int blast, int projectile, int fall) {
+        byte[] epf = new byte[CAUSES.length];
+        for (int i = 0; i < epf.length; i++) {
+            int type = TYPES[i];
+            if (type == BYPASS) {
+                continue;
+            }
+            int total = protection;
+            if (type == FIRE) total += fire * 2;
+            else if (type == EXPLOSION) total += blast * 2;
+            else if (type == PROJECTILE) total += projectile * 2;
+            else if (type == FALL) total += fall * 3;
+            epf[i] = (byte) Math.min(MAX_EPF, total);
+        }
+        return epf;
+    }
+
+    /**
+     * Fraction of damage removed by an EPF value
+     */
+    static double reduction(int epf) {
+        return epf / 25.0;
+    }
+}
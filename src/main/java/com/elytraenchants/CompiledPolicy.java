@@ -0,0 +1,58 @@
+package com.elytraenchants;
+
+import com.elytraenchants.api.EnchantPolicy;
+import org.bukkit.enchantments.Enchantment;
+
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the allowed enchantments for the whole server or
+ * one world, rebuilt on every load
+ */
+final class CompiledPolicy implements EnchantPolicy {
+
+    private final Set<Enchantment> allowed;
+    private final int version;
+    private final boolean enabled;
+    private final int allowedSlots;
+
+    CompiledPolicy(Set<Enchantment> allowed, int version, boolean enabled) {
+        this.allowed = Set.copyOf(allowed);
+        this.version = version;
+        this.enabled = enabled;
+        int slots = 0;
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            if (this.allowed.contains(EnchantVector.enchantment(slot))) {
+                slots |= 1 << slot;
+            }
+        }
+        this.allowedSlots = slots;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isAllowed(Enchantment enchantment) {
+        return allowed.contains(enchantment);
+    }
+
+    @Override
+    public Set<Enchantment> getAllowedEnchantments() {
+        return allowed;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Allowed enchantments as a bit per {@link EnchantVector} slot
+     */
+    int allowedSlots() {
+        return allowedSlots;
+    }
+}
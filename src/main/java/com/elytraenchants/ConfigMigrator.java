@@ -0,0 +1,741 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+/**
+ * Brings config.yml and messages.yml up to the layout shipped in the jar,
+ * keeping user values. Only loaded when a file's version is behind the jar's.
+ */
+final class ConfigMigrator {
+
+    /**
+     * Sections whose keys are chosen by the user (world names, loot weights):
+     * the user's entries are kept as they are, never reported as deprecated
+     * and never topped up with the default entries
+     */
+    static final java.util.Set<String> FREE_FORM_SECTIONS = java.util.Set.of("worlds", "loot.enchantments");
+
+    private final JavaPlugin plugin;
+    private final DebugLog debug;
+
+    ConfigMigrator(JavaPlugin plugin, DebugLog debug) {
+        this.plugin = plugin;
+        this.debug = debug;
+    }
+
+    /**
+     * Migrate config.yml to add missing options from newer versions
+     * Preserves user values while adding new options and comments
+     */
+    void migrateConfig() {
+        try {
+            // Get the actual config file
+            File configFile = new File(plugin.getDataFolder(), "config.yml");
+            
+            if (!configFile.exists()) {
+                return; // No migration needed if file doesn't exist
+            }
+            
+            // Load the default config from the jar resource (get it twice - once for text, once for YAML)
+            InputStream defaultConfigTextStream = plugin.getResource("config.yml");
+            if (defaultConfigTextStream == null) {
+                debug.warning(DebugLog.Category.CONFIG, () -> "Could not load default config.yml from jar for migration");
+                return;
+            }
+            
+            // Read default config as text to preserve formatting
+            List<String> currentLines = new java.util.ArrayList<>(java.nio.file.Files.readAllLines(configFile.toPath()));
+            List<String> defaultLines = new java.util.ArrayList<>();
+            try (java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(defaultConfigTextStream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    defaultLines.add(line);
+                }
+            }
+            
+            // Also load as YAML to check what's missing (get resource again - getResource returns new stream)
+            InputStream defaultConfigYamlStream = plugin.getResource("config.yml");
+            YamlConfiguration defaultConfig = YamlConfiguration.loadConfiguration(
+                new InputStreamReader(defaultConfigYamlStream));
+            YamlConfiguration currentConfig = YamlConfiguration.loadConfiguration(configFile);
+            
+            // Check config version - get default version
+            int defaultVersion = defaultConfig.getInt("config_version", 1);
+            int currentVersion = currentConfig.getInt("config_version", 0); // 0 means old config without version
+            
+            // If versions match and config has version field, no migration needed
+            if (currentVersion == defaultVersion && currentConfig.contains("config_version")) {
+                return; // Config is up to date
+            }
+            
+            // Simple merge approach: Use default config structure/comments, replace values with user's where they exist
+            // This preserves all comments and formatting from default, while keeping user's custom values
+            // Deprecated keys (in user config but not in default) are automatically removed
+            List<String> mergedLines = mergeConfigs(defaultLines, currentConfig, defaultConfig);
+            
+            // Check for and log deprecated keys that were removed
+            java.util.Set<String> deprecatedKeys = findDeprecatedKeys(currentConfig, defaultConfig);
+            if (!deprecatedKeys.isEmpty()) {
+                plugin.getLogger().info("Removed deprecated config keys: " + String.join(", ", deprecatedKeys));
+            }
+            
+            // Update config version
+            updateConfigVersion(mergedLines, defaultVersion, defaultLines, "config_version");
+            
+            // Write merged config
+            java.nio.file.Files.write(configFile.toPath(), mergedLines, 
+                java.nio.charset.StandardCharsets.UTF_8);
+            
+            debug.info(DebugLog.Category.CONFIG, () -> "Config migration completed - merged with default config, preserving user values and all comments");
+            
+            // Reload config
+            plugin.reloadConfig();
+        } catch (Exception e) {
+            debug.warning(DebugLog.Category.CONFIG, () -> "Error during config migration: " + e.getMessage());
+            if (debug.isEnabled(DebugLog.Category.CONFIG)) {
+                e.printStackTrace();
+            }
+            // Don't fail plugin startup if migration has issues
+        }
+    }
+    
+    /**
+     * Merge default config (with comments) with user config (with values)
+     * Simple approach: Use default structure/comments, replace values with user's where they exist
+     */
+    List<String> mergeConfigs(List<String> defaultLines, YamlConfiguration userConfig, YamlConfiguration defaultConfig) {
+        List<String> merged = new java.util.ArrayList<>();
+        
+        // Track current path for nested keys - store both name and indent level
+        java.util.Stack<Pair<String, Integer>> pathStack = new java.util.Stack<>();
+        
+        for (int i = 0; i < defaultLines.size(); i++) {
+            String line = defaultLines.get(i);
+            String trimmed = line.trim();
+            int currentIndent = line.length() - trimmed.length();
+            
+            // Always preserve comments and blank lines
+            if (trimmed.isEmpty() || line.startsWith("#")) {
+                merged.add(line);
+                continue;
+            }
+            
+            // Pop sections we've left (based on indent level)
+            while (!pathStack.isEmpty() && currentIndent <= pathStack.peek().getValue()) {
+                pathStack.pop();
+            }
+            
+            // Check if this is a list item (starts with -)
+            if (trimmed.startsWith("-")) {
+                // This is a list item - preserve as-is (lists are handled at the parent key level)
+                merged.add(line);
+                continue;
+            }
+            
+            // Check if this is a key=value line
+            if (trimmed.contains(":") && !trimmed.startsWith("#")) {
+                int colonIndex = trimmed.indexOf(':');
+                String keyPart = trimmed.substring(0, colonIndex).trim();
+                String valuePart = trimmed.substring(colonIndex + 1).trim();
+                
+                // Build full path for nested keys
+                StringBuilder fullPathBuilder = new StringBuilder();
+                for (Pair<String, Integer> pathEntry : pathStack) {
+                    if (fullPathBuilder.length() > 0) {
+                        fullPathBuilder.append(".");
+                    }
+                    fullPathBuilder.append(pathEntry.getKey());
+                }
+                if (fullPathBuilder.length() > 0) {
+                    fullPathBuilder.append(".");
+                }
+                fullPathBuilder.append(keyPart);
+                String fullPath = fullPathBuilder.toString();
+                
+                // Check if this is a section (value is empty and next line is indented or is a list)
+                // A section key may carry an inline comment (e.g. "enchantments: # relative weights")
+                boolean isSection = valuePart.isEmpty() || valuePart.startsWith("#");
+                boolean isList = false;
+                if (isSection && i + 1 < defaultLines.size()) {
+                    // Look ahead to see if next non-comment line is indented or is a list item
+                    for (int j = i + 1; j < defaultLines.size() && j < i + 10; j++) {
+                        String nextLine = defaultLines.get(j);
+                        String nextTrimmed = nextLine.trim();
+                        if (nextTrimmed.isEmpty() || nextLine.startsWith("#")) {
+                            continue;
+                        }
+                        int nextIndent = nextLine.length() - nextTrimmed.length();
+                        if (nextTrimmed.startsWith("-")) {
+                            // This is a list
+                            isList = true;
+                            isSection = true;
+                            break;
+                        } else if (nextIndent > currentIndent) {
+                            isSection = true;
+                            break;
+                        } else {
+                            // Next line is at same or less indent - not a section
+                            break;
+                        }
+                    }
+                }
+                
+                if (isSection && FREE_FORM_SECTIONS.contains(fullPath) && userConfig.isConfigurationSection(fullPath)) {
+                    // User-defined keys - the user's entries replace the default ones
+                    appendSection(merged, keyPart, valuePart, currentIndent, userConfig.getConfigurationSection(fullPath));
+                    // Skip the default entries and comments nested under the key
+                    while (i + 1 < defaultLines.size()) {
+                        String nextLine = defaultLines.get(i + 1);
+                        String nextTrimmed = nextLine.trim();
+                        if (nextTrimmed.isEmpty() || nextLine.length() - nextTrimmed.length() <= currentIndent) {
+                            break;
+                        }
+                        i++;
+                    }
+                    continue;
+                }
+
+                if (isSection) {
+                    // This is a section - check if user has values for it
+                    if (userConfig.contains(fullPath)) {
+                        Object userValue = userConfig.get(fullPath);
+                        
+                        // If it's a list, we need to handle it specially
+                        if (isList && userValue instanceof java.util.List) {
+                            // Add the key line
+                            merged.add(line);
+                            // Add list items from user config
+                            java.util.List<?> userList = (java.util.List<?>) userValue;
+                            for (Object item : userList) {
+                                String itemStr = formatYamlValue(item);
+                                // Remove quotes if they were added (lists often don't need them)
+                                if (itemStr.startsWith("\"") && itemStr.endsWith("\"")) {
+                                    itemStr = itemStr.substring(1, itemStr.length() - 1);
+                                }
+                                merged.add(" ".repeat(currentIndent + 2) + "- " + itemStr);
+                            }
+                            // Skip the default list items and their comments - we've already added user's
+                            // Skip until we're out of the list (next line at same or less indent)
+                            while (i + 1 < defaultLines.size()) {
+                                String nextLine = defaultLines.get(i + 1);
+                                String nextTrimmed = nextLine.trim();
+                                int nextIndent = nextLine.length() - nextTrimmed.length();
+                                
+                                // If it's a comment or blank line within the list, skip it
+                                if (nextTrimmed.isEmpty() || nextLine.startsWith("#")) {
+                                    if (nextIndent > currentIndent) {
+                                        i++; // Skip comment/blank within list
+                                    } else {
+                                        break; // Comment at section level or above - end of list
+                                    }
+                                } else if (nextTrimmed.startsWith("-") && nextIndent > currentIndent) {
+                                    i++; // Skip this list item
+                                } else {
+                                    break; // End of list
+                                }
+                            }
+                            pathStack.push(new Pair<>(keyPart, currentIndent));
+                            continue;
+                        } else {
+                            // Regular section - add it and push to path stack
+                            merged.add(line);
+                            pathStack.push(new Pair<>(keyPart, currentIndent));
+                        }
+                    } else {
+                        // User doesn't have this section - use default (with all comments and list items)
+                        merged.add(line);
+                        pathStack.push(new Pair<>(keyPart, currentIndent));
+                    }
+                } else {
+                    // This is a key=value line
+                    // Skip version keys - they're handled separately by updateConfigVersion
+                    if (keyPart.equals("config_version") || keyPart.equals("messages_version") || keyPart.equals("gui_version")) {
+                        // Use default version line - it will be updated by updateConfigVersion
+                        merged.add(line);
+                    } else if (userConfig.isConfigurationSection(fullPath)
+                            && !userConfig.getConfigurationSection(fullPath).getKeys(false).isEmpty()) {
+                        // Free-form section (default is {}) - copy the user's entries verbatim
+                        appendSection(merged, keyPart, "", currentIndent, userConfig.getConfigurationSection(fullPath));
+                    } else if (userConfig.contains(fullPath)) {
+                        // User has this key - use their value but keep default's formatting
+                        Object userValue = userConfig.get(fullPath);
+                        String userValueStr = formatYamlValue(userValue);
+                        
+                        // Preserve inline comment if present
+                        String inlineComment = "";
+                        int commentIndex = valuePart.indexOf('#');
+                        if (commentIndex >= 0) {
+                            inlineComment = " " + valuePart.substring(commentIndex);
+                        }
+                        
+                        // Replace value while preserving indentation and inline comment
+                        merged.add(" ".repeat(currentIndent) + keyPart + ": " + userValueStr + inlineComment);
+                    } else {
+                        // User doesn't have this key - use default (with default value and comments)
+                        merged.add(line);
+                    }
+                }
+            } else {
+                // Not a key=value line - preserve as-is
+                merged.add(line);
+            }
+        }
+        
+        return merged;
+    }
+    
+    /**
+     * Write a section key and the user's entries below it verbatim, keeping the
+     * default line's inline comment
+     */
+    private void appendSection(List<String> merged, String keyPart, String valuePart, int indent,
+                               org.bukkit.configuration.ConfigurationSection userSection) {
+        int commentIndex = valuePart.indexOf('#');
+        String inlineComment = commentIndex >= 0 ? " " + valuePart.substring(commentIndex) : "";
+        if (userSection.getKeys(false).isEmpty()) {
+            merged.add(" ".repeat(indent) + keyPart + ": {}" + inlineComment);
+            return;
+        }
+        YamlConfiguration section = new YamlConfiguration();
+        for (String key : userSection.getKeys(false)) {
+            section.set(key, userSection.get(key));
+        }
+        merged.add(" ".repeat(indent) + keyPart + ":" + inlineComment);
+        for (String sectionLine : section.saveToString().split("\n")) {
+            if (!sectionLine.trim().isEmpty()) {
+                merged.add(" ".repeat(indent + 2) + sectionLine);
+            }
+        }
+    }
+
+    /**
+     * Find deprecated keys that exist in user config but not in default config
+     * These keys will be removed during migration
+     */
+    java.util.Set<String> findDeprecatedKeys(YamlConfiguration userConfig, YamlConfiguration defaultConfig) {
+        java.util.Set<String> deprecated = new java.util.HashSet<>();
+        findDeprecatedKeysRecursive(userConfig, defaultConfig, "", deprecated);
+        return deprecated;
+    }
+    
+    /**
+     * Recursively find deprecated keys
+     */
+    private void findDeprecatedKeysRecursive(YamlConfiguration userConfig, YamlConfiguration defaultConfig, 
+                                             String basePath, java.util.Set<String> deprecated) {
+        for (String key : userConfig.getKeys(false)) {
+            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
+            
+            // Skip version keys - they're handled separately
+            if (key.equals("config_version") || key.equals("messages_version") || key.equals("gui_version")) {
+                continue;
+            }
+            
+            if (!defaultConfig.contains(fullPath)) {
+                // This key doesn't exist in default config - it's deprecated
+                deprecated.add(fullPath);
+            } else if (userConfig.isConfigurationSection(key) && defaultConfig.isConfigurationSection(fullPath)
+                    && !FREE_FORM_SECTIONS.contains(fullPath)) {
+                // Free-form sections hold user-defined keys and are not checked
+                // Both are sections - recursively check nested keys
+                findDeprecatedKeysRecursive(
+                    userConfig.getConfigurationSection(key),
+                    defaultConfig.getConfigurationSection(fullPath),
+                    fullPath,
+                    deprecated
+                );
+            }
+        }
+    }
+    
+    /**
+     * Recursive helper for configuration sections
+     */
+    private void findDeprecatedKeysRecursive(org.bukkit.configuration.ConfigurationSection userSection,
+                                            org.bukkit.configuration.ConfigurationSection defaultSection,
+                                            String basePath, java.util.Set<String> deprecated) {
+        for (String key : userSection.getKeys(false)) {
+            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
+            
+            // Skip version keys - they're handled separately
+            if (key.equals("config_version") || key.equals("messages_version") || key.equals("gui_version")) {
+                continue;
+            }
+            
+            if (!defaultSection.contains(key)) {
+                // This key doesn't exist in default config - it's deprecated
+                deprecated.add(fullPath);
+            } else if (userSection.isConfigurationSection(key) && defaultSection.isConfigurationSection(key)
+                    && !FREE_FORM_SECTIONS.contains(fullPath)) {
+                // Both are sections - recursively check nested keys
+                findDeprecatedKeysRecursive(
+                    userSection.getConfigurationSection(key),
+                    defaultSection.getConfigurationSection(key),
+                    fullPath,
+                    deprecated
+                );
+            }
+        }
+    }
+    
+    // Simple Pair class for path tracking
+    private static class Pair<K, V> {
+        private final K key;
+        private final V value;
+        
+        public Pair(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        public K getKey() { return key; }
+        public V getValue() { return value; }
+    }
+    
+    /**
+     * Format a YAML value as a string
+     */
+    private String formatYamlValue(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof String) {
+            // Check if it needs quotes
+            String str = (String) value;
+            if (str.contains(":") || str.contains("#") || str.trim().isEmpty() || 
+                str.equalsIgnoreCase("true") || str.equalsIgnoreCase("false") || 
+                str.equalsIgnoreCase("null") || str.matches("^-?\\d+$")) {
+                return "\"" + str.replace("\"", "\\\"") + "\"";
+            }
+            return str;
+        } else if (value instanceof Boolean) {
+            return value.toString();
+        } else if (value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof java.util.List) {
+            // Format list
+            java.util.List<?> list = (java.util.List<?>) value;
+            if (list.isEmpty()) {
+                return "[]";
+            }
+            // For lists, we'll just return the first approach - inline if simple
+            if (list.size() == 1 && (list.get(0) instanceof String || list.get(0) instanceof Number)) {
+                return "[" + formatYamlValue(list.get(0)) + "]";
+            }
+            // Multi-line list - return as inline for now, could be improved
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(formatYamlValue(list.get(i)));
+            }
+            sb.append("]");
+            return sb.toString();
+        } else {
+            return value.toString();
+        }
+    }
+    
+    /**
+     * Update config version in the merged lines
+     */
+    private void updateConfigVersion(List<String> lines, int newVersion, List<String> defaultLines, String versionKey) {
+        // Look for version line and update it, or add it if missing
+        boolean found = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String trimmed = line.trim();
+            
+            // Check if this is the version line
+            if (trimmed.startsWith(versionKey + ":") || trimmed.startsWith(versionKey + " ")) {
+                // Update the version value, preserving indentation and any inline comments
+                int indent = line.length() - trimmed.length();
+                String restOfLine = "";
+                int colonIndex = trimmed.indexOf(':');
+                if (colonIndex >= 0 && colonIndex + 1 < trimmed.length()) {
+                    String afterColon = trimmed.substring(colonIndex + 1).trim();
+                    // Check if there's an inline comment
+                    int commentIndex = afterColon.indexOf('#');
+                    if (commentIndex >= 0) {
+                        restOfLine = " #" + afterColon.substring(commentIndex + 1);
+                    }
+                }
+                lines.set(i, " ".repeat(indent) + versionKey + ": " + newVersion + restOfLine);
+                found = true;
+                break;
+            }
+        }
+        
+        // If not found, add it after the header comment (usually line 2-3)
+        if (!found) {
+            // Extract comment from default config
+            String commentLine = "# Config version - do not modify";
+            for (int i = 0; i < defaultLines.size(); i++) {
+                String line = defaultLines.get(i);
+                String trimmed = line.trim();
+                // Look for version key in default config
+                if (trimmed.startsWith(versionKey + ":") || trimmed.startsWith(versionKey + " ")) {
+                    // Check if there's a comment line before it
+                    if (i > 0) {
+                        String prevLine = defaultLines.get(i - 1);
+                        if (prevLine.trim().startsWith("#")) {
+                            commentLine = prevLine;
+                        }
+                    }
+                    break;
+                }
+            }
+            
+            int insertIndex = 0;
+            // Find a good place to insert - after first comment block, before first section
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                String trimmed = line.trim();
+                // Stop at first non-comment, non-blank line that's not the version key
+                if (!trimmed.isEmpty() && !line.startsWith("#") && !trimmed.startsWith(versionKey)) {
+                    insertIndex = i;
+                    break;
+                }
+            }
+            // Insert version line with comment from default config
+            lines.add(insertIndex, commentLine);
+            lines.add(insertIndex + 1, versionKey + ": " + newVersion);
+            // Add blank line after if needed
+            if (insertIndex + 2 < lines.size() && !lines.get(insertIndex + 2).trim().isEmpty()) {
+                lines.add(insertIndex + 2, "");
+            }
+        }
+    }
+    
+    /**
+     * Migrate a specific config file (messages.yml, etc.)
+     * Uses the same simple merge approach as config.yml
+     */
+    void migrateConfigFile(String filename) {
+        try {
+            File configFile = new File(plugin.getDataFolder(), filename);
+            
+            // Save default config if it doesn't exist
+            if (!configFile.exists()) {
+                plugin.saveResource(filename, false);
+            }
+            
+            // Load default config from jar
+            InputStream defaultConfigTextStream = plugin.getResource(filename);
+            if (defaultConfigTextStream == null) {
+                return; // No default file in jar, skip
+            }
+            
+            // Read default config as text to preserve formatting
+            List<String> defaultLines = new java.util.ArrayList<>();
+            try (java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(defaultConfigTextStream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    defaultLines.add(line);
+                }
+            }
+            
+            // Load as YAML to get user values
+            InputStream defaultConfigYamlStream = plugin.getResource(filename);
+            YamlConfiguration defaultConfig = YamlConfiguration.loadConfiguration(
+                new InputStreamReader(defaultConfigYamlStream));
+            YamlConfiguration currentConfig = YamlConfiguration.loadConfiguration(configFile);
+            
+            // Check config version - get default version (use filename + "_version" as key)
+            String versionKey = filename.replace(".yml", "_version");
+            int defaultVersion = defaultConfig.getInt(versionKey, 1);
+            int currentVersion = currentConfig.getInt(versionKey, 0); // 0 means old config without version
+            
+            // If versions match and config has version field, no migration needed
+            if (currentVersion == defaultVersion && currentConfig.contains(versionKey)) {
+                return; // Config is up to date
+            }
+            
+            // Simple merge: Use default structure/comments, replace values with user's where they exist
+            // Deprecated keys (in user config but not in default) are automatically removed
+            List<String> mergedLines = mergeConfigs(defaultLines, currentConfig, defaultConfig);
+            
+            // Check for and log deprecated keys that were removed
+            java.util.Set<String> deprecatedKeys = findDeprecatedKeys(currentConfig, defaultConfig);
+            if (!deprecatedKeys.isEmpty()) {
+                plugin.getLogger().info("Removed deprecated keys from " + filename + ": " + String.join(", ", deprecatedKeys));
+            }
+            
+            // Update config version
+            updateConfigVersion(mergedLines, defaultVersion, defaultLines, versionKey);
+            
+            // Write merged config
+            java.nio.file.Files.write(configFile.toPath(), mergedLines, 
+                java.nio.charset.StandardCharsets.UTF_8);
+            
+            debug.info(DebugLog.Category.CONFIG, () -> "Migrated " + filename + " - merged with default, preserving user values and all comments");
+        } catch (Exception e) {
+            debug.warning(DebugLog.Category.CONFIG, () -> "Error migrating " + filename + ": " + e.getMessage());
+            // Don't fail plugin startup if migration has issues
+        }
+    }
+    
+    /**
+     * Recursively adds missing keys from default config to current config
+     */
+    private boolean addMissingKeys(org.bukkit.configuration.ConfigurationSection defaultSection, 
+                                   YamlConfiguration currentConfig, String basePath) {
+        boolean needsSave = false;
+        
+        // Iterate through keys at this level only
+        for (String key : defaultSection.getKeys(false)) {
+            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
+            
+            // Skip if the key already exists
+            if (currentConfig.contains(fullPath)) {
+                continue;
+            }
+            
+            // Check if this is a section or a value
+            if (defaultSection.isConfigurationSection(key)) {
+                // Recursively check section
+                boolean sectionNeedsSave = addMissingKeys(
+                    defaultSection.getConfigurationSection(key),
+                    currentConfig,
+                    fullPath
+                );
+                needsSave = needsSave || sectionNeedsSave;
+            } else {
+                // This is a value - add it
+                Object defaultValue = defaultSection.get(key);
+                currentConfig.set(fullPath, defaultValue);
+                
+                debug.info(DebugLog.Category.CONFIG, () -> "Adding missing config option: " + fullPath + " = " + defaultValue);
+                needsSave = true;
+            }
+        }
+        
+        return needsSave;
+    }
+    
+    /**
+     * Collect missing keys from a section without modifying the config
+     */
+    private void collectMissingKeys(org.bukkit.configuration.ConfigurationSection defaultSection,
+                                   YamlConfiguration currentConfig, String basePath, String keyPrefix,
+                                   List<String> missingKeys) {
+        for (String key : defaultSection.getKeys(false)) {
+            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
+            String displayPath = keyPrefix.isEmpty() ? key : keyPrefix + "." + key;
+            
+            // Skip if the key already exists
+            if (currentConfig.contains(fullPath)) {
+                // If it's a section, check nested keys
+                if (defaultSection.isConfigurationSection(key)) {
+                    collectMissingKeys(
+                        defaultSection.getConfigurationSection(key),
+                        currentConfig,
+                        fullPath,
+                        displayPath,
+                        missingKeys
+                    );
+                }
+                continue;
+            }
+            
+            // This is a missing key - add it to the list
+            missingKeys.add(displayPath);
+            
+            // If it's a section, also check nested keys
+            if (defaultSection.isConfigurationSection(key)) {
+                collectMissingKeys(
+                    defaultSection.getConfigurationSection(key),
+                    currentConfig,
+                    fullPath,
+                    displayPath,
+                    missingKeys
+                );
+            }
+        }
+    }
+    
+    /**
+     * Extract a key with its comments from default config lines
+     */
+    private List<String> extractKeyWithComments(List<String> defaultLines, String sectionName, String keyPath) {
+        List<String> result = new java.util.ArrayList<>();
+        
+        // Split key path (e.g., "PROTECTION_ENVIRONMENTAL" or "nested.key")
+        String[] keyParts = keyPath.split("\\.");
+        String targetKey = keyParts[keyParts.length - 1]; // Last part is the actual key
+        
+        // Find the section in default config
+        boolean inSection = false;
+        int sectionIndent = -1;
+        
+        for (int i = 0; i < defaultLines.size(); i++) {
+            String line = defaultLines.get(i);
+            String trimmed = line.trim();
+            
+            // Find section start
+            if (!inSection && trimmed.equals(sectionName + ":")) {
+                inSection = true;
+                sectionIndent = line.length() - trimmed.length();
+                continue;
+            }
+            
+            if (inSection) {
+                // Check if we've left the section
+                if (!trimmed.isEmpty() && !line.startsWith("#")) {
+                    int indent = line.length() - trimmed.length();
+                    if (indent <= sectionIndent && !trimmed.startsWith("#")) {
+                        break; // Left the section
+                    }
+                }
+                
+                // Look for the target key
+                if (trimmed.startsWith(targetKey + ":") || trimmed.startsWith(targetKey + " ")) {
+                    // Found the key - collect preceding comments
+                    int startIndex = i;
+                    // Go backwards to find all comments before this key
+                    while (startIndex > 0) {
+                        String prevLine = defaultLines.get(startIndex - 1);
+                        String prevTrimmed = prevLine.trim();
+                        if (prevTrimmed.isEmpty()) {
+                            // Blank line - include it if it's between comments
+                            if (startIndex > 1 && defaultLines.get(startIndex - 2).trim().startsWith("#")) {
+                                startIndex--;
+                                continue;
+                            }
+                            break;
+                        } else if (prevLine.startsWith("#")) {
+                            // Comment line - include it
+                            startIndex--;
+                        } else {
+                            // Not a comment - stop
+                            break;
+                        }
+                    }
+                    
+                    // Extract from startIndex to i (including the key line)
+                    for (int j = startIndex; j <= i; j++) {
+                        result.add(defaultLines.get(j));
+                    }
+                    
+                    // Also include the next line if it's a continuation
+                    if (i + 1 < defaultLines.size()) {
+                        String nextLine = defaultLines.get(i + 1);
+                        String nextTrimmed = nextLine.trim();
+                        int nextIndent = nextLine.length() - nextTrimmed.length();
+                        if (nextIndent > sectionIndent && !nextTrimmed.startsWith("#") && !nextTrimmed.isEmpty()) {
+                            result.add(nextLine);
+                        }
+                    }
+                    
+                    break;
+                }
+            }
+        }
+        
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package com.elytraenchants;
+
+import com.elytraenchants.api.ElytraReductionEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Damage reduction and thorns for entities wearing an elytra. These handlers
+ * run for every hit on the server, so they live apart from the plugin class
+ * and only touch what they need.
+ */
+final class DamageListener implements Listener {
+
+    private final Set<UUID> processingThorns = new HashSet<>();
+    private final WornElytraCache wornElytraCache;
+    private final WorldPolicies worldPolicies;
+    private final LoadMonitor loadMonitor;
+    private final DebugLog debug;
+    private EntityTypeFilter entityFilter;
+    // Active event trace recorder, null when not recording
+    private TraceRecorder traceRecorder;
+
+    DamageListener(WornElytraCache wornElytraCache, WorldPolicies worldPolicies, LoadMonitor loadMonitor, DebugLog debug) {
+        this.wornElytraCache = wornElytraCache;
+        this.worldPolicies = worldPolicies;
+        this.loadMonitor = loadMonitor;
+        this.debug = debug;
+    }
+
+    void setEntityFilter(EntityTypeFilter entityFilter) {
+        this.entityFilter = entityFilter;
+    }
+
+    void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    @EventHandler
+    public void onEntityDamage(EntityDamageEvent event) {
+        if (!entityFilter.test(event.getEntityType())) return;
+        LivingEntity entity = (LivingEntity) event.getEntity();
+        Player player = entity instanceof Player ? (Player) entity : null;
+        WornElytraCache.State state;
+        if (player != null) {
+            // Cached per player and shared with API callers; re-read only after an armor change
+            state = wornElytraCache.get(player);
+        } else {
+            EntityEquipment equipment = entity.getEquipment();
+            if (equipment == null) return;
+            ItemStack chest = equipment.getChestplate();
+            if (chest == null || chest.getType() != Material.ELYTRA) return;
+            state = wornElytraCache.read(equipment.getHelmet(), chest, equipment.getLeggings(), equipment.getBoots());
+        }
+        if (!state.isWearingElytra()) return;
+        if (!worldPolicies.get(entity.getWorld()).isEnabled()) return;
+
+        EntityDamageEvent.DamageCause cause = event.getCause();
+        double damage;
+        if (wornElytraCache.isVanillaProtection()) {
+            // Replace vanilla's enchantment modifier with the combined EPF so nothing is applied twice
+            if (!event.isApplicable(EntityDamageEvent.DamageModifier.MAGIC)) return;
+            damage = event.getDamage(EntityDamageEvent.DamageModifier.BASE)
+                + event.getDamage(EntityDamageEvent.DamageModifier.HARD_HAT)
+                + event.getDamage(EntityDamageEvent.DamageModifier.BLOCKING)
+                + event.getDamage(EntityDamageEvent.DamageModifier.ARMOR)
+                + event.getDamage(EntityDamageEvent.DamageModifier.RESISTANCE);
+        } else {
+            damage = event.getDamage();
+        }
+        double newDamage = mitigate(player, state, cause, damage);
+        if (wornElytraCache.isVanillaProtection()) {
+            event.setDamage(EntityDamageEvent.DamageModifier.MAGIC, magicModifier(damage, newDamage));
+            debug.info(DebugLog.Category.DAMAGE, () -> entity.getType() + " " + cause + " damage " + damage + " after armor, " + newDamage + " after enchantments");
+        } else {
+            event.setDamage(newDamage);
+            debug.info(DebugLog.Category.DAMAGE, () -> entity.getType() + " " + cause + " damage " + damage + " -> " + newDamage);
+        }
+
+        // Traced as the damage the enchantments act on and what is left of it
+        if (traceRecorder != null) {
+            EntityEquipment equipment = entity.getEquipment();
+            long armor = equipment == null ? 0L
+                : TraceRecorder.packArmor(equipment.getHelmet(), equipment.getLeggings(), equipment.getBoots());
+            traceRecorder.recordDamage(entity.getWorld(), player != null, cause, damage, state.getVector(), armor, newDamage);
+        }
+    }
+
+    /**
+     * Damage left after a wearer's elytra reduction, where damage is what the
+     * enchantments act on (after armor in vanilla mode). Players go through
+     * ElytraReductionEvent. Shared by the handler and trace replay.
+     */
+    double mitigate(Player player, WornElytraCache.State state, EntityDamageEvent.DamageCause cause, double damage) {
+        double reduction = state.getReduction(cause);
+        if (player != null && ElytraReductionEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            ElytraReductionEvent reductionEvent = new ElytraReductionEvent(player, cause, damage, reduction);
+            Bukkit.getPluginManager().callEvent(reductionEvent);
+            reduction = reductionEvent.isCancelled() ? 0.0 : reductionEvent.getReduction();
+        }
+        return reduce(damage, reduction);
+    }
+
+    static double reduce(double damage, double reduction) {
+        return damage * (1.0 - reduction);
+    }
+
+    /**
+     * MAGIC modifier that takes damage after armor down to the mitigated damage
+     */
+    static double magicModifier(double afterArmor, double mitigated) {
+        return mitigated - afterArmor;
+    }
+
+    /**
+     * Roll a thorns reflection for an elytra's Thorns level; shared with trace replay
+     */
+    boolean rollThorns(int thorns) {
+        return Math.random() < ElytraEnchantsPlugin.thornsChance(thorns);
+    }
+
+    /**
+     * The elytra worn by an entity, or null. Only the item type is checked,
+     * so entities without an elytra never touch ItemMeta.
+     */
+    private static ItemStack wornElytra(LivingEntity entity) {
+        ItemStack chest;
+        if (entity instanceof Player player) {
+            chest = player.getInventory().getChestplate();
+        } else {
+            EntityEquipment equipment = entity.getEquipment();
+            if (equipment == null) return null;
+            chest = equipment.getChestplate();
+        }
+        return chest != null && chest.getType() == Material.ELYTRA ? chest : null;
+    }
+
+    @EventHandler
+    public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
+        if (!entityFilter.test(event.getEntityType())) return;
+        LivingEntity victim = (LivingEntity) event.getEntity();
+        ItemStack chest = wornElytra(victim);
+        if (chest == null) return;
+        if (!worldPolicies.get(victim.getWorld()).isEnabled()) return;
+
+        int thorns = chest.getEnchantmentLevel(Enchantment.THORNS);
+        if (thorns > 0 && event.getDamager() instanceof LivingEntity attacker) {
+            UUID attackerId = attacker.getUniqueId();
+            if (processingThorns.contains(attackerId)) return;
+            boolean proc = rollThorns(thorns);
+            // Under load only reflections count against the per-tick cap; over it the hit does not reflect
+            boolean reflect = proc && loadMonitor.tryThorns();
+            debug.info(DebugLog.Category.THORNS, () -> "Thorns " + thorns + " vs " + attacker.getType() + ": "
+                + (reflect ? "proc" : proc ? "proc, over the load-shedding cap" : "no proc"));
+            if (traceRecorder != null) {
+                traceRecorder.recordThorns(victim.getWorld(), attacker.getType(), EnchantVector.of(chest.getEnchantments()), proc);
+            }
+            if (reflect) {
+                processingThorns.add(attackerId);
+                try {
+                    attacker.damage(1.0, victim);
+                } finally {
+                    processingThorns.remove(attackerId);
+                }
+            }
+        }
+    }
+}
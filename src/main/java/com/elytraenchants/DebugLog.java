@@ -0,0 +1,207 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Debug logging that is cheap enough to leave on in production. Messages are
+ * grouped in categories that can be toggled separately, only built once they
+ * pass the category and rate checks, and written to the server log by a
+ * background thread. When the queue is full new messages are dropped and
+ * counted instead of blocking the caller. Safe to call from any thread.
+ */
+final class DebugLog {
+
+    enum Category {
+        /** Startup, config loading and migration */
+        CONFIG,
+        /** Update checker and version comparison */
+        UPDATE,
+        /** Anvil combinations */
+        ANVIL,
+        /** Elytra damage reduction */
+        DAMAGE,
+        /** Elytra thorns */
+        THORNS,
+        /** Commands, tab completion and traces */
+        COMMAND;
+
+        final String key = name().toLowerCase(Locale.ROOT);
+        final int bit = 1 << ordinal();
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+    // Dropped messages are summarised at most this often
+    private static final long DROP_REPORT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final class Entry {
+        final Level level;
+        final Category category;
+        final String message;
+
+        Entry(Level level, Category category, String message) {
+            this.level = level;
+            this.category = category;
+            this.message = message;
+        }
+    }
+
+    private final Logger logger;
+    // Per category: second of the current window (high 32 bits) and messages logged in it
+    private final AtomicLongArray windows = new AtomicLongArray(CATEGORIES.length);
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile int enabledMask;
+    // Categories paused while the server is under load
+    private volatile int pausedMask;
+    private volatile int maxPerSecond = 20;
+    private volatile BlockingQueue<Entry> queue;
+    private Thread writer;
+
+    DebugLog(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Read debug and debug-log.* and start or stop the writer thread
+     */
+    synchronized void configure(ConfigurationSection config) {
+        int mask = 0;
+        if (config.getBoolean("debug", false)) {
+            for (Category category : CATEGORIES) {
+                if (config.getBoolean("debug-log.categories." + category.key, true)) {
+                    mask |= category.bit;
+                }
+            }
+        }
+        maxPerSecond = Math.max(1, config.getInt("debug-log.max-per-second", 20));
+        int capacity = Math.max(16, config.getInt("debug-log.queue-size", 1024));
+        if (mask == 0) {
+            enabledMask = 0;
+            shutdown();
+            return;
+        }
+        if (writer == null || queue.remainingCapacity() + queue.size() != capacity) {
+            shutdown();
+            queue = new ArrayBlockingQueue<>(capacity);
+            writer = new Thread(this::drain, "ElytraEnchants-DebugLog");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        enabledMask = mask;
+    }
+
+    boolean isEnabled(Category category) {
+        return (enabledMask & ~pausedMask & category.bit) != 0;
+    }
+
+    /**
+     * Pause or resume the per-event categories (anvil, damage, thorns)
+     */
+    void setEventsPaused(boolean paused) {
+        pausedMask = paused ? Category.ANVIL.bit | Category.DAMAGE.bit | Category.THORNS.bit : 0;
+    }
+
+    void info(Category category, Supplier<String> message) {
+        log(Level.INFO, category, message);
+    }
+
+    void warning(Category category, Supplier<String> message) {
+        log(Level.WARNING, category, message);
+    }
+
+    private void log(Level level, Category category, Supplier<String> message) {
+        if ((enabledMask & ~pausedMask & category.bit) == 0) {
+            return;
+        }
+        BlockingQueue<Entry> target = queue;
+        if (target == null || !acquire(category)
+                || !target.offer(new Entry(level, category, message.get()))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Take a slot in the category's one-second window
+     */
+    private boolean acquire(Category category) {
+        long second = System.nanoTime() / 1_000_000_000L;
+        int index = category.ordinal();
+        while (true) {
+            long state = windows.get(index);
+            long next;
+            if (state >>> 32 != (second & 0xFFFFFFFFL)) {
+                next = (second << 32) | 1L;
+            } else if ((int) state >= maxPerSecond) {
+                return false;
+            } else {
+                next = state + 1;
+            }
+            if (windows.compareAndSet(index, state, next)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        BlockingQueue<Entry> source = queue;
+        long lastReport = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry = source.poll(1, TimeUnit.SECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+                if (System.nanoTime() - lastReport >= DROP_REPORT_NANOS) {
+                    lastReport = System.nanoTime();
+                    reportDropped();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Entry entry) {
+        logger.log(entry.level, "[debug/" + entry.category.key + "] " + entry.message);
+    }
+
+    private void reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            logger.info("[debug] " + count + " debug messages dropped (rate limit or full queue)");
+        }
+    }
+
+    /**
+     * Stop the writer and flush what is still queued
+     */
+    synchronized void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        writer.interrupt();
+        try {
+            writer.join(1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        BlockingQueue<Entry> remaining = queue;
+        queue = null;
+        Entry entry;
+        while ((entry = remaining.poll()) != null) {
+            write(entry);
+        }
+        reportDropped();
+    }
+}
@@ -0,0 +1,121 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.entity.EntityDamageEvent;
+
+import java.util.function.DoubleUnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * The compiled enchantment effect formulas from the formulas section of
+ * config. Invalid formulas are reported at load and replaced by their default.
+ */
+final class EffectFormulas {
+
+    private static final String[][] DEFAULTS = {
+        {"protection", "0.04 * level"},
+        {"fire-protection", "0.08 * level"},
+        {"blast-protection", "0.08 * level"},
+        {"projectile-protection", "0.08 * level"},
+        {"thorns-chance", "0.15 + 0.15 * level"}
+    };
+
+    static final EffectFormulas DEFAULT = compileDefaults();
+
+    private final DoubleUnaryOperator protection;
+    private final DoubleUnaryOperator fireProtection;
+    private final DoubleUnaryOperator blastProtection;
+    private final DoubleUnaryOperator projectileProtection;
+    private final DoubleUnaryOperator thornsChance;
+    private final double maxReduction;
+
+    private EffectFormulas(DoubleUnaryOperator[] formulas, double maxReduction) {
+        this.protection = formulas[0];
+        this.fireProtection = formulas[1];
+        this.blastProtection = formulas[2];
+        this.projectileProtection = formulas[3];
+        this.thornsChance = formulas[4];
+        this.maxReduction = maxReduction;
+    }
+
+    private static EffectFormulas compileDefaults() {
+        DoubleUnaryOperator[] formulas = new DoubleUnaryOperator[DEFAULTS.length];
+        for (int i = 0; i < DEFAULTS.length; i++) {
+            try {
+                formulas[i] = Formula.compile(DEFAULTS[i][1]);
+            } catch (Formula.FormulaException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new EffectFormulas(formulas, 0.8);
+    }
+
+    /**
+     * Compile formulas.*; anything missing or invalid falls back to the default
+     */
+    static EffectFormulas load(ConfigurationSection config, Logger logger) {
+        DoubleUnaryOperator[] formulas = new DoubleUnaryOperator[DEFAULTS.length];
+        for (int i = 0; i < DEFAULTS.length; i++) {
+            String key = DEFAULTS[i][0];
+            String source = config.getString("formulas." + key, DEFAULTS[i][1]);
+            try {
+                formulas[i] = Formula.compile(source);
+            } catch (Formula.FormulaException e) {
+                logger.warning("Invalid formula formulas." + key + ": " + e.getMessage() + " - using " + DEFAULTS[i][1]);
+                formulas[i] = DEFAULT.formula(i);
+                continue;
+            }
+            // Catch formulas that blow up for ordinary levels (e.g. division by level)
+            for (int level = 1; level <= 10; level++) {
+                double value = formulas[i].applyAsDouble(level);
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    logger.warning("Formula formulas." + key + " gives " + value + " at level " + level + " - using " + DEFAULTS[i][1]);
+                    formulas[i] = DEFAULT.formula(i);
+                    break;
+                }
+            }
+        }
+        double maxReduction = Math.max(0.0, Math.min(1.0, config.getDouble("formulas.max-reduction", 0.8)));
+        return new EffectFormulas(formulas, maxReduction);
+    }
+
+    private DoubleUnaryOperator formula(int index) {
+        switch (index) {
+            case 0: return protection;
+            case 1: return fireProtection;
+            case 2: return blastProtection;
+            case 3: return projectileProtection;
+            default: return thornsChance;
+        }
+    }
+
+    /**
+     * Damage reduction for a damage cause from the protection levels
+     */
+    double reduction(EntityDamageEvent.DamageCause cause, int prot, int fireProt, int blastProt, int projProt) {
+        double reduction = 0.0;
+        if (prot > 0) {
+            reduction += protection.applyAsDouble(prot);
+        }
+        if (fireProt > 0 && (cause == EntityDamageEvent.DamageCause.FIRE
+                || cause == EntityDamageEvent.DamageCause.FIRE_TICK
+                || cause == EntityDamageEvent.DamageCause.LAVA)) {
+            reduction += fireProtection.applyAsDouble(fireProt);
+        }
+        if (blastProt > 0 && (cause == EntityDamageEvent.DamageCause.BLOCK_EXPLOSION
+                || cause == EntityDamageEvent.DamageCause.ENTITY_EXPLOSION)) {
+            reduction += blastProtection.applyAsDouble(blastProt);
+        }
+        if (projProt > 0 && cause == EntityDamageEvent.DamageCause.PROJECTILE) {
+            reduction += projectileProtection.applyAsDouble(projProt);
+        }
+        if (reduction > maxReduction) reduction = maxReduction;
+        // Negative formulas must not turn the elytra into a damage amplifier
+        if (reduction < 0.0) reduction = 0.0;
+        return reduction;
+    }
+
+    double thornsChance(int thorns) {
+        return thornsChance.applyAsDouble(thorns);
+    }
+}
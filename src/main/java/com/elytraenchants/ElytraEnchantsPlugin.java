@@ -1,20 +1,36 @@
 package com.elytraenchants;
 
+import com.elytraenchants.api.ElytraEnchantApplyEvent;
+import com.elytraenchants.api.ElytraEnchantsApi;
 import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.enchantments.Enchantment;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.enchantment.EnchantItemEvent;
-import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityToggleGlideEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.PrepareAnvilEvent;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.LootGenerateEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.inventory.AnvilInventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.command.Command;
@@ -25,6 +41,7 @@ import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashSet;
@@ -39,45 +56,158 @@ import java.util.stream.Collectors;
 public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExecutor {
 
     private final Set<Enchantment> allowedEnchantments = new HashSet<>();
-    private final Set<UUID> processingThorns = new HashSet<>();
-    private YamlConfiguration messages;
-    private boolean debugMode;
+    private EnchantmentRegistry enchantmentRegistry;
+    private List<String> allowedCompletions = List.of();
+    private final PermissionCache permissionCache = new PermissionCache();
+    private FlightEngine flightEngine;
+    private final TimedEnchants timedEnchants = new TimedEnchants(this, this::onTimedEnchantDue);
+    private final ItemSignatures itemSignatures = new ItemSignatures(this, timedEnchants);
+    private final WornElytraCache wornElytraCache = new WornElytraCache(this, this::refreshWornElytra, timedEnchants::nextExpiry);
+    private CompiledPolicy policy;
+    private final WorldPolicies worldPolicies = new WorldPolicies();
+    private final LootEnchanter lootEnchanter = new LootEnchanter();
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private int policyVersion;
+    private final MessageBundles messageBundles = new MessageBundles();
+    private final ElytraHud hud = new ElytraHud(messageBundles);
+    private final EnchantMenu enchantMenu = new EnchantMenu(messageBundles);
+    private final DebugLog debug = new DebugLog(getLogger());
+    private final LoadMonitor loadMonitor = new LoadMonitor(this, getLogger(), this::onLoadLevelChanged);
+    private final DamageListener damageListener = new DamageListener(wornElytraCache, worldPolicies, loadMonitor, debug);
+    private final GrindstoneListener grindstoneListener = new GrindstoneListener(this, worldPolicies, timedEnchants, itemSignatures);
+    private final FrameLootListener frameLootListener = new FrameLootListener(lootEnchanter, worldPolicies, itemSignatures);
+    private final AnvilResultCache anvilResults = new AnvilResultCache();
+    // Compiled effect formulas, shared with the static helpers used by traces and the API cache
+    private static volatile EffectFormulas effects = EffectFormulas.DEFAULT;
     
-    // Spigot resource ID for update checking
-    private static final int SPIGOT_RESOURCE_ID = 126943;
+    // Created by the first update check
+    private UpdateChecker updateChecker;
     
-    // Store update info for new players
-    private String latestVersion = null;
-    private boolean updateAvailable = false;
+    // Active event trace recorder, null when not recording
+    private TraceRecorder traceRecorder;
+    
+    // Shared policy bundle from -Delytraenchants.bundle; config and messages come from it when loaded
+    private java.nio.file.Path bundlePath;
+    private volatile PolicyBundle bundle;
+    private long failedBundleVersion = -1L;
+    // Raw message sources of the loaded bundles, kept for bundle export
+    private YamlConfiguration messageSource;
+    private Map<String, YamlConfiguration> translationSources = Map.of();
 
     @Override
     public void onEnable() {
+        long enableStart = System.nanoTime();
+        // Build the enchantment alias registry before anything parses enchantment names
+        enchantmentRegistry = EnchantmentRegistry.build();
+        
         // Create data folder if it doesn't exist
         if (!getDataFolder().exists()) {
             getDataFolder().mkdirs();
         }
         
-        // Load configuration FIRST
-        loadConfig();
+        // A policy bundle replaces config.yml and the message files entirely
+        String bundleFile = System.getProperty(PolicyBundle.PROPERTY, "");
+        if (!bundleFile.isEmpty()) {
+            bundlePath = java.nio.file.Paths.get(bundleFile);
+            readBundle();
+        }
         
-        // Migrate other config files
-        migrateConfigFile("messages.yml");
+        if (bundle == null) {
+            // Load configuration FIRST
+            loadConfig();
+            
+            // Migrate other config files
+            if (!new File(getDataFolder(), "messages.yml").exists()) {
+                saveResource("messages.yml", false);
+            } else if (needsMigration("messages.yml", "messages_version")) {
+                new ConfigMigrator(this, debug).migrateConfigFile("messages.yml");
+            }
+        }
         
         loadAllowedEnchantments();
         loadMessages();
         Bukkit.getPluginManager().registerEvents(this, this);
+        Bukkit.getPluginManager().registerEvents(damageListener, this);
+        Bukkit.getPluginManager().registerEvents(grindstoneListener, this);
+        boolean paperArmorEvents = PaperAdapter.registerArmorTracking(this, wornElytraCache);
+        debug.info(DebugLog.Category.CONFIG, () -> "Tracking armor changes with "
+            + (paperArmorEvents ? "Paper's PlayerArmorChangeEvent" : "inventory events"));
+        boolean entitiesLoadEvent = frameLootListener.register(this);
+        debug.info(DebugLog.Category.CONFIG, () -> "Rolling item frame loot on "
+            + (entitiesLoadEvent ? "EntitiesLoadEvent" : "ChunkLoadEvent"));
+        getServer().getServicesManager().register(ElytraEnchantsApi.class,
+            new ElytraEnchantsService(wornElytraCache, worldPolicies), this, ServicePriority.Normal);
         getCommand("elytraenchants").setExecutor(this);
         getCommand("elytraenchants").setTabCompleter(this);
-        if (debugMode) {
-            getLogger().info("ElytraEnchantsPlugin enabled!");
+        timedEnchants.start();
+        for (Player online : getServer().getOnlinePlayers()) {
+            checkWornElytra(online);
         }
+        long enableMicros = (System.nanoTime() - enableStart) / 1000L;
+        debug.info(DebugLog.Category.CONFIG, () -> "ElytraEnchantsPlugin enabled in " + enableMicros / 1000.0 + " ms");
         
         // Check for updates asynchronously
         if (getConfig().getBoolean("update-checker.enabled", true)) {
-            checkForUpdates();
+            updateChecker().checkForUpdates();
+        }
+        
+        // Start recording an event trace if enabled
+        if (getConfig().getBoolean("trace.enabled", false)) {
+            startTrace();
+        }
+        
+        if (bundlePath != null) {
+            long interval = Math.max(1L, getConfig().getLong("bundle.check-seconds", 10L)) * 20L;
+            getServer().getScheduler().runTaskTimerAsynchronously(this, this::checkBundle, interval, interval);
         }
     }
     
+    /**
+     * Map the policy bundle; keeps the current policy if it is missing or invalid
+     */
+    private boolean readBundle() {
+        try {
+            bundle = PolicyBundle.read(bundlePath);
+            getLogger().info("Loaded policy bundle " + bundlePath + " (version " + bundle.getVersion() + ")");
+            return true;
+        } catch (IOException e) {
+            getLogger().severe("Could not load policy bundle " + bundlePath + ": " + e.getMessage()
+                + (bundle == null ? " - using config.yml" : " - keeping version " + bundle.getVersion()));
+            return false;
+        }
+    }
+    
+    /**
+     * Async: re-map the bundle when its header shows a new version, then apply it on the main thread
+     */
+    private void checkBundle() {
+        long version;
+        try {
+            version = PolicyBundle.readVersion(bundlePath);
+        } catch (IOException e) {
+            return; // missing or being replaced - try again next time
+        }
+        PolicyBundle current = bundle;
+        if ((current != null && version == current.getVersion()) || version == failedBundleVersion) {
+            return;
+        }
+        PolicyBundle loaded;
+        try {
+            loaded = PolicyBundle.read(bundlePath);
+        } catch (IOException e) {
+            // Warn once per version; an export still being copied in is retried at the next check
+            failedBundleVersion = version;
+            getLogger().warning("Could not load policy bundle version " + version + ": " + e.getMessage());
+            return;
+        }
+        getServer().getScheduler().runTask(this, () -> {
+            bundle = loaded;
+            loadAllowedEnchantments();
+            loadMessages();
+            getLogger().info("Applied policy bundle version " + loaded.getVersion());
+        });
+    }
+    
     private void loadConfig() {
         try {
             // Save default config if it doesn't exist
@@ -90,1066 +220,543 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
                 getLogger().severe("Failed to load config.yml - config is still null!");
             } else {
                 // Migrate config to add any missing new options
-                migrateConfig();
-                if (debugMode) {
-                    getLogger().info("Config loaded successfully");
+                if (needsMigration("config.yml", "config_version")) {
+                    new ConfigMigrator(this, debug).migrateConfig();
                 }
+                debug.info(DebugLog.Category.CONFIG, () -> "Config loaded successfully");
             }
         } catch (Exception e) {
             getLogger().severe("Error loading config: " + e.getMessage());
-            if (debugMode) {
+            if (debug.isEnabled(DebugLog.Category.CONFIG)) {
                 e.printStackTrace();
             }
         }
     }
+    
+    /**
+     * Whether a data folder file lacks its version key or is at another version
+     * than the jar's copy; keeps the migrator unloaded on ordinary starts
+     */
+    private boolean needsMigration(String filename, String versionKey) {
+        File file = new File(getDataFolder(), filename);
+        InputStream resource = getResource(filename);
+        if (!file.exists() || resource == null) {
+            return false;
+        }
+        try (InputStreamReader reader = new InputStreamReader(resource, java.nio.charset.StandardCharsets.UTF_8)) {
+            int latest = YamlConfiguration.loadConfiguration(reader).getInt(versionKey, 1);
+            YamlConfiguration current = YamlConfiguration.loadConfiguration(file);
+            return !current.contains(versionKey) || current.getInt(versionKey, 0) != latest;
+        } catch (IOException e) {
+            return true;
+        }
+    }
 
     private void loadAllowedEnchantments() {
+        if (enchantmentRegistry == null) {
+            enchantmentRegistry = EnchantmentRegistry.build();
+        }
         allowedEnchantments.clear();
         FileConfiguration config = getConfig();
-        debugMode = config.getBoolean("debug", false);
+        debug.configure(config);
         if (config.isConfigurationSection("enchantments")) {
-            for (String key : config.getConfigurationSection("enchantments").getKeys(false)) {
-                if (config.getBoolean("enchantments." + key, true)) {
-                    Enchantment ench = Enchantment.getByName(key);
-                    if (ench != null) {
-                        allowedEnchantments.add(ench);
-                        if (debugMode) {
-                            getLogger().info("Loaded allowed enchantment: " + key + " -> " + ench.getKey().getKey() + " (name: " + ench.getName() + ")");
-                        }
-                    } else {
-                        if (debugMode) {
-                            getLogger().warning("Could not find enchantment: " + key + " - trying alternative names...");
-                        }
-                        // Try alternative names for common enchantments
-                        if (key.equals("UNBREAKING")) {
-                            ench = Enchantment.DURABILITY;
-                            if (ench != null) {
-                                allowedEnchantments.add(ench);
-                                if (debugMode) {
-                                    getLogger().info("Loaded UNBREAKING as DURABILITY: " + ench.getKey().getKey());
-                                }
-                            }
-                        } else if (key.equals("MENDING")) {
-                            ench = Enchantment.MENDING;
-                            if (ench != null) {
-                                allowedEnchantments.add(ench);
-                                if (debugMode) {
-                                    getLogger().info("Loaded MENDING: " + ench.getKey().getKey());
-                                }
-                            }
-                        }
-                    }
+            readEnchantmentToggles(config.getConfigurationSection("enchantments"), allowedEnchantments);
+        }
+        policy = new CompiledPolicy(allowedEnchantments, ++policyVersion, true);
+        
+        // Per-world overrides start from the global set
+        Map<String, CompiledPolicy> worldOverrides = new HashMap<>();
+        Set<Enchantment> allowedAnywhere = new HashSet<>(allowedEnchantments);
+        if (config.isConfigurationSection("worlds")) {
+            org.bukkit.configuration.ConfigurationSection worlds = config.getConfigurationSection("worlds");
+            for (String worldName : worlds.getKeys(false)) {
+                org.bukkit.configuration.ConfigurationSection worldSection = worlds.getConfigurationSection(worldName);
+                if (worldSection == null) {
+                    continue;
+                }
+                Set<Enchantment> worldAllowed = new HashSet<>(allowedEnchantments);
+                if (worldSection.isConfigurationSection("enchantments")) {
+                    readEnchantmentToggles(worldSection.getConfigurationSection("enchantments"), worldAllowed);
+                }
+                boolean enabled = worldSection.getBoolean("enabled", true);
+                worldOverrides.put(worldName, new CompiledPolicy(worldAllowed, policyVersion, enabled));
+                if (enabled) {
+                    allowedAnywhere.addAll(worldAllowed);
                 }
+                debug.info(DebugLog.Category.CONFIG, () -> "Loaded world policy for " + worldName + ": enabled=" + enabled + ", " + worldAllowed.size() + " allowed enchantments");
             }
         }
-        if (debugMode) {
-            getLogger().info("Total allowed enchantments: " + allowedEnchantments.size());
-        }
-    }
-
-    private void loadMessages() {
-        File messagesFile = new File(getDataFolder(), "messages.yml");
-        if (!messagesFile.exists()) {
-            saveResource("messages.yml", false);
-        }
-        messages = YamlConfiguration.loadConfiguration(messagesFile);
-    }
-
-    private String msg(String key) {
-        if (messages == null) {
-            return "";
+        worldPolicies.load(policy, worldOverrides, getServer().getWorlds());
+        
+        // Completions are served from this list, sorted once per load
+        List<String> completions = new ArrayList<>();
+        for (Enchantment ench : allowedAnywhere) {
+            completions.add(ench.getKey().getKey().toLowerCase());
         }
-        String raw = messages.getString(key, "");
-        if (raw == null || raw.isEmpty()) {
-            return "";
+        if (flightEngine == null) {
+            flightEngine = new FlightEngine(this, hud, messageBundles, wornElytraCache);
         }
-        return ChatColor.translateAlternateColorCodes('&', raw);
-    }
-
-    @Override
-    public void reloadConfig() {
-        super.reloadConfig();
-        loadAllowedEnchantments();
-    }
-    
-    /**
-     * Migrate config.yml to add missing options from newer versions
-     * Preserves user values while adding new options and comments
-     */
-    private void migrateConfig() {
-        try {
-            // Get the actual config file
-            File configFile = new File(getDataFolder(), "config.yml");
-            
-            if (!configFile.exists()) {
-                return; // No migration needed if file doesn't exist
-            }
-            
-            // Load the default config from the jar resource (get it twice - once for text, once for YAML)
-            InputStream defaultConfigTextStream = getResource("config.yml");
-            if (defaultConfigTextStream == null) {
-                if (debugMode) {
-                    getLogger().warning("Could not load default config.yml from jar for migration");
-                }
-                return;
-            }
-            
-            // Read default config as text to preserve formatting
-            List<String> currentLines = new java.util.ArrayList<>(java.nio.file.Files.readAllLines(configFile.toPath()));
-            List<String> defaultLines = new java.util.ArrayList<>();
-            try (java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(defaultConfigTextStream))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    defaultLines.add(line);
-                }
-            }
-            
-            // Also load as YAML to check what's missing (get resource again - getResource returns new stream)
-            InputStream defaultConfigYamlStream = getResource("config.yml");
-            YamlConfiguration defaultConfig = YamlConfiguration.loadConfiguration(
-                new InputStreamReader(defaultConfigYamlStream));
-            YamlConfiguration currentConfig = YamlConfiguration.loadConfiguration(configFile);
-            
-            // Check config version - get default version
-            int defaultVersion = defaultConfig.getInt("config_version", 1);
-            int currentVersion = currentConfig.getInt("config_version", 0); // 0 means old config without version
-            
-            // If versions match and config has version field, no migration needed
-            if (currentVersion == defaultVersion && currentConfig.contains("config_version")) {
-                return; // Config is up to date
-            }
-            
-            // Simple merge approach: Use default config structure/comments, replace values with user's where they exist
-            // This preserves all comments and formatting from default, while keeping user's custom values
-            // Deprecated keys (in user config but not in default) are automatically removed
-            List<String> mergedLines = mergeConfigs(defaultLines, currentConfig, defaultConfig);
-            
-            // Check for and log deprecated keys that were removed
-            java.util.Set<String> deprecatedKeys = findDeprecatedKeys(currentConfig, defaultConfig);
-            if (!deprecatedKeys.isEmpty()) {
-                getLogger().info("Removed deprecated config keys: " + String.join(", ", deprecatedKeys));
-            }
-            
-            // Update config version
-            updateConfigVersion(mergedLines, defaultVersion, defaultLines, "config_version");
-            
-            // Write merged config
-            java.nio.file.Files.write(configFile.toPath(), mergedLines, 
-                java.nio.charset.StandardCharsets.UTF_8);
-            
-            if (debugMode) {
-                getLogger().info("Config migration completed - merged with default config, preserving user values and all comments");
+        hud.configure(config);
+        flightEngine.configure(config);
+        enchantMenu.configure(config, enchantmentRegistry, flightEngine, getLogger());
+        EntityTypeFilter entityFilter = EntityTypeFilter.compile(
+            config.isList("entities") ? config.getStringList("entities") : List.of("PLAYER"), getLogger());
+        damageListener.setEntityFilter(entityFilter);
+        debug.info(DebugLog.Category.CONFIG, () -> "Elytra effects apply to " + entityFilter.size() + " entity types");
+        lootEnchanter.configure(config, enchantmentRegistry, policy, getLogger());
+        rateLimiter.configure(config);
+        loadMonitor.configure(config);
+        // Worn elytras are verified again as the cache below is rebuilt
+        itemSignatures.configure(config, getLogger());
+        // Cached anvil results were computed under the previous policies
+        anvilResults.clear();
+        grindstoneListener.configure(config, flightEngine);
+        effects = EffectFormulas.load(config, getLogger());
+        // Cached reductions were computed with the previous formulas and mode
+        wornElytraCache.setVanillaProtection(!"legacy".equalsIgnoreCase(config.getString("protection.mode", "vanilla")));
+        debug.info(DebugLog.Category.CONFIG, () -> "Compiled loot table with " + lootEnchanter.size() + " enchantments");
+        for (FlightEnchant flight : FlightEnchant.all()) {
+            if (flightEngine.isEnabled(flight)) {
+                completions.add(flight.getKey());
             }
-            
-            // Reload config
-            reloadConfig();
-        } catch (Exception e) {
-            if (debugMode) {
-                getLogger().warning("Error during config migration: " + e.getMessage());
-                e.printStackTrace();
-            }
-            // Don't fail plugin startup if migration has issues
         }
+        completions.sort(null);
+        allowedCompletions = List.copyOf(completions);
+        // Cached permission snapshots depend on the allowed set
+        permissionCache.reset(enchantmentRegistry, allowedAnywhere,
+            Math.max(1L, config.getLong("permission-cache.refresh-seconds", 30L)) * 1000L);
+        debug.info(DebugLog.Category.CONFIG, () -> "Total allowed enchantments: " + allowedEnchantments.size());
     }
     
     /**
-     * Merge default config (with comments) with user config (with values)
-     * Simple approach: Use default structure/comments, replace values with user's where they exist
+     * Apply an "enchantments" section to a set - true adds, false removes
      */
-    private List<String> mergeConfigs(List<String> defaultLines, YamlConfiguration userConfig, YamlConfiguration defaultConfig) {
-        List<String> merged = new java.util.ArrayList<>();
-        
-        // Track current path for nested keys - store both name and indent level
-        java.util.Stack<Pair<String, Integer>> pathStack = new java.util.Stack<>();
-        
-        for (int i = 0; i < defaultLines.size(); i++) {
-            String line = defaultLines.get(i);
-            String trimmed = line.trim();
-            int currentIndent = line.length() - trimmed.length();
-            
-            // Always preserve comments and blank lines
-            if (trimmed.isEmpty() || line.startsWith("#")) {
-                merged.add(line);
+    private void readEnchantmentToggles(org.bukkit.configuration.ConfigurationSection section, Set<Enchantment> target) {
+        for (String key : section.getKeys(false)) {
+            int id = enchantmentRegistry.resolve(key);
+            if (id < 0) {
+                debug.warning(DebugLog.Category.CONFIG, () -> "Could not find enchantment: " + key);
                 continue;
             }
-            
-            // Pop sections we've left (based on indent level)
-            while (!pathStack.isEmpty() && currentIndent <= pathStack.peek().getValue()) {
-                pathStack.pop();
-            }
-            
-            // Check if this is a list item (starts with -)
-            if (trimmed.startsWith("-")) {
-                // This is a list item - preserve as-is (lists are handled at the parent key level)
-                merged.add(line);
-                continue;
-            }
-            
-            // Check if this is a key=value line
-            if (trimmed.contains(":") && !trimmed.startsWith("#")) {
-                int colonIndex = trimmed.indexOf(':');
-                String keyPart = trimmed.substring(0, colonIndex).trim();
-                String valuePart = trimmed.substring(colonIndex + 1).trim();
-                
-                // Build full path for nested keys
-                StringBuilder fullPathBuilder = new StringBuilder();
-                for (Pair<String, Integer> pathEntry : pathStack) {
-                    if (fullPathBuilder.length() > 0) {
-                        fullPathBuilder.append(".");
-                    }
-                    fullPathBuilder.append(pathEntry.getKey());
-                }
-                if (fullPathBuilder.length() > 0) {
-                    fullPathBuilder.append(".");
-                }
-                fullPathBuilder.append(keyPart);
-                String fullPath = fullPathBuilder.toString();
-                
-                // Check if this is a section (value is empty and next line is indented or is a list)
-                boolean isSection = valuePart.isEmpty();
-                boolean isList = false;
-                if (isSection && i + 1 < defaultLines.size()) {
-                    // Look ahead to see if next non-comment line is indented or is a list item
-                    for (int j = i + 1; j < defaultLines.size() && j < i + 10; j++) {
-                        String nextLine = defaultLines.get(j);
-                        String nextTrimmed = nextLine.trim();
-                        if (nextTrimmed.isEmpty() || nextLine.startsWith("#")) {
-                            continue;
-                        }
-                        int nextIndent = nextLine.length() - nextTrimmed.length();
-                        if (nextTrimmed.startsWith("-")) {
-                            // This is a list
-                            isList = true;
-                            isSection = true;
-                            break;
-                        } else if (nextIndent > currentIndent) {
-                            isSection = true;
-                            break;
-                        } else {
-                            // Next line is at same or less indent - not a section
-                            break;
-                        }
-                    }
-                }
-                
-                if (isSection) {
-                    // This is a section - check if user has values for it
-                    if (userConfig.contains(fullPath)) {
-                        Object userValue = userConfig.get(fullPath);
-                        
-                        // If it's a list, we need to handle it specially
-                        if (isList && userValue instanceof java.util.List) {
-                            // Add the key line
-                            merged.add(line);
-                            // Add list items from user config
-                            java.util.List<?> userList = (java.util.List<?>) userValue;
-                            for (Object item : userList) {
-                                String itemStr = formatYamlValue(item);
-                                // Remove quotes if they were added (lists often don't need them)
-                                if (itemStr.startsWith("\"") && itemStr.endsWith("\"")) {
-                                    itemStr = itemStr.substring(1, itemStr.length() - 1);
-                                }
-                                merged.add(" ".repeat(currentIndent + 2) + "- " + itemStr);
-                            }
-                            // Skip the default list items and their comments - we've already added user's
-                            // Skip until we're out of the list (next line at same or less indent)
-                            while (i + 1 < defaultLines.size()) {
-                                String nextLine = defaultLines.get(i + 1);
-                                String nextTrimmed = nextLine.trim();
-                                int nextIndent = nextLine.length() - nextTrimmed.length();
-                                
-                                // If it's a comment or blank line within the list, skip it
-                                if (nextTrimmed.isEmpty() || nextLine.startsWith("#")) {
-                                    if (nextIndent > currentIndent) {
-                                        i++; // Skip comment/blank within list
-                                    } else {
-                                        break; // Comment at section level or above - end of list
-                                    }
-                                } else if (nextTrimmed.startsWith("-") && nextIndent > currentIndent) {
-                                    i++; // Skip this list item
-                                } else {
-                                    break; // End of list
-                                }
-                            }
-                            pathStack.push(new Pair<>(keyPart, currentIndent));
-                            continue;
-                        } else {
-                            // Regular section - add it and push to path stack
-                            merged.add(line);
-                            pathStack.push(new Pair<>(keyPart, currentIndent));
-                        }
-                    } else {
-                        // User doesn't have this section - use default (with all comments and list items)
-                        merged.add(line);
-                        pathStack.push(new Pair<>(keyPart, currentIndent));
-                    }
-                } else {
-                    // This is a key=value line
-                    // Skip version keys - they're handled separately by updateConfigVersion
-                    if (keyPart.equals("config_version") || keyPart.equals("messages_version") || keyPart.equals("gui_version")) {
-                        // Use default version line - it will be updated by updateConfigVersion
-                        merged.add(line);
-                    } else if (userConfig.contains(fullPath)) {
-                        // User has this key - use their value but keep default's formatting
-                        Object userValue = userConfig.get(fullPath);
-                        String userValueStr = formatYamlValue(userValue);
-                        
-                        // Preserve inline comment if present
-                        String inlineComment = "";
-                        int commentIndex = valuePart.indexOf('#');
-                        if (commentIndex >= 0) {
-                            inlineComment = " " + valuePart.substring(commentIndex);
-                        }
-                        
-                        // Replace value while preserving indentation and inline comment
-                        merged.add(" ".repeat(currentIndent) + keyPart + ": " + userValueStr + inlineComment);
-                    } else {
-                        // User doesn't have this key - use default (with default value and comments)
-                        merged.add(line);
-                    }
-                }
+            Enchantment ench = enchantmentRegistry.get(id);
+            if (section.getBoolean(key, true)) {
+                target.add(ench);
+                debug.info(DebugLog.Category.CONFIG, () -> "Loaded allowed enchantment: " + key + " -> " + ench.getKey().getKey() + " (name: " + enchantmentRegistry.legacyName(id) + ")");
             } else {
-                // Not a key=value line - preserve as-is
-                merged.add(line);
+                target.remove(ench);
             }
         }
-        
-        return merged;
-    }
-    
-    /**
-     * Find deprecated keys that exist in user config but not in default config
-     * These keys will be removed during migration
-     */
-    private java.util.Set<String> findDeprecatedKeys(YamlConfiguration userConfig, YamlConfiguration defaultConfig) {
-        java.util.Set<String> deprecated = new java.util.HashSet<>();
-        findDeprecatedKeysRecursive(userConfig, defaultConfig, "", deprecated);
-        return deprecated;
     }
-    
-    /**
-     * Recursively find deprecated keys
-     */
-    private void findDeprecatedKeysRecursive(YamlConfiguration userConfig, YamlConfiguration defaultConfig, 
-                                             String basePath, java.util.Set<String> deprecated) {
-        for (String key : userConfig.getKeys(false)) {
-            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
-            
-            // Skip version keys - they're handled separately
-            if (key.equals("config_version") || key.equals("messages_version") || key.equals("gui_version")) {
-                continue;
-            }
-            
-            if (!defaultConfig.contains(fullPath)) {
-                // This key doesn't exist in default config - it's deprecated
-                deprecated.add(fullPath);
-            } else if (userConfig.isConfigurationSection(key) && defaultConfig.isConfigurationSection(fullPath)) {
-                // Both are sections - recursively check nested keys
-                findDeprecatedKeysRecursive(
-                    userConfig.getConfigurationSection(key),
-                    defaultConfig.getConfigurationSection(fullPath),
-                    fullPath,
-                    deprecated
-                );
+
+    private void loadMessages() {
+        PolicyBundle loaded = bundle;
+        if (loaded != null) {
+            messageSource = loaded.getMessages();
+            translationSources = loaded.getTranslations();
+        } else {
+            File messagesFile = new File(getDataFolder(), "messages.yml");
+            if (!messagesFile.exists()) {
+                saveResource("messages.yml", false);
             }
+            messageSource = YamlConfiguration.loadConfiguration(messagesFile);
+            translationSources = MessageBundles.readTranslations(getDataFolder());
+        }
+        messageBundles.load(messageSource, translationSources, getLogger(), debug.isEnabled(DebugLog.Category.CONFIG));
+        // Locale ids change when bundles are reloaded
+        for (Player player : getServer().getOnlinePlayers()) {
+            messageBundles.setLocale(player, player.getLocale());
         }
     }
-    
+
     /**
-     * Recursive helper for configuration sections
+     * Get a message in the recipient's language with placeholders filled in,
+     * e.g. msg(sender, MessageKey.SUCCESS, "%enchant%", name, "%level%", "3")
      */
-    private void findDeprecatedKeysRecursive(org.bukkit.configuration.ConfigurationSection userSection,
-                                            org.bukkit.configuration.ConfigurationSection defaultSection,
-                                            String basePath, java.util.Set<String> deprecated) {
-        for (String key : userSection.getKeys(false)) {
-            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
-            
-            // Skip version keys - they're handled separately
-            if (key.equals("config_version") || key.equals("messages_version") || key.equals("gui_version")) {
-                continue;
-            }
-            
-            if (!defaultSection.contains(key)) {
-                // This key doesn't exist in default config - it's deprecated
-                deprecated.add(fullPath);
-            } else if (userSection.isConfigurationSection(key) && defaultSection.isConfigurationSection(key)) {
-                // Both are sections - recursively check nested keys
-                findDeprecatedKeysRecursive(
-                    userSection.getConfigurationSection(key),
-                    defaultSection.getConfigurationSection(key),
-                    fullPath,
-                    deprecated
-                );
-            }
+    String msg(CommandSender recipient, MessageKey key, String... placeholders) {
+        return messageBundles.get(recipient, key).render(placeholders);
+    }
+
+    private UpdateChecker updateChecker() {
+        if (updateChecker == null) {
+            updateChecker = new UpdateChecker(this, debug, getFile().getName());
         }
+        return updateChecker;
     }
-    
-    // Simple Pair class for path tracking
-    private static class Pair<K, V> {
-        private final K key;
-        private final V value;
-        
-        public Pair(K key, V value) {
-            this.key = key;
-            this.value = value;
+
+    @Override
+    public FileConfiguration getConfig() {
+        // Nodes running from a policy bundle never read config.yml
+        PolicyBundle loaded = bundle;
+        return loaded != null ? loaded.getConfig() : super.getConfig();
+    }
+
+    @Override
+    public void reloadConfig() {
+        if (bundlePath != null) {
+            readBundle();
         }
-        
-        public K getKey() { return key; }
-        public V getValue() { return value; }
+        if (bundle == null) {
+            super.reloadConfig();
+        }
+        loadAllowedEnchantments();
     }
     
     /**
-     * Format a YAML value as a string
+     * Handle /elytraenchants bundle export [file]
      */
-    private String formatYamlValue(Object value) {
-        if (value == null) {
-            return "null";
-        } else if (value instanceof String) {
-            // Check if it needs quotes
-            String str = (String) value;
-            if (str.contains(":") || str.contains("#") || str.trim().isEmpty() || 
-                str.equalsIgnoreCase("true") || str.equalsIgnoreCase("false") || 
-                str.equalsIgnoreCase("null") || str.matches("^-?\\d+$")) {
-                return "\"" + str.replace("\"", "\\\"") + "\"";
-            }
-            return str;
-        } else if (value instanceof Boolean) {
-            return value.toString();
-        } else if (value instanceof Number) {
-            return value.toString();
-        } else if (value instanceof java.util.List) {
-            // Format list
-            java.util.List<?> list = (java.util.List<?>) value;
-            if (list.isEmpty()) {
-                return "[]";
-            }
-            // For lists, we'll just return the first approach - inline if simple
-            if (list.size() == 1 && (list.get(0) instanceof String || list.get(0) instanceof Number)) {
-                return "[" + formatYamlValue(list.get(0)) + "]";
-            }
-            // Multi-line list - return as inline for now, could be improved
-            StringBuilder sb = new StringBuilder("[");
-            for (int i = 0; i < list.size(); i++) {
-                if (i > 0) sb.append(", ");
-                sb.append(formatYamlValue(list.get(i)));
+    private void handleBundleCommand(CommandSender sender, String[] args) {
+        if (args.length < 2 || !args[1].equalsIgnoreCase("export")) {
+            sender.sendMessage(msg(sender, MessageKey.BUNDLE_USAGE));
+            return;
+        }
+        // Only a file name is taken, written next to the configured bundle or into the data folder
+        java.nio.file.Path directory = bundlePath != null && bundlePath.toAbsolutePath().getParent() != null
+            ? bundlePath.toAbsolutePath().getParent() : getDataFolder().toPath();
+        java.nio.file.Path target;
+        if (args.length > 2) {
+            String name = args[2];
+            if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.contains("..")) {
+                sender.sendMessage(msg(sender, MessageKey.BUNDLE_ERROR, "%error%", "not a file name in " + directory + ": " + name));
+                return;
             }
-            sb.append("]");
-            return sb.toString();
+            target = directory.resolve(name);
         } else {
-            return value.toString();
+            target = bundlePath != null ? bundlePath : directory.resolve("policy.eebundle");
+        }
+        PolicyBundle current = bundle;
+        // Versions only move forward, even if clocks differ between exporting nodes
+        long version = Math.max(System.currentTimeMillis(), current == null ? 0L : current.getVersion() + 1);
+        byte[] encoded;
+        try {
+            encoded = PolicyBundle.encode(version, getConfig(), messageSource, translationSources);
+        } catch (IOException e) {
+            sender.sendMessage(msg(sender, MessageKey.BUNDLE_ERROR, "%error%", String.valueOf(e.getMessage())));
+            return;
         }
+        // The shared directory may be a network mount - keep the write off the main thread
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            try {
+                PolicyBundle.write(target, encoded);
+                getServer().getScheduler().runTask(this, () -> sender.sendMessage(msg(sender, MessageKey.BUNDLE_EXPORTED,
+                    "%version%", String.valueOf(version), "%file%", target.toString(), "%bytes%", String.valueOf(encoded.length))));
+            } catch (IOException e) {
+                getServer().getScheduler().runTask(this, () ->
+                    sender.sendMessage(msg(sender, MessageKey.BUNDLE_ERROR, "%error%", String.valueOf(e.getMessage()))));
+            }
+        });
     }
     
+    @Override
+    public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        wornElytraCache.clear();
+        loadMonitor.stop();
+        timedEnchants.stop();
+        stopTrace();
+        if (flightEngine != null) {
+            flightEngine.clear();
+        }
+        debug.info(DebugLog.Category.CONFIG, () -> "ElytraEnchantsPlugin disabled!");
+        debug.shutdown();
+    }
+
     /**
-     * Update config version in the merged lines
+     * Start recording an event trace into the traces folder
+     * Returns the recorder, or null if a trace is already being recorded
      */
-    private void updateConfigVersion(List<String> lines, int newVersion, List<String> defaultLines, String versionKey) {
-        // Look for version line and update it, or add it if missing
-        boolean found = false;
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-            String trimmed = line.trim();
-            
-            // Check if this is the version line
-            if (trimmed.startsWith(versionKey + ":") || trimmed.startsWith(versionKey + " ")) {
-                // Update the version value, preserving indentation and any inline comments
-                int indent = line.length() - trimmed.length();
-                String restOfLine = "";
-                int colonIndex = trimmed.indexOf(':');
-                if (colonIndex >= 0 && colonIndex + 1 < trimmed.length()) {
-                    String afterColon = trimmed.substring(colonIndex + 1).trim();
-                    // Check if there's an inline comment
-                    int commentIndex = afterColon.indexOf('#');
-                    if (commentIndex >= 0) {
-                        restOfLine = " #" + afterColon.substring(commentIndex + 1);
-                    }
-                }
-                lines.set(i, " ".repeat(indent) + versionKey + ": " + newVersion + restOfLine);
-                found = true;
-                break;
-            }
+    private TraceRecorder startTrace() {
+        if (traceRecorder != null) {
+            return null;
         }
-        
-        // If not found, add it after the header comment (usually line 2-3)
-        if (!found) {
-            // Extract comment from default config
-            String commentLine = "# Config version - do not modify";
-            for (int i = 0; i < defaultLines.size(); i++) {
-                String line = defaultLines.get(i);
-                String trimmed = line.trim();
-                // Look for version key in default config
-                if (trimmed.startsWith(versionKey + ":") || trimmed.startsWith(versionKey + " ")) {
-                    // Check if there's a comment line before it
-                    if (i > 0) {
-                        String prevLine = defaultLines.get(i - 1);
-                        if (prevLine.trim().startsWith("#")) {
-                            commentLine = prevLine;
-                        }
-                    }
-                    break;
-                }
-            }
-            
-            int insertIndex = 0;
-            // Find a good place to insert - after first comment block, before first section
-            for (int i = 0; i < lines.size(); i++) {
-                String line = lines.get(i);
-                String trimmed = line.trim();
-                // Stop at first non-comment, non-blank line that's not the version key
-                if (!trimmed.isEmpty() && !line.startsWith("#") && !trimmed.startsWith(versionKey)) {
-                    insertIndex = i;
-                    break;
-                }
-            }
-            // Insert version line with comment from default config
-            lines.add(insertIndex, commentLine);
-            lines.add(insertIndex + 1, versionKey + ": " + newVersion);
-            // Add blank line after if needed
-            if (insertIndex + 2 < lines.size() && !lines.get(insertIndex + 2).trim().isEmpty()) {
-                lines.add(insertIndex + 2, "");
-            }
+        File traceDir = new File(getDataFolder(), "traces");
+        if (!traceDir.exists()) {
+            traceDir.mkdirs();
         }
+        String name = "trace-" + new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date()) + ".eetrace";
+        traceRecorder = new TraceRecorder(new File(traceDir, name),
+            getConfig().getInt("trace.buffer-size", 16384), getLogger());
+        traceRecorder.start();
+        damageListener.setTraceRecorder(traceRecorder);
+        debug.info(DebugLog.Category.COMMAND, () -> "Started event trace: " + name);
+        return traceRecorder;
     }
     
     /**
-     * Migrate a specific config file (messages.yml, etc.)
-     * Uses the same simple merge approach as config.yml
+     * Stop the active trace recorder and flush it to disk
+     * Returns the stopped recorder, or null if none was running
      */
-    private void migrateConfigFile(String filename) {
-        try {
-            File configFile = new File(getDataFolder(), filename);
-            
-            // Save default config if it doesn't exist
-            if (!configFile.exists()) {
-                saveResource(filename, false);
-            }
-            
-            // Load default config from jar
-            InputStream defaultConfigTextStream = getResource(filename);
-            if (defaultConfigTextStream == null) {
-                return; // No default file in jar, skip
-            }
-            
-            // Read default config as text to preserve formatting
-            List<String> defaultLines = new java.util.ArrayList<>();
-            try (java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(defaultConfigTextStream))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    defaultLines.add(line);
-                }
-            }
-            
-            // Load as YAML to get user values
-            InputStream defaultConfigYamlStream = getResource(filename);
-            YamlConfiguration defaultConfig = YamlConfiguration.loadConfiguration(
-                new InputStreamReader(defaultConfigYamlStream));
-            YamlConfiguration currentConfig = YamlConfiguration.loadConfiguration(configFile);
-            
-            // Check config version - get default version (use filename + "_version" as key)
-            String versionKey = filename.replace(".yml", "_version");
-            int defaultVersion = defaultConfig.getInt(versionKey, 1);
-            int currentVersion = currentConfig.getInt(versionKey, 0); // 0 means old config without version
-            
-            // If versions match and config has version field, no migration needed
-            if (currentVersion == defaultVersion && currentConfig.contains(versionKey)) {
-                return; // Config is up to date
-            }
-            
-            // Simple merge: Use default structure/comments, replace values with user's where they exist
-            // Deprecated keys (in user config but not in default) are automatically removed
-            List<String> mergedLines = mergeConfigs(defaultLines, currentConfig, defaultConfig);
-            
-            // Check for and log deprecated keys that were removed
-            java.util.Set<String> deprecatedKeys = findDeprecatedKeys(currentConfig, defaultConfig);
-            if (!deprecatedKeys.isEmpty()) {
-                getLogger().info("Removed deprecated keys from " + filename + ": " + String.join(", ", deprecatedKeys));
-            }
-            
-            // Update config version
-            updateConfigVersion(mergedLines, defaultVersion, defaultLines, versionKey);
-            
-            // Write merged config
-            java.nio.file.Files.write(configFile.toPath(), mergedLines, 
-                java.nio.charset.StandardCharsets.UTF_8);
-            
-            if (debugMode) {
-                getLogger().info("Migrated " + filename + " - merged with default, preserving user values and all comments");
-            }
-        } catch (Exception e) {
-            if (debugMode) {
-                getLogger().warning("Error migrating " + filename + ": " + e.getMessage());
-            }
-            // Don't fail plugin startup if migration has issues
+    private TraceRecorder stopTrace() {
+        TraceRecorder recorder = traceRecorder;
+        if (recorder == null) {
+            return null;
         }
+        traceRecorder = null;
+        damageListener.setTraceRecorder(null);
+        recorder.stop();
+        debug.info(DebugLog.Category.COMMAND, () -> "Stopped event trace: " + recorder.getFile().getName() + " (" + recorder.getWritten() + " events, " + recorder.getDropped() + " dropped)");
+        return recorder;
     }
     
     /**
-     * Recursively adds missing keys from default config to current config
+     * Handle /elytraenchants trace <start|stop|status|replay <file>>
      */
-    private boolean addMissingKeys(org.bukkit.configuration.ConfigurationSection defaultSection, 
-                                   YamlConfiguration currentConfig, String basePath) {
-        boolean needsSave = false;
-        
-        // Iterate through keys at this level only
-        for (String key : defaultSection.getKeys(false)) {
-            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
-            
-            // Skip if the key already exists
-            if (currentConfig.contains(fullPath)) {
-                continue;
+    private void handleTraceCommand(CommandSender sender, String[] args) {
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        switch (action) {
+            case "start": {
+                TraceRecorder recorder = startTrace();
+                if (recorder == null) {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_ALREADY_RUNNING));
+                } else {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_STARTED, "%file%", recorder.getFile().getName()));
+                }
+                break;
             }
-            
-            // Check if this is a section or a value
-            if (defaultSection.isConfigurationSection(key)) {
-                // Recursively check section
-                boolean sectionNeedsSave = addMissingKeys(
-                    defaultSection.getConfigurationSection(key),
-                    currentConfig,
-                    fullPath
-                );
-                needsSave = needsSave || sectionNeedsSave;
-            } else {
-                // This is a value - add it
-                Object defaultValue = defaultSection.get(key);
-                currentConfig.set(fullPath, defaultValue);
-                
-                if (debugMode) {
-                    getLogger().info("Adding missing config option: " + fullPath + " = " + defaultValue);
+            case "stop": {
+                TraceRecorder recorder = stopTrace();
+                if (recorder == null) {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_NOT_RUNNING));
+                } else {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_STOPPED,
+                        "%events%", String.valueOf(recorder.getWritten()),
+                        "%dropped%", String.valueOf(recorder.getDropped())));
                 }
-                needsSave = true;
+                break;
             }
-        }
-        
-        return needsSave;
-    }
-    
-    /**
-     * Collect missing keys from a section without modifying the config
-     */
-    private void collectMissingKeys(org.bukkit.configuration.ConfigurationSection defaultSection,
-                                   YamlConfiguration currentConfig, String basePath, String keyPrefix,
-                                   List<String> missingKeys) {
-        for (String key : defaultSection.getKeys(false)) {
-            String fullPath = basePath.isEmpty() ? key : basePath + "." + key;
-            String displayPath = keyPrefix.isEmpty() ? key : keyPrefix + "." + key;
-            
-            // Skip if the key already exists
-            if (currentConfig.contains(fullPath)) {
-                // If it's a section, check nested keys
-                if (defaultSection.isConfigurationSection(key)) {
-                    collectMissingKeys(
-                        defaultSection.getConfigurationSection(key),
-                        currentConfig,
-                        fullPath,
-                        displayPath,
-                        missingKeys
-                    );
+            case "status": {
+                if (traceRecorder == null) {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_NOT_RUNNING));
+                } else {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_STATUS,
+                        "%file%", traceRecorder.getFile().getName(),
+                        "%events%", String.valueOf(traceRecorder.getWritten()),
+                        "%dropped%", String.valueOf(traceRecorder.getDropped())));
                 }
-                continue;
+                break;
             }
-            
-            // This is a missing key - add it to the list
-            missingKeys.add(displayPath);
-            
-            // If it's a section, also check nested keys
-            if (defaultSection.isConfigurationSection(key)) {
-                collectMissingKeys(
-                    defaultSection.getConfigurationSection(key),
-                    currentConfig,
-                    fullPath,
-                    displayPath,
-                    missingKeys
-                );
+            case "replay": {
+                if (args.length < 3) {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_USAGE));
+                    break;
+                }
+                String name = args[2];
+                File traceFile = new File(new File(getDataFolder(), "traces"), name);
+                if (name.contains("/") || name.contains("\\") || name.contains("..") || !traceFile.isFile()) {
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_FILE_NOT_FOUND, "%file%", name));
+                    break;
+                }
+                sender.sendMessage(msg(sender, MessageKey.TRACE_REPLAY_STARTED, "%file%", name));
+                // Decoded off the main thread and replayed through the handlers on it, a tick budget at a time.
+                // A player running the replay stands in for recorded players in ElytraReductionEvent
+                TraceReplayer.start(this, traceFile, sender instanceof Player player ? player : null, result -> {
+                    double ms = result.elapsedNanos / 1_000_000.0;
+                    long rate = result.elapsedNanos == 0 ? 0 : result.events * 1_000_000_000L / result.elapsedNanos;
+                    sender.sendMessage(msg(sender, MessageKey.TRACE_REPLAY_RESULT,
+                        "%events%", String.valueOf(result.events),
+                        "%ms%", String.format("%.2f", ms),
+                        "%rate%", String.valueOf(rate),
+                        "%mismatches%", String.valueOf(result.mismatches)));
+                    debug.info(DebugLog.Category.COMMAND, () -> "Replayed " + name + " (recorded on " + result.serverVersion + "): " + result.events + " events, "
+                        + result.mismatches + " mismatches, " + result.thornsProcs + " thorns procs, " + result.unresolved + " unresolved");
+                }, e -> sender.sendMessage(msg(sender, MessageKey.TRACE_REPLAY_ERROR, "%error%", String.valueOf(e.getMessage()))));
+                break;
             }
+            default:
+                sender.sendMessage(msg(sender, MessageKey.TRACE_USAGE));
+                break;
         }
     }
-    
+
     /**
-     * Extract a key with its comments from default config lines
+     * Handle player join event - cache permissions and notify about available updates
      */
-    private List<String> extractKeyWithComments(List<String> defaultLines, String sectionName, String keyPath) {
-        List<String> result = new java.util.ArrayList<>();
-        
-        // Split key path (e.g., "PROTECTION_ENVIRONMENTAL" or "nested.key")
-        String[] keyParts = keyPath.split("\\.");
-        String targetKey = keyParts[keyParts.length - 1]; // Last part is the actual key
-        
-        // Find the section in default config
-        boolean inSection = false;
-        int sectionIndent = -1;
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        permissionCache.refresh(event.getPlayer());
+        messageBundles.setLocale(event.getPlayer(), event.getPlayer().getLocale());
+        // Rentals may have run out while the player was offline
+        checkWornElytra(event.getPlayer());
         
-        for (int i = 0; i < defaultLines.size(); i++) {
-            String line = defaultLines.get(i);
-            String trimmed = line.trim();
-            
-            // Find section start
-            if (!inSection && trimmed.equals(sectionName + ":")) {
-                inSection = true;
-                sectionIndent = line.length() - trimmed.length();
-                continue;
-            }
-            
-            if (inSection) {
-                // Check if we've left the section
-                if (!trimmed.isEmpty() && !line.startsWith("#")) {
-                    int indent = line.length() - trimmed.length();
-                    if (indent <= sectionIndent && !trimmed.startsWith("#")) {
-                        break; // Left the section
-                    }
-                }
-                
-                // Look for the target key
-                if (trimmed.startsWith(targetKey + ":") || trimmed.startsWith(targetKey + " ")) {
-                    // Found the key - collect preceding comments
-                    int startIndex = i;
-                    // Go backwards to find all comments before this key
-                    while (startIndex > 0) {
-                        String prevLine = defaultLines.get(startIndex - 1);
-                        String prevTrimmed = prevLine.trim();
-                        if (prevTrimmed.isEmpty()) {
-                            // Blank line - include it if it's between comments
-                            if (startIndex > 1 && defaultLines.get(startIndex - 2).trim().startsWith("#")) {
-                                startIndex--;
-                                continue;
-                            }
-                            break;
-                        } else if (prevLine.startsWith("#")) {
-                            // Comment line - include it
-                            startIndex--;
-                        } else {
-                            // Not a comment - stop
-                            break;
-                        }
-                    }
-                    
-                    // Extract from startIndex to i (including the key line)
-                    for (int j = startIndex; j <= i; j++) {
-                        result.add(defaultLines.get(j));
-                    }
-                    
-                    // Also include the next line if it's a continuation
-                    if (i + 1 < defaultLines.size()) {
-                        String nextLine = defaultLines.get(i + 1);
-                        String nextTrimmed = nextLine.trim();
-                        int nextIndent = nextLine.length() - nextTrimmed.length();
-                        if (nextIndent > sectionIndent && !nextTrimmed.startsWith("#") && !nextTrimmed.isEmpty()) {
-                            result.add(nextLine);
-                        }
-                    }
-                    
-                    break;
-                }
-            }
+        // Notify OP'd players about available updates with a delay to show after MOTD
+        if (updateChecker != null) {
+            updateChecker.notifyOnJoin(event.getPlayer());
         }
-        
-        return result;
     }
 
-    @Override
-    public void onDisable() {
-        if (debugMode) {
-            getLogger().info("ElytraEnchantsPlugin disabled!");
-        }
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        permissionCache.invalidate(event.getPlayer().getUniqueId());
+        flightEngine.stopGliding(event.getPlayer().getUniqueId());
+        wornElytraCache.invalidate(event.getPlayer().getUniqueId());
+        messageBundles.remove(event.getPlayer().getUniqueId());
+        rateLimiter.release(event.getPlayer().getUniqueId());
+        enchantMenu.closed(event.getPlayer().getUniqueId());
+        timedEnchants.forget(event.getPlayer().getUniqueId());
+        itemSignatures.forget(event.getPlayer().getUniqueId());
     }
 
     /**
-     * Public method to manually check for updates (can be called from commands)
+     * A timed enchantment on a player's worn elytra is due
      */
-    public void checkForUpdatesManually() {
-        checkForUpdatesManually(null);
+    private void onTimedEnchantDue(UUID playerId) {
+        Player player = getServer().getPlayer(playerId);
+        if (player != null) {
+            checkWornElytra(player);
+        }
     }
-    
+
     /**
-     * Public method to manually check for updates with player feedback
+     * Re-check a player's worn elytra outside of the worn-elytra cache
      */
-    public void checkForUpdatesManually(org.bukkit.entity.Player player) {
-        if (getConfig().getBoolean("update-checker.enabled", true)) {
-            if (debugMode) {
-                getLogger().info("Manually checking for updates...");
-            }
-            checkForUpdates(player);
-        } else {
-            if (debugMode) {
-                getLogger().info("Update checking is disabled in config");
-            }
-            if (player != null) {
-                player.sendMessage("§c[ElytraEnchants] Update checking is disabled in config");
+    private void checkWornElytra(Player player) {
+        ItemStack chest = player.getInventory().getChestplate();
+        if (chest == null || chest.getType() != Material.ELYTRA) {
+            timedEnchants.forget(player.getUniqueId());
+            return;
+        }
+        if (refreshWornElytra(player, chest)) {
+            player.getInventory().setChestplate(chest);
+            wornElytraCache.invalidate(player.getUniqueId());
+            FlightEngine.Glider glider = flightEngine.getGlider(player.getUniqueId());
+            if (glider != null) {
+                glider.refreshIn = 0;
             }
         }
     }
-    
-    /**
-     * Check for plugin updates using SpigotMC API
-     */
-    private void checkForUpdates() {
-        checkForUpdates(null);
-    }
-    
+
     /**
-     * Check for plugin updates using SpigotMC API with player feedback
+     * Expire rentals on a worn elytra, watch it for the next expiry and act on
+     * a failed signature check; returns whether the item was changed
      */
-    private void checkForUpdates(org.bukkit.entity.Player player) {
-        getServer().getScheduler().runTaskAsynchronously(this, () -> {
-            try {
-                String url = "https://api.spigotmc.org/legacy/update.php?resource=" + SPIGOT_RESOURCE_ID;
-                java.net.URLConnection connection = java.net.URI.create(url).toURL().openConnection();
-                connection.setRequestProperty("User-Agent", "ElytraEnchants-UpdateChecker");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
-                
-                String latestVersion;
-                try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(connection.getInputStream()))) {
-                    latestVersion = reader.readLine();
-                }
-                
-                String currentVersion = getDescription().getVersion();
-                
-                if (debugMode) {
-                    getLogger().info("[DEBUG] Update check - API returned: '" + latestVersion + "', Current: '" + currentVersion + "'");
-                }
-                
-                if (isNewerVersion(latestVersion, currentVersion)) {
-                    // Store update info for new players
-                    this.latestVersion = latestVersion;
-                    this.updateAvailable = true;
-                    
-                    getServer().getScheduler().runTask(this, () -> {
-                        String updateUrl = "https://www.spigotmc.org/resources/" + SPIGOT_RESOURCE_ID;
-                        
-                        if (debugMode) {
-                            getLogger().info("§a[ElytraEnchants] Update available: " + latestVersion);
-                            getLogger().info("§a[ElytraEnchants] Current version: " + currentVersion);
-                            getLogger().info("§a[ElytraEnchants] Download: " + updateUrl);
-                        }
-                        
-                        // Send update message to the player who requested the check
-                        if (player != null) {
-                            player.sendMessage(msg("update-available").replace("%latest%", latestVersion).replace("%current%", currentVersion));
-                            player.sendMessage(msg("update-download").replace("%url%", updateUrl));
-                        }
-                        
-                        // Send update message to all online OP'd players with a delay to show after MOTD
-                        getServer().getScheduler().runTaskLater(this, () -> {
-                            for (org.bukkit.entity.Player onlinePlayer : getServer().getOnlinePlayers()) {
-                                if (onlinePlayer.isOp() && (player == null || !onlinePlayer.equals(player))) {
-                                    onlinePlayer.sendMessage(msg("update-available").replace("%latest%", latestVersion).replace("%current%", currentVersion));
-                                    onlinePlayer.sendMessage(msg("update-download").replace("%url%", updateUrl));
-                                }
-                            }
-                        }, 100L); // 5 seconds delay (100 ticks = 5 seconds)
-                    });
-                } else {
-                    // Plugin is up to date
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Plugin is up to date (version " + currentVersion + ")");
-                    }
-                    
-                    // Send "up to date" message to the player who requested the check
-                    if (player != null) {
-                        getServer().getScheduler().runTask(this, () -> {
-                            player.sendMessage(msg("update-up-to-date").replace("%version%", currentVersion));
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                if (debugMode) {
-                    getLogger().warning("Could not check for updates: " + e.getMessage());
-                }
-                
-                // Send error message to the player who requested the check
-                if (player != null) {
-                    getServer().getScheduler().runTask(this, () -> {
-                        player.sendMessage(msg("update-error").replace("%error%", e.getMessage()));
-                    });
-                }
+    private boolean refreshWornElytra(Player player, ItemStack chest) {
+        boolean changed = false;
+        if (expireTimed(chest, System.currentTimeMillis())) {
+            player.sendMessage(msg(player, MessageKey.ENCHANT_EXPIRED));
+            changed = true;
+        }
+        timedEnchants.watch(player, chest);
+        ItemSignatures.Verdict verdict = itemSignatures.check(player, chest);
+        ItemSignatures.Action action = verdict == null ? ItemSignatures.Action.IGNORE : itemSignatures.actionFor(verdict);
+        if (action != ItemSignatures.Action.IGNORE) {
+            getLogger().warning(player.getName() + " is wearing an elytra with "
+                + (verdict == ItemSignatures.Verdict.TAMPERED ? "a signature that does not match" : "unsigned enchantments")
+                + ": " + chest.getEnchantments() + (action == ItemSignatures.Action.STRIP ? " - enchantments removed" : ""));
+            if (action == ItemSignatures.Action.STRIP) {
+                itemSignatures.strip(chest, flightEngine);
+                timedEnchants.forget(player.getUniqueId());
+                player.sendMessage(msg(player, MessageKey.ENCHANTS_REMOVED));
+                changed = true;
             }
-        });
+        }
+        return changed;
     }
-    
+
     /**
-     * Compare version strings to check if latest is newer
-     * Handles dev versions (e.g., "1.1.4-Dev2a") by comparing base version numbers
-     * Dev builds will be prompted to update to release versions of the same base version
+     * Expire due rentals on an item, keeping a valid signature valid
      */
-    private boolean isNewerVersion(String latest, String current) {
-        if (latest == null || current == null) {
-            if (debugMode) {
-                getLogger().info("[DEBUG] Version comparison failed - null values: latest=" + latest + ", current=" + current);
-            }
+    boolean expireTimed(ItemStack item, long now) {
+        if (!timedEnchants.isDue(item, now)) {
             return false;
         }
-        
-        // Store original strings to check for dev/release status
-        String originalLatest = latest.trim();
-        String originalCurrent = current.trim();
-        
-        // Clean version strings - remove common prefixes like "Alpha", "Beta", "v", etc.
-        String cleanLatest = originalLatest.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
-        String cleanCurrent = originalCurrent.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
-        
-        // Also handle case variations
-        cleanLatest = cleanLatest.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
-        cleanCurrent = cleanCurrent.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
-        
-        // Check if versions have dev/build suffixes before removing them
-        boolean latestIsDev = cleanLatest.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
-        boolean currentIsDev = cleanCurrent.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
-        
-        // Remove dev/build suffixes for base version comparison
-        String baseLatest = cleanLatest.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
-        String baseCurrent = cleanCurrent.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
-        
-        if (debugMode) {
-            getLogger().info("[DEBUG] Comparing versions - Latest: '" + originalLatest + "' -> base: '" + baseLatest + "' (dev: " + latestIsDev + "), Current: '" + originalCurrent + "' -> base: '" + baseCurrent + "' (dev: " + currentIsDev + ")");
+        boolean signed = itemSignatures.verify(item) == ItemSignatures.Verdict.VALID;
+        timedEnchants.expire(item, now);
+        if (signed) {
+            itemSignatures.sign(item);
         }
-        
-        // Simple version comparison - handles basic semantic versioning (1.0.2 vs 1.0.3)
-        try {
-            String[] latestParts = baseLatest.split("\\.");
-            String[] currentParts = baseCurrent.split("\\.");
-            
-            int maxLength = Math.max(latestParts.length, currentParts.length);
-            
-            for (int i = 0; i < maxLength; i++) {
-                // Extract numeric part from each version segment (handles "4-Dev2a" -> "4")
-                String latestPartStr = i < latestParts.length ? latestParts[i].replaceAll("[^0-9].*$", "") : "0";
-                String currentPartStr = i < currentParts.length ? currentParts[i].replaceAll("[^0-9].*$", "") : "0";
-                
-                int latestPart = latestPartStr.isEmpty() ? 0 : Integer.parseInt(latestPartStr);
-                int currentPart = currentPartStr.isEmpty() ? 0 : Integer.parseInt(currentPartStr);
-                
-                if (debugMode) {
-                    getLogger().info("[DEBUG] Comparing part " + i + ": " + latestPart + " vs " + currentPart);
-                }
-                
-                if (latestPart > currentPart) {
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Latest version is newer at position " + i);
-                    }
-                    return true;
-                } else if (latestPart < currentPart) {
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Current version is newer at position " + i);
-                    }
-                    return false; // Current version is newer, don't prompt for update
-                }
-            }
-            
-            // Base versions are equal - check if we should update from dev to release or dev to dev
-            if (baseLatest.equals(baseCurrent)) {
-                // If latest is a release version and current is a dev version (same base), prompt for update
-                if (!latestIsDev && currentIsDev) {
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Base versions equal - latest is release, current is dev, prompting for update");
-                    }
-                    return true; // Dev build should update to release version
-                } 
-                // If both are dev versions, compare dev numbers and letters
-                else if (latestIsDev && currentIsDev) {
-                    // Extract dev version info (e.g., "Dev3b" -> number=3, letter='b')
-                    int latestDevNum = extractDevNumber(cleanLatest);
-                    int currentDevNum = extractDevNumber(cleanCurrent);
-                    char latestDevLetter = extractDevLetter(cleanLatest);
-                    char currentDevLetter = extractDevLetter(cleanCurrent);
-                    
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Both are dev versions - Latest: Dev" + latestDevNum + latestDevLetter + ", Current: Dev" + currentDevNum + currentDevLetter);
-                    }
-                    
-                    // Compare dev numbers first
-                    if (latestDevNum > currentDevNum) {
-                        if (debugMode) {
-                            getLogger().info("[DEBUG] Latest dev number is higher, prompting for update");
-                        }
-                        return true; // Newer dev number
-                    } else if (latestDevNum < currentDevNum) {
-                        if (debugMode) {
-                            getLogger().info("[DEBUG] Current dev number is higher, no update needed");
-                        }
-                        return false; // Current dev number is higher
-                    } else {
-                        // Dev numbers are equal, compare letters (a < b)
-                        if (latestDevLetter > currentDevLetter) {
-                            if (debugMode) {
-                                getLogger().info("[DEBUG] Latest dev letter is higher, prompting for update");
-                            }
-                            return true; // Newer dev letter (e.g., b > a)
-                        } else {
-                            if (debugMode) {
-                                getLogger().info("[DEBUG] Current dev version is same or newer, no update needed");
-                            }
-                            return false; // Same or older dev letter
-                        }
-                    }
-                } else {
-                    if (debugMode) {
-                        getLogger().info("[DEBUG] Base versions equal - no update needed");
-                    }
-                    return false; // Both are release versions, or current is release and latest is dev (shouldn't happen)
-                }
-            }
-            
-            if (debugMode) {
-                getLogger().info("[DEBUG] Versions are equal");
-            }
-            return false; // Versions are equal
-        } catch (NumberFormatException e) {
-            if (debugMode) {
-                getLogger().warning("[DEBUG] Version parsing failed, using string comparison: " + e.getMessage());
-            }
-            // If version parsing fails, do simple string comparison
-            boolean result = !baseLatest.equals(baseCurrent);
-            if (debugMode) {
-                getLogger().info("[DEBUG] String comparison result: " + result);
+        return true;
+    }
+
+    @EventHandler
+    public void onLocaleChange(PlayerLocaleChangeEvent event) {
+        messageBundles.setLocale(event.getPlayer(), event.getLocale());
+    }
+
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        worldPolicies.registerWorld(event.getWorld());
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        worldPolicies.unregisterWorld(event.getWorld());
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onLootGenerate(LootGenerateEvent event) {
+        if (!lootEnchanter.rollsChests()) return;
+        CompiledPolicy worldPolicy = worldPolicies.get(event.getWorld());
+        if (!worldPolicy.isEnabled()) return;
+        for (ItemStack item : event.getLoot()) {
+            if (item != null && item.getType() == Material.ELYTRA && item.getEnchantments().isEmpty()
+                    && lootEnchanter.roll(item, worldPolicy)) {
+                itemSignatures.sign(item);
             }
-            return result;
         }
     }
-    
-    /**
-     * Extract the dev number from a version string (e.g., "1.1.4-Dev3b" -> 3)
-     * Returns 0 if no dev number is found
-     */
-    private int extractDevNumber(String version) {
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("(?i)[-_]dev(\\d+)");
-        java.util.regex.Matcher matcher = pattern.matcher(version);
-        if (matcher.find()) {
-            try {
-                return Integer.parseInt(matcher.group(1));
-            } catch (NumberFormatException e) {
-                return 0;
-            }
+
+    @EventHandler
+    public void onPlayerDeath(PlayerDeathEvent event) {
+        flightEngine.stopGliding(event.getEntity().getUniqueId());
+        wornElytraCache.markDirty(event.getEntity().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onMenuClick(InventoryClickEvent event) {
+        EnchantMenu.Page page = enchantMenu.viewing(event.getWhoClicked().getUniqueId());
+        if (page == null || !(event.getWhoClicked() instanceof Player player)) return;
+        // Menu pages are shared between players and must never change
+        event.setCancelled(true);
+        int action = page.action(event.getRawSlot());
+        if (action == EnchantMenu.PREVIOUS) {
+            enchantMenu.show(player, page.previous());
+        } else if (action == EnchantMenu.NEXT) {
+            enchantMenu.show(player, page.next());
+        } else if (action != EnchantMenu.NONE) {
+            applyMenuOffer(player, action);
         }
-        return 0;
     }
-    
-    /**
-     * Extract the dev letter from a version string (e.g., "1.1.4-Dev3b" -> 'b')
-     * Returns 'a' if no dev letter is found (default)
-     */
-    private char extractDevLetter(String version) {
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("(?i)[-_]dev\\d+([a-z])");
-        java.util.regex.Matcher matcher = pattern.matcher(version);
-        if (matcher.find()) {
-            return matcher.group(1).toLowerCase().charAt(0);
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onMenuDrag(InventoryDragEvent event) {
+        if (enchantMenu.viewing(event.getWhoClicked().getUniqueId()) != null) {
+            event.setCancelled(true);
         }
-        return 'a'; // Default to 'a' if no letter found
     }
-    
-    /**
-     * Handle player join event - notify about available updates
-     */
+
     @EventHandler
-    public void onPlayerJoin(PlayerJoinEvent event) {
-        // Notify OP'd players about available updates with a delay to show after MOTD
-        if (updateAvailable && event.getPlayer().isOp()) {
-            String currentVersion = getDescription().getVersion();
-            String updateUrl = "https://www.spigotmc.org/resources/" + SPIGOT_RESOURCE_ID;
-            getServer().getScheduler().runTaskLater(this, () -> {
-                event.getPlayer().sendMessage(msg("update-available").replace("%latest%", latestVersion).replace("%current%", currentVersion));
-                event.getPlayer().sendMessage(msg("update-download").replace("%url%", updateUrl));
-            }, 100L); // 5 seconds delay (100 ticks = 5 seconds)
+    public void onMenuClose(InventoryCloseEvent event) {
+        enchantMenu.closed(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onToggleGlide(EntityToggleGlideEvent event) {
+        if (!(event.getEntity() instanceof Player player)) return;
+        if (event.isGliding()) {
+            checkWornElytra(player);
+            if (worldPolicies.get(player.getWorld()).isEnabled()) {
+                flightEngine.startGliding(player);
+            }
+        } else {
+            flightEngine.stopGliding(player.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onFireworkUse(PlayerInteractEvent event) {
+        // Right-clicking a rocket while gliding boosts the player
+        if (event.getAction() != Action.RIGHT_CLICK_AIR && event.getAction() != Action.RIGHT_CLICK_BLOCK) return;
+        ItemStack item = event.getItem();
+        if (item == null || item.getType() != Material.FIREWORK_ROCKET || !event.getPlayer().isGliding()) return;
+        flightEngine.onFireworkBoost(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // Permission plugins may grant per-world permissions
+        permissionCache.invalidate(event.getPlayer().getUniqueId());
+        // Teleports keep the gliding flag without a toggle event; the next glide re-registers
+        if (flightEngine != null) {
+            flightEngine.stopGliding(event.getPlayer().getUniqueId());
         }
     }
 
@@ -1158,10 +765,31 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
     public void onEnchantItem(EnchantItemEvent event) {
         ItemStack item = event.getItem();
         if (item.getType() != Material.ELYTRA) return;
+        CompiledPolicy worldPolicy = worldPolicies.get(event.getEnchanter().getWorld());
+        if (!worldPolicy.isEnabled()) return;
         Map<Enchantment, Integer> enchantments = event.getEnchantsToAdd();
-        for (Enchantment ench : allowedEnchantments) {
+        if (itemSignatures.verify(item) == ItemSignatures.Verdict.VALID) {
+            // The table applies its enchantments after this event, sign the finished item
+            getServer().getScheduler().runTask(this, () -> {
+                ItemStack enchanted = event.getInventory().getItem(0);
+                if (enchanted != null && enchanted.getType() == Material.ELYTRA) {
+                    itemSignatures.sign(enchanted);
+                    event.getInventory().setItem(0, enchanted);
+                }
+            });
+        }
+        boolean fireEvents = ElytraEnchantApplyEvent.getHandlerList().getRegisteredListeners().length > 0;
+        for (Enchantment ench : worldPolicy.getAllowedEnchantments()) {
             if (!enchantments.containsKey(ench)) continue;
-            item.addUnsafeEnchantment(ench, enchantments.get(ench));
+            int level = enchantments.get(ench);
+            if (fireEvents) {
+                ElytraEnchantApplyEvent applyEvent = new ElytraEnchantApplyEvent(event.getEnchanter(), item, ench, level,
+                    ElytraEnchantApplyEvent.Source.ENCHANTING_TABLE);
+                Bukkit.getPluginManager().callEvent(applyEvent);
+                if (applyEvent.isCancelled()) continue;
+                level = applyEvent.getLevel();
+            }
+            item.addUnsafeEnchantment(ench, level);
         }
     }
 
@@ -1172,165 +800,225 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
         ItemStack second = inv.getItem(1);
         String rename = event.getInventory().getRenameText();
         if (first == null) return;
-        // Elytra + Elytra: merge all enchantments, keep highest level
-        if (first.getType() == Material.ELYTRA && second != null && second.getType() == Material.ELYTRA) {
-            ItemStack result = first.clone();
-            boolean changed = false;
-            // Merge all enchantments from both elytras
-            Map<Enchantment, Integer> all = new java.util.HashMap<>();
-            all.putAll(first.getEnchantments());
-            for (Map.Entry<Enchantment, Integer> entry : second.getEnchantments().entrySet()) {
-                all.merge(entry.getKey(), entry.getValue(), Math::max);
-            }
-            for (Map.Entry<Enchantment, Integer> entry : all.entrySet()) {
-                result.addUnsafeEnchantment(entry.getKey(), entry.getValue());
-                changed = true;
-            }
-            if (rename != null && !rename.isEmpty()) {
-                var meta = result.getItemMeta();
-                meta.setDisplayName(rename);
-                result.setItemMeta(meta);
-            }
-            if (changed) {
-                event.setResult(result);
-                inv.setRepairCost(10);
-            }
+        long now = System.currentTimeMillis();
+        if (expireTimed(first, now)) {
+            inv.setItem(0, first);
+        }
+        if (second != null && expireTimed(second, now)) {
+            inv.setItem(1, second);
+        }
+        // Rented enchantments would become permanent on the result, or, on the
+        // first item, carry over a fallback level the anvil has since replaced
+        if (timedEnchants.hasTimed(first) || timedEnchants.hasTimed(second)) {
+            event.setResult(null);
             return;
         }
-        // Book to Elytra
-        if (first.getType() == Material.ELYTRA && second != null && second.getType() == Material.ENCHANTED_BOOK && second.hasItemMeta()) {
+        CompiledPolicy worldPolicy = worldPolicies.get(event.getView().getPlayer().getWorld());
+        if (!worldPolicy.isEnabled()) return;
+        // Over the limit the vanilla result is left in place until the next update
+        if (event.getView().getPlayer() instanceof Player viewer
+                && !rateLimiter.tryAcquire(viewer, RateLimiter.ANVIL)) return;
+        // Shedding load: only inputs seen before get a result, others keep vanilla's
+        if (loadMonitor.isCritical() && anvilResults.get(first, second, rename, worldPolicy) == null) return;
+        AnvilOutcome outcome = anvilOutcome(first, second, rename, worldPolicy, anvilResults, true);
+        if (outcome != null) {
+            event.setResult(outcome.result);
+            inv.setRepairCost(outcome.cost);
+        }
+        if (traceRecorder != null && first.getType() == Material.ELYTRA) {
+            traceRecorder.recordAnvil(event.getView().getPlayer().getWorld(), first.getType(), second == null ? null : second.getType(),
+                EnchantVector.of(first.getEnchantments()), traceVector(second),
+                rename != null && !rename.isEmpty(), first.hasItemMeta() && first.getItemMeta().hasDisplayName(),
+                outcome == null ? 0L : EnchantVector.of(outcome.result.getEnchantments()),
+                outcome == null ? 0 : outcome.cost, outcome != null);
+        }
+    }
+
+    /**
+     * Anvil outcome for inputs under a policy, from the given cache or computed
+     * and, if sign is set, signed; shared by the prepare handler (live cache,
+     * signing) and trace replay (its own cache, never signing)
+     */
+    AnvilOutcome anvilOutcome(ItemStack first, ItemStack second, String rename, CompiledPolicy policy,
+                              AnvilResultCache cache, boolean sign) {
+        AnvilResultCache.Entry cached = cache.get(first, second, rename, policy);
+        if (cached != null) {
+            return cached.outcome;
+        }
+        AnvilOutcome outcome = computeAnvilResult(first, second, rename, policy);
+        // A result is only as legitimate as the elytras it was made from
+        if (sign && outcome != null && outcome.result.getType() == Material.ELYTRA
+                && itemSignatures.verify(first) == ItemSignatures.Verdict.VALID
+                && (second == null || second.getType() != Material.ELYTRA
+                    || itemSignatures.verify(second) == ItemSignatures.Verdict.VALID)) {
+            itemSignatures.sign(outcome.result);
+        }
+        cache.put(first, second, rename, policy, outcome);
+        return outcome;
+    }
+
+    /**
+     * Pause optional work while the server is under load
+     */
+    private void onLoadLevelChanged(LoadMonitor.Level level) {
+        boolean degraded = level != LoadMonitor.Level.NORMAL;
+        debug.setEventsPaused(degraded);
+        hud.setPaused(degraded);
+    }
+
+    /**
+     * Whether load shedding is pausing optional work
+     */
+    boolean isLoadDegraded() {
+        return loadMonitor.isDegraded();
+    }
+
+    WorldPolicies getWorldPolicies() {
+        return worldPolicies;
+    }
+
+    WornElytraCache getWornElytraCache() {
+        return wornElytraCache;
+    }
+
+    DamageListener getDamageListener() {
+        return damageListener;
+    }
+
+    /**
+     * Result item and repair cost of an elytra anvil combination
+     */
+    static final class AnvilOutcome {
+        final ItemStack result;
+        final int cost;
+
+        AnvilOutcome(ItemStack result, int cost) {
+            this.result = result;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Compute the anvil result for the given inputs under a policy, or null
+     * if the plugin does not change the vanilla result
+     */
+    AnvilOutcome computeAnvilResult(ItemStack first, ItemStack second, String rename, CompiledPolicy policy) {
+        AnvilMerge.Input input = anvilInput(first, second);
+        if (input != null) {
+            Map<Enchantment, Integer> firstEnchants = first.getEnchantments();
+            Map<Enchantment, Integer> secondEnchants;
+            if (input == AnvilMerge.Input.BOOK) {
+                secondEnchants = ((EnchantmentStorageMeta) second.getItemMeta()).getStoredEnchants();
+                debug.info(DebugLog.Category.ANVIL, () -> "Applying book enchantments to elytra. Book contains: " + secondEnchants.keySet());
+            } else {
+                secondEnchants = second.getEnchantments();
+            }
+            long firstVector = EnchantVector.of(firstEnchants);
+            long merged = AnvilMerge.merge(input, firstVector, EnchantVector.of(secondEnchants), policy.allowedSlots());
             ItemStack result = first.clone();
-            boolean changed = false;
-            EnchantmentStorageMeta bookMeta = (EnchantmentStorageMeta) second.getItemMeta();
-            if (debugMode) {
-                getLogger().info("Applying book enchantments to elytra. Book contains: " + bookMeta.getStoredEnchants().keySet());
+            boolean changed = merged != AnvilMerge.UNCHANGED;
+            if (changed) {
+                for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+                    int level = EnchantVector.level(merged, slot);
+                    if (level != EnchantVector.level(firstVector, slot)) {
+                        result.addUnsafeEnchantment(EnchantVector.enchantment(slot), level);
+                    }
+                }
             }
-            for (Map.Entry<Enchantment, Integer> entry : bookMeta.getStoredEnchants().entrySet()) {
+            // Enchantments the vector cannot hold: untracked ones and levels past its range
+            for (Map.Entry<Enchantment, Integer> entry : secondEnchants.entrySet()) {
                 Enchantment ench = entry.getKey();
                 int level = entry.getValue();
-                if (allowedEnchantments.contains(ench)) {
+                if (EnchantVector.slotOf(ench) >= 0 && level <= EnchantVector.MAX_LEVEL) continue;
+                if (input == AnvilMerge.Input.ELYTRA) {
+                    result.addUnsafeEnchantment(ench, Math.max(level, firstEnchants.getOrDefault(ench, 0)));
+                    changed = true;
+                } else if (policy.isAllowed(ench)) {
                     result.addUnsafeEnchantment(ench, level);
                     changed = true;
-                    if (debugMode) {
-                        getLogger().info("Applied enchantment: " + ench.getName() + " level " + level);
-                    }
-                } else {
-                    if (debugMode) {
-                        getLogger().info("Skipped enchantment (not allowed): " + ench.getName());
-                    }
                 }
             }
-            if (rename != null && !rename.isEmpty()) {
-                var meta = result.getItemMeta();
-                meta.setDisplayName(rename);
-                result.setItemMeta(meta);
-            }
-            if (changed) {
-                event.setResult(result);
-                inv.setRepairCost(5);
+            if (input == AnvilMerge.Input.ELYTRA) {
+                changed |= !firstEnchants.isEmpty();
             }
-        }
-        // Chestplate to Elytra
-        else if (first.getType() == Material.ELYTRA && second != null && isChestplate(second.getType())) {
-            ItemStack result = first.clone();
-            boolean changed = false;
-            for (Map.Entry<Enchantment, Integer> entry : second.getEnchantments().entrySet()) {
-                Enchantment ench = entry.getKey();
-                int level = entry.getValue();
-                if (allowedEnchantments.contains(ench)) {
-                    result.addUnsafeEnchantment(ench, level);
-                    changed = true;
+            if (input == AnvilMerge.Input.BOOK && debug.isEnabled(DebugLog.Category.ANVIL)) {
+                for (Map.Entry<Enchantment, Integer> entry : secondEnchants.entrySet()) {
+                    Enchantment ench = entry.getKey();
+                    if (policy.isAllowed(ench)) {
+                        debug.info(DebugLog.Category.ANVIL, () -> "Applied enchantment: " + ench.getName() + " level " + entry.getValue());
+                    } else {
+                        debug.info(DebugLog.Category.ANVIL, () -> "Skipped enchantment (not allowed): " + ench.getName());
+                    }
                 }
             }
+            if (!changed) {
+                return null;
+            }
             if (rename != null && !rename.isEmpty()) {
                 var meta = result.getItemMeta();
                 meta.setDisplayName(rename);
                 result.setItemMeta(meta);
             }
-            if (changed) {
-                event.setResult(result);
-                inv.setRepairCost(10);
-            }
+            return new AnvilOutcome(result, input == AnvilMerge.Input.BOOK ? 5 : 10);
         }
         // Renaming Elytra only
-        else if (first.getType() == Material.ELYTRA && (second == null || second.getType() == Material.AIR)) {
+        if (first.getType() == Material.ELYTRA && (second == null || second.getType() == Material.AIR)) {
             if (rename != null && !rename.isEmpty() && !first.getItemMeta().hasDisplayName()) {
                 ItemStack result = first.clone();
                 var meta = result.getItemMeta();
                 meta.setDisplayName(rename);
                 result.setItemMeta(meta);
-                event.setResult(result);
-                inv.setRepairCost(1);
+                return new AnvilOutcome(result, 1);
             }
         }
+        return null;
     }
 
-    private boolean isChestplate(Material mat) {
-        return mat == Material.DIAMOND_CHESTPLATE || mat == Material.NETHERITE_CHESTPLATE || mat == Material.IRON_CHESTPLATE || mat == Material.GOLDEN_CHESTPLATE || mat == Material.LEATHER_CHESTPLATE || mat == Material.CHAINMAIL_CHESTPLATE;
-    }
-
-    @EventHandler
-    public void onEntityDamage(EntityDamageEvent event) {
-        if (!(event.getEntity() instanceof Player player)) return;
-        ItemStack chest = player.getInventory().getChestplate();
-        if (chest == null || chest.getType() != Material.ELYTRA) return;
-
-        double reduction = 0.0;
-
-        // General Protection
-        int prot = chest.getEnchantmentLevel(Enchantment.PROTECTION_ENVIRONMENTAL);
-        if (prot > 0) {
-            reduction += 0.04 * prot;
+    /**
+     * Which enchanting combination the anvil inputs are, or null for none
+     */
+    private AnvilMerge.Input anvilInput(ItemStack first, ItemStack second) {
+        if (first.getType() != Material.ELYTRA || second == null) {
+            return null;
         }
-
-        // Fire Protection
-        int fireProt = chest.getEnchantmentLevel(Enchantment.PROTECTION_FIRE);
-        if (fireProt > 0 && (event.getCause() == EntityDamageEvent.DamageCause.FIRE
-                || event.getCause() == EntityDamageEvent.DamageCause.FIRE_TICK
-                || event.getCause() == EntityDamageEvent.DamageCause.LAVA)) {
-            reduction += 0.08 * fireProt;
+        if (second.getType() == Material.ELYTRA) {
+            return AnvilMerge.Input.ELYTRA;
         }
-
-        // Blast Protection
-        int blastProt = chest.getEnchantmentLevel(Enchantment.PROTECTION_EXPLOSIONS);
-        if (blastProt > 0 && (event.getCause() == EntityDamageEvent.DamageCause.BLOCK_EXPLOSION
-                || event.getCause() == EntityDamageEvent.DamageCause.ENTITY_EXPLOSION)) {
-            reduction += 0.08 * blastProt;
+        if (second.getType() == Material.ENCHANTED_BOOK) {
+            return second.hasItemMeta() ? AnvilMerge.Input.BOOK : null;
         }
+        return isChestplate(second.getType()) ? AnvilMerge.Input.CHESTPLATE : null;
+    }
 
-        // Projectile Protection
-        int projProt = chest.getEnchantmentLevel(Enchantment.PROTECTION_PROJECTILE);
-        if (projProt > 0 && event.getCause() == EntityDamageEvent.DamageCause.PROJECTILE) {
-            reduction += 0.08 * projProt;
+    /**
+     * Enchant vector of an anvil's second input (stored enchants for books)
+     */
+    private long traceVector(ItemStack item) {
+        if (item == null) {
+            return 0L;
         }
+        if (item.getType() == Material.ENCHANTED_BOOK && item.hasItemMeta()) {
+            return EnchantVector.of(((EnchantmentStorageMeta) item.getItemMeta()).getStoredEnchants());
+        }
+        return EnchantVector.of(item.getEnchantments());
+    }
 
-        if (reduction > 0.8) reduction = 0.8; // cap at 80% reduction
-
-        double newDamage = event.getDamage() * (1.0 - reduction);
-        event.setDamage(newDamage);
+    private boolean isChestplate(Material mat) {
+        return mat == Material.DIAMOND_CHESTPLATE || mat == Material.NETHERITE_CHESTPLATE || mat == Material.IRON_CHESTPLATE || mat == Material.GOLDEN_CHESTPLATE || mat == Material.LEATHER_CHESTPLATE || mat == Material.CHAINMAIL_CHESTPLATE;
     }
 
-    @EventHandler
-    public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
-        if (!(event.getEntity() instanceof Player player)) return;
-        ItemStack chest = player.getInventory().getChestplate();
-        if (chest == null || chest.getType() != Material.ELYTRA) return;
+    /**
+     * Damage reduction granted by the elytra's protection enchantments for a damage cause
+     */
+    static double computeReduction(EntityDamageEvent.DamageCause cause, int prot, int fireProt, int blastProt, int projProt) {
+        return effects.reduction(cause, prot, fireProt, blastProt, projProt);
+    }
 
-        int thorns = chest.getEnchantmentLevel(Enchantment.THORNS);
-        if (thorns > 0 && event.getDamager() instanceof LivingEntity attacker) {
-            UUID attackerId = attacker.getUniqueId();
-            if (processingThorns.contains(attackerId)) return;
-            
-            double chance = 0.15 + 0.15 * thorns;
-            if (Math.random() < chance) {
-                processingThorns.add(attackerId);
-                try {
-                    attacker.damage(1.0, player);
-                } finally {
-                    processingThorns.remove(attackerId);
-                }
-            }
-        }
+    /**
+     * Chance for the elytra's Thorns enchantment to reflect damage
+     */
+    static double thornsChance(int thorns) {
+        return effects.thornsChance(thorns);
     }
 
     @Override
@@ -1339,13 +1027,19 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
             return false;
         }
         
-        if (!sender.hasPermission("elytraenchants.use")) {
-            sender.sendMessage(msg("no-permission"));
+        if (sender instanceof Player limited && !rateLimiter.tryAcquire(limited, RateLimiter.COMMAND)) {
+            sender.sendMessage(msg(sender, MessageKey.RATE_LIMITED));
+            return true;
+        }
+        
+        PermissionSnapshot perms = permissionCache.get(sender);
+        if (!perms.has(PermissionSnapshot.USE)) {
+            sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION));
             return true;
         }
         
         if (args.length == 0) {
-            sender.sendMessage(msg("usage"));
+            sender.sendMessage(msg(sender, MessageKey.USAGE));
             return true;
         }
         
@@ -1353,13 +1047,13 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
         
         // Handle reload subcommand
         if (subCommand.equals("reload")) {
-            if (!sender.hasPermission("elytraenchants.reload")) {
-                sender.sendMessage(msg("reload-no-permission"));
+            if (!perms.has(PermissionSnapshot.RELOAD)) {
+                sender.sendMessage(msg(sender, MessageKey.RELOAD_NO_PERMISSION));
                 return true;
             }
             reloadConfig();
             loadMessages();
-            String reloadMsg = msg("reload-success");
+            String reloadMsg = msg(sender, MessageKey.RELOAD_SUCCESS);
             if (reloadMsg == null || reloadMsg.isEmpty()) {
                 sender.sendMessage(ChatColor.GREEN + "ElytraEnchants configuration reloaded!");
             } else {
@@ -1370,91 +1064,299 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
         
         // Handle update subcommand
         if (subCommand.equals("update")) {
-            if (!sender.hasPermission("elytraenchants.update")) {
-                sender.sendMessage(msg("no-permission"));
+            if (!perms.has(PermissionSnapshot.UPDATE)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION));
                 return true;
             }
             if (sender instanceof org.bukkit.entity.Player) {
-                checkForUpdatesManually((org.bukkit.entity.Player) sender);
+                updateChecker().checkForUpdatesManually((org.bukkit.entity.Player) sender);
             } else {
-                checkForUpdatesManually();
+                updateChecker().checkForUpdatesManually();
                 sender.sendMessage("Checking for updates...");
             }
             return true;
         }
         
+        // Handle bundle subcommand
+        if (subCommand.equals("bundle")) {
+            if (!perms.has(PermissionSnapshot.RELOAD)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION));
+                return true;
+            }
+            handleBundleCommand(sender, args);
+            return true;
+        }
+        
+        // Handle trace subcommand
+        if (subCommand.equals("trace")) {
+            if (!perms.has(PermissionSnapshot.TRACE)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION));
+                return true;
+            }
+            handleTraceCommand(sender, args);
+            return true;
+        }
+        
         // Handle enchant subcommand
         if (subCommand.equals("enchant")) {
             if (!(sender instanceof Player player)) {
-                sender.sendMessage(msg("not-a-player"));
+                sender.sendMessage(msg(sender, MessageKey.NOT_A_PLAYER));
                 return true;
             }
-            if (!sender.hasPermission("elytraenchants.enchant")) {
-                sender.sendMessage(msg("no-permission-enchant"));
+            if (!perms.has(PermissionSnapshot.ENCHANT)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION_ENCHANT));
                 return true;
             }
             if (args.length < 3) {
-                sender.sendMessage(msg("usage"));
+                sender.sendMessage(msg(sender, MessageKey.USAGE));
+                return true;
+            }
+            long duration = 0L;
+            if (args.length > 3) {
+                duration = TimedEnchants.parseDuration(args[3]);
+                if (duration <= 0L) {
+                    sender.sendMessage(msg(sender, MessageKey.INVALID_DURATION));
+                    return true;
+                }
+            }
+            CompiledPolicy worldPolicy = worldPolicies.get(player.getWorld());
+            if (!worldPolicy.isEnabled()) {
+                sender.sendMessage(msg(sender, MessageKey.WORLD_DISABLED));
                 return true;
             }
             ItemStack chest = player.getInventory().getChestplate();
             if (chest == null || chest.getType() != Material.ELYTRA) {
-                sender.sendMessage(msg("not-wearing-elytra"));
+                sender.sendMessage(msg(sender, MessageKey.NOT_WEARING_ELYTRA));
                 return true;
             }
-            String enchName = args[1].toUpperCase();
-            Enchantment ench = Enchantment.getByName(enchName);
-            if (ench == null || !allowedEnchantments.contains(ench)) {
-                if (debugMode) {
-                    getLogger().info("Player " + player.getName() + " tried to use enchantment: " + enchName + " (ench: " + ench + ", allowed: " + allowedEnchantments.contains(ench) + ")");
+            String enchName = args[1];
+            int enchId = enchantmentRegistry.resolve(enchName);
+            FlightEnchant flight = enchId < 0 ? FlightEnchant.byName(enchName) : null;
+            if (flight != null && flightEngine.isEnabled(flight)) {
+                if (duration > 0L) {
+                    sender.sendMessage(msg(sender, MessageKey.ENCHANT_NOT_TIMED));
+                    return true;
                 }
-                sender.sendMessage(msg("enchant-not-allowed"));
+                applyFlightEnchant(player, chest, flight, args[2], perms);
+                return true;
+            }
+            Enchantment ench = enchId < 0 ? null : enchantmentRegistry.get(enchId);
+            if (ench == null || !worldPolicy.isAllowed(ench)) {
+                debug.info(DebugLog.Category.COMMAND, () -> "Player " + player.getName() + " tried to use enchantment: " + enchName + " (ench: " + ench + ", allowed: " + worldPolicy.isAllowed(ench) + ")");
+                sender.sendMessage(msg(sender, MessageKey.ENCHANT_NOT_ALLOWED));
                 return true;
             }
-            String permNode = "elytraenchants.enchant." + enchName.toLowerCase();
-            if (!sender.hasPermission(permNode) && !sender.hasPermission("elytraenchants.enchant.*")) {
-                sender.sendMessage(msg("no-permission-enchant"));
+            if (!perms.canEnchant(enchId)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION_ENCHANT));
                 return true;
             }
             int level;
             try {
                 level = Integer.parseInt(args[2]);
             } catch (NumberFormatException e) {
-                sender.sendMessage(msg("invalid-level"));
+                sender.sendMessage(msg(sender, MessageKey.INVALID_LEVEL));
                 return true;
             }
-            chest.addUnsafeEnchantment(ench, level);
-            sender.sendMessage(msg("success").replace("%enchant%", ench.getKey().getKey()).replace("%level%", String.valueOf(level)));
+            int maxLevel = perms.maxLevel(enchId);
+            if (maxLevel > 0 && level > maxLevel) {
+                sender.sendMessage(msg(sender, MessageKey.LEVEL_TOO_HIGH, "%max%", String.valueOf(maxLevel)));
+                return true;
+            }
+            applyEnchant(player, chest, ench, level, ElytraEnchantApplyEvent.Source.COMMAND, duration);
+            return true;
+        }
+        
+        // Handle menu subcommand
+        if (subCommand.equals("menu") && enchantMenu.isEnabled()) {
+            if (!(sender instanceof Player player)) {
+                sender.sendMessage(msg(sender, MessageKey.NOT_A_PLAYER));
+                return true;
+            }
+            if (!perms.has(PermissionSnapshot.ENCHANT)) {
+                sender.sendMessage(msg(sender, MessageKey.NO_PERMISSION_ENCHANT));
+                return true;
+            }
+            CompiledPolicy worldPolicy = worldPolicies.get(player.getWorld());
+            if (!worldPolicy.isEnabled()) {
+                sender.sendMessage(msg(sender, MessageKey.WORLD_DISABLED));
+                return true;
+            }
+            if (!enchantMenu.open(player, perms, worldPolicy)) {
+                sender.sendMessage(msg(sender, MessageKey.GUI_EMPTY));
+            }
             return true;
         }
         
         // Unknown subcommand
-        sender.sendMessage(msg("usage"));
+        sender.sendMessage(msg(sender, MessageKey.USAGE));
+        return true;
+    }
+
+    /**
+     * Handle /elytraenchants enchant for a flight enchantment
+     */
+    private void applyFlightEnchant(Player player, ItemStack chest, FlightEnchant flight, String levelArg, PermissionSnapshot perms) {
+        if (!perms.canEnchant(flight)) {
+            player.sendMessage(msg(player, MessageKey.NO_PERMISSION_ENCHANT));
+            return;
+        }
+        int level;
+        try {
+            level = Integer.parseInt(levelArg);
+        } catch (NumberFormatException e) {
+            player.sendMessage(msg(player, MessageKey.INVALID_LEVEL));
+            return;
+        }
+        if (level < 0) {
+            player.sendMessage(msg(player, MessageKey.INVALID_LEVEL));
+            return;
+        }
+        if (level > flight.getMaxLevel()) {
+            player.sendMessage(msg(player, MessageKey.LEVEL_TOO_HIGH, "%max%", String.valueOf(flight.getMaxLevel())));
+            return;
+        }
+        applyFlightEnchant(player, chest, flight, level);
+    }
+
+    private void applyFlightEnchant(Player player, ItemStack chest, FlightEnchant flight, int level) {
+        boolean signed = itemSignatures.verify(chest) == ItemSignatures.Verdict.VALID;
+        flightEngine.apply(chest, flight, level);
+        if (signed) {
+            itemSignatures.sign(chest);
+        }
+        FlightEngine.Glider glider = flightEngine.getGlider(player.getUniqueId());
+        if (glider != null) {
+            glider.refreshIn = 0; // pick up the new level on the next tick
+        }
+        player.sendMessage(msg(player, MessageKey.SUCCESS, "%enchant%", flight.getKey(), "%level%", String.valueOf(level)));
+    }
+
+    /**
+     * Apply an already validated enchantment to the worn elytra, for a duration
+     * in milliseconds or permanently (0); false if a listener cancelled it
+     */
+    private boolean applyEnchant(Player player, ItemStack chest, Enchantment ench, int level,
+                                 ElytraEnchantApplyEvent.Source source, long duration) {
+        if (ElytraEnchantApplyEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            ElytraEnchantApplyEvent applyEvent = new ElytraEnchantApplyEvent(player, chest, ench, level, source);
+            Bukkit.getPluginManager().callEvent(applyEvent);
+            if (applyEvent.isCancelled()) {
+                return false;
+            }
+            level = applyEvent.getLevel();
+        }
+        // Changing an item must not legitimise enchantments it already failed verification for
+        boolean signed = itemSignatures.verify(chest) == ItemSignatures.Verdict.VALID;
+        if (duration > 0L) {
+            timedEnchants.grant(chest, ench, level, System.currentTimeMillis() + duration);
+            timedEnchants.watch(player, chest);
+        } else {
+            chest.addUnsafeEnchantment(ench, level);
+        }
+        if (signed) {
+            itemSignatures.sign(chest);
+        }
+        wornElytraCache.invalidate(player.getUniqueId());
+        if (duration > 0L) {
+            player.sendMessage(msg(player, MessageKey.SUCCESS_TIMED, "%enchant%", ench.getKey().getKey(),
+                "%level%", String.valueOf(level), "%duration%", TimedEnchants.formatDuration(duration)));
+        } else {
+            player.sendMessage(msg(player, MessageKey.SUCCESS, "%enchant%", ench.getKey().getKey(), "%level%", String.valueOf(level)));
+        }
         return true;
     }
 
+    /**
+     * Apply a menu offer, re-checking everything the menu was built from
+     */
+    private void applyMenuOffer(Player player, int action) {
+        if (!rateLimiter.tryAcquire(player, RateLimiter.COMMAND)) {
+            player.sendMessage(msg(player, MessageKey.RATE_LIMITED));
+            return;
+        }
+        PermissionSnapshot perms = permissionCache.get(player);
+        if (!perms.has(PermissionSnapshot.USE) || !perms.has(PermissionSnapshot.ENCHANT)) {
+            player.sendMessage(msg(player, MessageKey.NO_PERMISSION_ENCHANT));
+            return;
+        }
+        CompiledPolicy worldPolicy = worldPolicies.get(player.getWorld());
+        if (!worldPolicy.isEnabled()) {
+            player.sendMessage(msg(player, MessageKey.WORLD_DISABLED));
+            return;
+        }
+        ItemStack chest = player.getInventory().getChestplate();
+        if (chest == null || chest.getType() != Material.ELYTRA) {
+            player.sendMessage(msg(player, MessageKey.NOT_WEARING_ELYTRA));
+            return;
+        }
+        int level = EnchantMenu.level(action);
+        int enchId = enchantMenu.enchantmentId(action);
+        Enchantment ench = enchId < 0 ? null : enchantmentRegistry.get(enchId);
+        FlightEnchant flight = enchId < 0 ? enchantMenu.flightEnchant(action) : null;
+        if (ench != null ? !worldPolicy.isAllowed(ench) : !flightEngine.isEnabled(flight)) {
+            player.sendMessage(msg(player, MessageKey.ENCHANT_NOT_ALLOWED));
+            return;
+        }
+        if (ench != null ? !perms.canEnchant(enchId) : !perms.canEnchant(flight)) {
+            player.sendMessage(msg(player, MessageKey.NO_PERMISSION_ENCHANT));
+            return;
+        }
+        int maxLevel = ench != null ? perms.maxLevel(enchId) : flight.getMaxLevel();
+        if (maxLevel > 0 && level > maxLevel) {
+            player.sendMessage(msg(player, MessageKey.LEVEL_TOO_HIGH, "%max%", String.valueOf(maxLevel)));
+            return;
+        }
+        int cost = player.getGameMode() == GameMode.CREATIVE ? 0 : enchantMenu.cost(level);
+        if (player.getLevel() < cost) {
+            player.sendMessage(msg(player, MessageKey.NOT_ENOUGH_LEVELS, "%cost%", String.valueOf(cost)));
+            return;
+        }
+        if (ench != null) {
+            if (!applyEnchant(player, chest, ench, level, ElytraEnchantApplyEvent.Source.MENU, 0L)) {
+                return;
+            }
+        } else {
+            applyFlightEnchant(player, chest, flight, level);
+        }
+        if (cost > 0) {
+            player.setLevel(player.getLevel() - cost);
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (!command.getName().equalsIgnoreCase("elytraenchants")) {
             return List.of();
         }
         
-        if (!sender.hasPermission("elytraenchants.use")) {
+        if (sender instanceof Player limited && !rateLimiter.tryAcquire(limited, RateLimiter.TAB_COMPLETE)) {
+            return List.of();
+        }
+        
+        PermissionSnapshot perms = permissionCache.get(sender);
+        if (!perms.has(PermissionSnapshot.USE)) {
             return List.of();
         }
         
         if (args.length == 1) {
             // Tab complete subcommands
             List<String> subcommands = new ArrayList<>();
-            if (sender.hasPermission("elytraenchants.reload")) {
+            if (perms.has(PermissionSnapshot.RELOAD)) {
                 subcommands.add("reload");
+                subcommands.add("bundle");
             }
-            if (sender.hasPermission("elytraenchants.enchant")) {
+            if (perms.has(PermissionSnapshot.ENCHANT)) {
                 subcommands.add("enchant");
+                if (enchantMenu.isEnabled()) {
+                    subcommands.add("menu");
+                }
             }
-            if (sender.hasPermission("elytraenchants.update")) {
+            if (perms.has(PermissionSnapshot.UPDATE)) {
                 subcommands.add("update");
             }
+            if (perms.has(PermissionSnapshot.TRACE)) {
+                subcommands.add("trace");
+            }
             return subcommands.stream()
                     .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
@@ -1462,23 +1364,49 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
         
         if (args.length == 2 && args[0].equalsIgnoreCase("enchant")) {
             // Tab complete enchantments
-            if (!sender.hasPermission("elytraenchants.enchant")) {
+            if (!perms.has(PermissionSnapshot.ENCHANT)) {
+                return List.of();
+            }
+            debug.info(DebugLog.Category.COMMAND, () -> "Tab completion - allowed enchantments: " + String.join(", ", allowedCompletions));
+            String prefix = args[1].toLowerCase();
+            return allowedCompletions.stream()
+                    .filter(e -> e.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+        
+        if (args.length == 2 && args[0].equalsIgnoreCase("bundle")) {
+            if (!perms.has(PermissionSnapshot.RELOAD)) {
+                return List.of();
+            }
+            return "export".startsWith(args[1].toLowerCase()) ? List.of("export") : List.of();
+        }
+        
+        if (args.length == 2 && args[0].equalsIgnoreCase("trace")) {
+            if (!perms.has(PermissionSnapshot.TRACE)) {
+                return List.of();
+            }
+            return List.of("start", "stop", "status", "replay").stream()
+                    .filter(s -> s.startsWith(args[1].toLowerCase()))
+                    .collect(Collectors.toList());
+        }
+        
+        if (args.length == 3 && args[0].equalsIgnoreCase("trace") && args[1].equalsIgnoreCase("replay")) {
+            if (!perms.has(PermissionSnapshot.TRACE)) {
                 return List.of();
             }
-            if (debugMode) {
-                getLogger().info("Tab completion - allowed enchantments: " + allowedEnchantments.stream()
-                        .map(e -> e.getKey().getKey() + " (name: " + e.getName() + ")")
-                        .collect(Collectors.joining(", ")));
+            String[] files = new File(getDataFolder(), "traces").list((dir, name) -> name.endsWith(".eetrace"));
+            if (files == null) {
+                return List.of();
             }
-            return allowedEnchantments.stream()
-                    .map(e -> e.getKey().getKey().toLowerCase())
-                    .filter(e -> e.startsWith(args[1].toLowerCase()))
+            return java.util.Arrays.stream(files)
+                    .filter(f -> f.startsWith(args[2]))
+                    .sorted()
                     .collect(Collectors.toList());
         }
         
         if (args.length == 3 && args[0].equalsIgnoreCase("enchant")) {
             // Tab complete enchantment levels
-            if (!sender.hasPermission("elytraenchants.enchant")) {
+            if (!perms.has(PermissionSnapshot.ENCHANT)) {
                 return List.of();
             }
             return List.of("1", "2", "3", "4", "5").stream()
@@ -1486,6 +1414,16 @@ public class ElytraEnchantsPlugin extends JavaPlugin implements Listener, TabExe
                     .collect(Collectors.toList());
         }
         
+        if (args.length == 4 && args[0].equalsIgnoreCase("enchant")) {
+            // Tab complete rental durations
+            if (!perms.has(PermissionSnapshot.ENCHANT)) {
+                return List.of();
+            }
+            return List.of("30m", "1h", "2h", "1d", "7d").stream()
+                    .filter(d -> d.startsWith(args[3].toLowerCase()))
+                    .collect(Collectors.toList());
+        }
+        
         return List.of();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.elytraenchants;
+
+import com.elytraenchants.api.ElytraEnchantsApi;
+import com.elytraenchants.api.ElytraState;
+import com.elytraenchants.api.EnchantPolicy;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * {@link ElytraEnchantsApi} implementation backed by the plugin's caches
+ */
+final class ElytraEnchantsService implements ElytraEnchantsApi {
+
+    private final WornElytraCache wornCache;
+    private final WorldPolicies policies;
+
+    ElytraEnchantsService(WornElytraCache wornCache, WorldPolicies policies) {
+        this.wornCache = wornCache;
+        this.policies = policies;
+    }
+
+    @Override
+    public ElytraState getElytraState(Player player) {
+        return wornCache.peek(player);
+    }
+
+    @Override
+    public EnchantPolicy getPolicy() {
+        return policies.getGlobal();
+    }
+
+    @Override
+    public EnchantPolicy getPolicy(World world) {
+        return policies.get(world);
+    }
+}
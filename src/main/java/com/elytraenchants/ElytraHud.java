@@ -0,0 +1,72 @@
+package com.elytraenchants;
+
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Action-bar display of elytra durability and protection for gliding players,
+ * driven by the {@link FlightEngine} task. A bar is only sent when the shown
+ * values change or the keep-alive interval runs out (the client fades the bar
+ * after a few seconds), and rendered components are cached per template and value.
+ */
+final class ElytraHud {
+
+    private final MessageBundles bundles;
+    private final Map<MessageTemplate, Map<Integer, BaseComponent[]>> rendered = new IdentityHashMap<>();
+    private boolean enabled;
+    private int keepAliveTicks;
+    private boolean paused;
+
+    ElytraHud(MessageBundles bundles) {
+        this.bundles = bundles;
+    }
+
+    void configure(ConfigurationSection config) {
+        enabled = config.getBoolean("hud.enabled", false);
+        keepAliveTicks = Math.max(1, config.getInt("hud.keep-alive-ticks", 40));
+        // Templates are recompiled on reload, drop renders of the old ones
+        rendered.clear();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stop sending bars while the server sheds load; the client fades the last one
+     */
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Called every tick for each glider after its data has been refreshed
+     */
+    void update(FlightEngine.Glider glider) {
+        if (paused) {
+            return;
+        }
+        int value = glider.durabilityPercent << 8 | glider.protectionPercent;
+        MessageTemplate template = bundles.get(glider.player, MessageKey.HUD_ACTION_BAR);
+        if (++glider.hudAge < keepAliveTicks && value == glider.hudValue && template == glider.hudTemplate) {
+            return;
+        }
+        glider.hudAge = 0;
+        glider.hudValue = value;
+        glider.hudTemplate = template;
+        if (template.isEmpty()) {
+            return;
+        }
+        BaseComponent[] components = rendered.computeIfAbsent(template, t -> new HashMap<>())
+            .computeIfAbsent(value, v -> TextComponent.fromLegacyText(template.render(
+                "%durability%", String.valueOf(glider.durabilityPercent),
+                "%protection%", String.valueOf(glider.protectionPercent))));
+        glider.player.spigot().sendMessage(ChatMessageType.ACTION_BAR, components);
+    }
+}
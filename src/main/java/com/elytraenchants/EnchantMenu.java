@@ -0,0 +1,300 @@
+package com.elytraenchants;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.DoubleUnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Inventory menu for applying elytra enchantments (main thread only). What a
+ * player is offered depends only on their world policy, permissions and
+ * message bundle, so the pages - inventories with their icons already placed -
+ * are built once per distinct offer and shared by every player who gets the
+ * same one. Clicks are resolved through a per-slot action table.
+ */
+final class EnchantMenu {
+
+    static final int NONE = 0;
+    static final int PREVIOUS = -1;
+    static final int NEXT = -2;
+
+    private static final int PAGE_SLOTS = 45;
+    private static final int SIZE = 54;
+    private static final int PREVIOUS_SLOT = 45;
+    private static final int NEXT_SLOT = 53;
+    private static final int MAX_CACHED_MENUS = 64;
+    private static final MessageKey[] TEMPLATES = {
+        MessageKey.GUI_TITLE, MessageKey.GUI_ITEM, MessageKey.GUI_COST, MessageKey.GUI_PREVIOUS, MessageKey.GUI_NEXT
+    };
+
+    /**
+     * One page of a menu and the holder of its inventory
+     */
+    static final class Page implements InventoryHolder {
+        private final Page[] pages;
+        private final int index;
+        // Action per raw slot: NONE, PREVIOUS, NEXT or an encoded offer
+        private final int[] actions = new int[SIZE];
+        private Inventory inventory;
+
+        private Page(Page[] pages, int index) {
+            this.pages = pages;
+            this.index = index;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
+
+        int action(int rawSlot) {
+            return rawSlot >= 0 && rawSlot < SIZE ? actions[rawSlot] : NONE;
+        }
+
+        Page previous() {
+            return pages[Math.max(0, index - 1)];
+        }
+
+        Page next() {
+            return pages[Math.min(pages.length - 1, index + 1)];
+        }
+    }
+
+    // Identifies a menu: the offered levels plus the exact templates it was rendered with
+    private static final class Key {
+        private final int[] offer;
+        private final MessageTemplate[] templates;
+        private final int hash;
+
+        Key(int[] offer, MessageTemplate[] templates) {
+            this.offer = offer;
+            this.templates = templates;
+            int h = Arrays.hashCode(offer);
+            for (MessageTemplate template : templates) {
+                h = 31 * h + System.identityHashCode(template);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key other) || hash != other.hash || !Arrays.equals(offer, other.offer)) {
+                return false;
+            }
+            for (int i = 0; i < templates.length; i++) {
+                if (templates[i] != other.templates[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final MessageBundles bundles;
+    private final Map<Key, Page[]> menus = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Page[]> eldest) {
+            return size() > MAX_CACHED_MENUS;
+        }
+    };
+    private final Map<UUID, Page> viewers = new HashMap<>();
+    private EnchantmentRegistry registry;
+    private FlightEngine flightEngine;
+    private DoubleUnaryOperator cost;
+    private boolean enabled;
+
+    EnchantMenu(MessageBundles bundles) {
+        this.bundles = bundles;
+    }
+
+    void configure(ConfigurationSection config, EnchantmentRegistry registry, FlightEngine flightEngine, Logger logger) {
+        this.registry = registry;
+        this.flightEngine = flightEngine;
+        enabled = config.getBoolean("gui.enabled", true);
+        String source = config.getString("gui.cost", "3 * level");
+        try {
+            cost = Formula.compile(source);
+        } catch (Formula.FormulaException e) {
+            logger.warning("Invalid formula gui.cost: " + e.getMessage() + " - applying enchantments for free");
+            cost = level -> 0.0;
+        }
+        // Offers and templates may have changed; open pages stay valid until closed
+        menus.clear();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Experience levels charged for applying an enchantment level
+     */
+    int cost(int level) {
+        double value = cost.applyAsDouble(level);
+        return Double.isNaN(value) ? 0 : (int) Math.max(0L, Math.round(value));
+    }
+
+    /**
+     * Open the first page for a player, or return false if nothing can be offered
+     */
+    boolean open(Player player, PermissionSnapshot perms, CompiledPolicy policy) {
+        int[] offer = offer(perms, policy);
+        boolean any = false;
+        for (int level : offer) {
+            if (level > 0) {
+                any = true;
+                break;
+            }
+        }
+        if (!any) {
+            return false;
+        }
+        MessageTemplate[] templates = new MessageTemplate[TEMPLATES.length];
+        for (int i = 0; i < TEMPLATES.length; i++) {
+            templates[i] = bundles.get(player, TEMPLATES[i]);
+        }
+        Page[] pages = menus.computeIfAbsent(new Key(offer, templates), key -> build(key.offer, key.templates));
+        show(player, pages[0]);
+        return true;
+    }
+
+    /**
+     * Switch a player to another page of the menu they are viewing
+     */
+    void show(Player player, Page page) {
+        if (player.openInventory(page.inventory) != null) {
+            // Opening fires a close event for the previous page first
+            viewers.put(player.getUniqueId(), page);
+        }
+    }
+
+    /**
+     * The page a player is viewing, or null
+     */
+    Page viewing(UUID playerId) {
+        return viewers.get(playerId);
+    }
+
+    void closed(UUID playerId) {
+        viewers.remove(playerId);
+    }
+
+    /**
+     * Registry id of an offer, or -1 for a flight enchantment
+     */
+    int enchantmentId(int action) {
+        int index = (action >>> 8) - 1;
+        return index < registry.size() ? index : -1;
+    }
+
+    FlightEnchant flightEnchant(int action) {
+        return FlightEnchant.all()[(action >>> 8) - 1 - registry.size()];
+    }
+
+    static int level(int action) {
+        return action & 0xFF;
+    }
+
+    // Highest level offered per registry id, then per flight enchantment; 0 = not offered
+    private int[] offer(PermissionSnapshot perms, CompiledPolicy policy) {
+        FlightEnchant[] flights = FlightEnchant.all();
+        int[] offer = new int[registry.size() + flights.length];
+        for (Enchantment ench : policy.getAllowedEnchantments()) {
+            int id = registry.idOf(ench);
+            if (id >= 0 && perms.canEnchant(id)) {
+                int limit = perms.maxLevel(id);
+                offer[id] = Math.min(EnchantVector.MAX_LEVEL, limit > 0 ? limit : ench.getMaxLevel());
+            }
+        }
+        for (FlightEnchant flight : flights) {
+            if (flightEngine.isEnabled(flight) && perms.canEnchant(flight)) {
+                offer[registry.size() + flight.ordinal()] = flight.getMaxLevel();
+            }
+        }
+        return offer;
+    }
+
+    private Page[] build(int[] offer, MessageTemplate[] templates) {
+        int count = 0;
+        for (int level : offer) {
+            count += level;
+        }
+        Page[] pages = new Page[Math.max(1, (count + PAGE_SLOTS - 1) / PAGE_SLOTS)];
+        for (int p = 0; p < pages.length; p++) {
+            Page page = new Page(pages, p);
+            page.inventory = Bukkit.createInventory(page, SIZE, templates[0].render(
+                "%page%", String.valueOf(p + 1), "%pages%", String.valueOf(pages.length)));
+            pages[p] = page;
+        }
+        int slot = 0;
+        for (int index = 0; index < offer.length; index++) {
+            for (int level = 1; level <= offer[index]; level++) {
+                Page page = pages[slot / PAGE_SLOTS];
+                page.inventory.setItem(slot % PAGE_SLOTS, icon(index, level, templates));
+                page.actions[slot % PAGE_SLOTS] = (index + 1) << 8 | level;
+                slot++;
+            }
+        }
+        for (int p = 0; p < pages.length; p++) {
+            if (p > 0) {
+                pages[p].inventory.setItem(PREVIOUS_SLOT, named(new ItemStack(Material.ARROW), templates[3].render()));
+                pages[p].actions[PREVIOUS_SLOT] = PREVIOUS;
+            }
+            if (p < pages.length - 1) {
+                pages[p].inventory.setItem(NEXT_SLOT, named(new ItemStack(Material.ARROW), templates[4].render()));
+                pages[p].actions[NEXT_SLOT] = NEXT;
+            }
+        }
+        return pages;
+    }
+
+    private ItemStack icon(int index, int level, MessageTemplate[] templates) {
+        ItemStack item = new ItemStack(Material.ENCHANTED_BOOK);
+        String name;
+        if (index < registry.size()) {
+            Enchantment ench = registry.get(index);
+            name = ench.getKey().getKey();
+            if (item.getItemMeta() instanceof EnchantmentStorageMeta meta) {
+                meta.addStoredEnchant(ench, level, true);
+                item.setItemMeta(meta);
+            }
+        } else {
+            name = FlightEnchant.all()[index - registry.size()].getKey();
+        }
+        ItemMeta meta = named(item, templates[1].render("%enchant%", name, "%level%", String.valueOf(level))).getItemMeta();
+        if (meta != null) {
+            meta.setLore(List.of(templates[2].render("%cost%", String.valueOf(cost(level)))));
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    private static ItemStack named(ItemStack item, String name) {
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,100 @@
+package com.elytraenchants;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+
+/**
+ * Packs the levels of the elytra-relevant enchantments into a single long.
+ * Each slot uses 7 bits, so levels are clamped to 0..127 when packed.
+ */
+final class EnchantVector {
+
+    static final int PROTECTION = 0;
+    static final int FIRE_PROTECTION = 1;
+    static final int BLAST_PROTECTION = 2;
+    static final int PROJECTILE_PROTECTION = 3;
+    static final int THORNS = 4;
+    static final int MENDING = 5;
+    static final int UNBREAKING = 6;
+    static final int BINDING_CURSE = 7;
+    static final int VANISHING_CURSE = 8;
+    static final int SLOTS = 9;
+
+    static final int MAX_LEVEL = 0x7F;
+    private static final int BITS = 7;
+
+    // In a holder so the bit operations also work without the Bukkit API (TraceAnalytics)
+    private static final class Slots {
+        static final Enchantment[] ENCHANTMENTS = {
+            Enchantment.PROTECTION_ENVIRONMENTAL,
+            Enchantment.PROTECTION_FIRE,
+            Enchantment.PROTECTION_EXPLOSIONS,
+            Enchantment.PROTECTION_PROJECTILE,
+            Enchantment.THORNS,
+            Enchantment.MENDING,
+            Enchantment.DURABILITY,
+            Enchantment.BINDING_CURSE,
+            Enchantment.VANISHING_CURSE
+        };
+    }
+
+    private EnchantVector() {
+    }
+
+    /**
+     * Get the enchantment stored in a slot
+     */
+    static Enchantment enchantment(int slot) {
+        return Slots.ENCHANTMENTS[slot];
+    }
+
+    /**
+     * Get the slot of an enchantment, or -1 if it is not tracked
+     */
+    static int slotOf(Enchantment ench) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (Slots.ENCHANTMENTS[i].equals(ench)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Pack an enchantment map; untracked enchantments are ignored
+     */
+    static long of(Map<Enchantment, Integer> enchants) {
+        long vector = 0L;
+        for (Map.Entry<Enchantment, Integer> entry : enchants.entrySet()) {
+            int slot = slotOf(entry.getKey());
+            if (slot >= 0) {
+                vector = with(vector, slot, entry.getValue());
+            }
+        }
+        return vector;
+    }
+
+    static int level(long vector, int slot) {
+        return (int) ((vector >>> (slot * BITS)) & MAX_LEVEL);
+    }
+
+    static long with(long vector, int slot, int level) {
+        long clamped = Math.max(0, Math.min(MAX_LEVEL, level));
+        int shift = slot * BITS;
+        return (vector & ~((long) MAX_LEVEL << shift)) | (clamped << shift);
+    }
+
+    /**
+     * Add every non-zero level of the vector to an item
+     */
+    static void apply(long vector, ItemStack item) {
+        for (int i = 0; i < SLOTS; i++) {
+            int level = level(vector, i);
+            if (level > 0) {
+                item.addUnsafeEnchantment(Slots.ENCHANTMENTS[i], level);
+            }
+        }
+    }
+}
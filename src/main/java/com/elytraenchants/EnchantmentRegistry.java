@@ -0,0 +1,181 @@
+package com.elytraenchants;
+
+import org.bukkit.enchantments.Enchantment;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves enchantment names to dense ids with a single hash lookup.
+ * Built once at startup from the server's enchantments, it accepts legacy
+ * Bukkit names (PROTECTION_ENVIRONMENTAL), namespaced keys (minecraft:protection),
+ * bare keys (protection) and a few common aliases on every server version.
+ */
+final class EnchantmentRegistry {
+
+    // Legacy Bukkit field name -> vanilla key, for servers where the two differ (1.20.5+)
+    private static final String[][] LEGACY_NAMES = {
+        {"PROTECTION_ENVIRONMENTAL", "protection"},
+        {"PROTECTION_FIRE", "fire_protection"},
+        {"PROTECTION_EXPLOSIONS", "blast_protection"},
+        {"PROTECTION_PROJECTILE", "projectile_protection"},
+        {"PROTECTION_FALL", "feather_falling"},
+        {"OXYGEN", "respiration"},
+        {"WATER_WORKER", "aqua_affinity"},
+        {"DAMAGE_ALL", "sharpness"},
+        {"DAMAGE_UNDEAD", "smite"},
+        {"DAMAGE_ARTHROPODS", "bane_of_arthropods"},
+        {"LOOT_BONUS_MOBS", "looting"},
+        {"DIG_SPEED", "efficiency"},
+        {"DURABILITY", "unbreaking"},
+        {"LOOT_BONUS_BLOCKS", "fortune"},
+        {"ARROW_DAMAGE", "power"},
+        {"ARROW_KNOCKBACK", "punch"},
+        {"ARROW_FIRE", "flame"},
+        {"ARROW_INFINITE", "infinity"},
+        {"LUCK", "luck_of_the_sea"},
+        {"SWEEPING_EDGE", "sweeping_edge"}
+    };
+
+    // Extra shorthand accepted in config and commands
+    private static final String[][] ALIASES = {
+        {"prot", "protection"},
+        {"fire_prot", "fire_protection"},
+        {"blast_prot", "blast_protection"},
+        {"proj_prot", "projectile_protection"},
+        {"projectile_prot", "projectile_protection"},
+        {"sweeping", "sweeping_edge"},
+        {"curse_of_binding", "binding_curse"},
+        {"curse_of_vanishing", "vanishing_curse"}
+    };
+
+    // Vanilla key -> permission node name where plugin.yml does not use the legacy name
+    private static final String[][] PERMISSION_NAMES = {
+        {"unbreaking", "unbreaking"}
+    };
+
+    private final Enchantment[] byId;
+    private final String[] keyNames;
+    private final String[] legacyNames;
+    private final String[] permissionNodes;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<Enchantment, Integer> idsByEnchantment = new HashMap<>();
+
+    private EnchantmentRegistry(Enchantment[] enchantments) {
+        int size = enchantments.length;
+        this.byId = enchantments;
+        this.keyNames = new String[size];
+        this.legacyNames = new String[size];
+        this.permissionNodes = new String[size];
+
+        Map<String, String> legacyByKey = new HashMap<>();
+        for (String[] pair : LEGACY_NAMES) {
+            legacyByKey.put(pair[1], pair[0]);
+        }
+        Map<String, String> permissionByKey = new HashMap<>();
+        for (String[] pair : PERMISSION_NAMES) {
+            permissionByKey.put(pair[0], pair[1]);
+        }
+
+        for (int id = 0; id < size; id++) {
+            Enchantment ench = enchantments[id];
+            String namespace = ench.getKey().getNamespace();
+            String key = ench.getKey().getKey();
+            keyNames[id] = key;
+            idsByEnchantment.put(ench, id);
+
+            ids.put(namespace + ":" + key, id);
+            if ("minecraft".equals(namespace) || !ids.containsKey(key)) {
+                ids.put(key, id);
+            }
+
+            String legacy = "minecraft".equals(namespace) ? legacyByKey.get(key) : null;
+            if (legacy == null) {
+                legacy = ench.getName();
+            }
+            legacyNames[id] = legacy == null ? key.toUpperCase(Locale.ROOT) : legacy;
+            ids.putIfAbsent(normalize(legacyNames[id]), id);
+            // Permission nodes are the names declared in plugin.yml: mostly the legacy names
+            String node = "minecraft".equals(namespace) ? permissionByKey.get(key) : null;
+            permissionNodes[id] = "elytraenchants.enchant." + (node != null ? node : legacyNames[id].toLowerCase(Locale.ROOT));
+        }
+
+        // 1.16-1.20 use "sweeping" as the key for Sweeping Edge
+        Integer sweeping = ids.get("sweeping");
+        if (sweeping != null) {
+            ids.putIfAbsent("sweeping_edge", sweeping);
+        }
+        for (String[] pair : LEGACY_NAMES) {
+            Integer id = ids.get(pair[1]);
+            if (id != null) {
+                ids.putIfAbsent(normalize(pair[0]), id);
+            }
+        }
+        for (String[] pair : ALIASES) {
+            Integer id = ids.get(pair[1]);
+            if (id != null) {
+                ids.putIfAbsent(pair[0], id);
+            }
+        }
+    }
+
+    /**
+     * Build the registry from the enchantments registered on this server
+     */
+    static EnchantmentRegistry build() {
+        return new EnchantmentRegistry(Enchantment.values());
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+    }
+
+    /**
+     * Resolve a config or command name to a dense id, or -1 if unknown
+     */
+    int resolve(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(normalize(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Dense id of an enchantment, or -1 if it was registered after startup
+     */
+    int idOf(Enchantment ench) {
+        Integer id = idsByEnchantment.get(ench);
+        return id == null ? -1 : id;
+    }
+
+    int size() {
+        return byId.length;
+    }
+
+    Enchantment get(int id) {
+        return byId[id];
+    }
+
+    /**
+     * Vanilla key without namespace (e.g. "protection"), used for completions
+     */
+    String keyName(int id) {
+        return keyNames[id];
+    }
+
+    /**
+     * Legacy Bukkit name (e.g. "PROTECTION_ENVIRONMENTAL"), used in config.yml
+     */
+    String legacyName(int id) {
+        return legacyNames[id];
+    }
+
+    /**
+     * Per-enchantment permission node (e.g. "elytraenchants.enchant.protection_environmental")
+     */
+    String permissionNode(int id) {
+        return permissionNodes[id];
+    }
+}
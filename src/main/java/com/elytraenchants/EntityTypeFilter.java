@@ -0,0 +1,53 @@
+package com.elytraenchants;
+
+import org.bukkit.entity.EntityType;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Entity types whose worn elytra takes part in damage handling, packed into
+ * a bitmap over {@link EntityType} ordinals. Damage events for every other
+ * entity (e.g. mob farms) are rejected with a single bit test.
+ */
+final class EntityTypeFilter {
+
+    private final long[] bits = new long[(EntityType.values().length + 63) >>> 6];
+
+    /**
+     * Build a filter from configured type names; unknown or non-living types
+     * are skipped with a warning
+     */
+    static EntityTypeFilter compile(Collection<String> names, Logger logger) {
+        EntityTypeFilter filter = new EntityTypeFilter();
+        for (String name : names) {
+            EntityType type;
+            try {
+                type = EntityType.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Unknown entity type in config: " + name);
+                continue;
+            }
+            if (!type.isAlive()) {
+                logger.warning("Entity type " + name + " cannot wear an elytra, ignoring");
+                continue;
+            }
+            filter.bits[type.ordinal() >>> 6] |= 1L << type.ordinal();
+        }
+        return filter;
+    }
+
+    boolean test(EntityType type) {
+        int ordinal = type.ordinal();
+        return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    int size() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,68 @@
+package com.elytraenchants;
+
+import java.util.Locale;
+
+/**
+ * Elytra-only enchantments that act while gliding. Bukkit has no API for
+ * registering real enchantments, so their levels live in the elytra's
+ * PersistentDataContainer and are shown as a lore line from messages.yml.
+ */
+enum FlightEnchant {
+
+    GLIDE_EFFICIENCY("glide_efficiency", "Glide Efficiency", MessageKey.FLIGHT_LORE_GLIDE_EFFICIENCY, 3),
+    FIREWORK_BOOST("firework_boost", "Firework Boost", MessageKey.FLIGHT_LORE_FIREWORK_BOOST, 3);
+
+    private static final FlightEnchant[] VALUES = values();
+
+    private final String key;
+    private final String displayName;
+    private final MessageKey loreKey;
+    private final int maxLevel;
+
+    FlightEnchant(String key, String displayName, MessageKey loreKey, int maxLevel) {
+        this.key = key;
+        this.displayName = displayName;
+        this.loreKey = loreKey;
+        this.maxLevel = maxLevel;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Message for the enchantment's lore line
+     */
+    MessageKey getLoreKey() {
+        return loreKey;
+    }
+
+    int getMaxLevel() {
+        return maxLevel;
+    }
+
+    String getPermissionNode() {
+        return "elytraenchants.enchant." + key;
+    }
+
+    /**
+     * Look up a flight enchantment by key (case-insensitive), or null
+     */
+    static FlightEnchant byName(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT).replace('-', '_');
+        for (FlightEnchant ench : VALUES) {
+            if (ench.key.equals(normalized)) {
+                return ench;
+            }
+        }
+        return null;
+    }
+
+    static FlightEnchant[] all() {
+        return VALUES;
+    }
+}
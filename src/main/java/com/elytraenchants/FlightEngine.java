@@ -0,0 +1,310 @@
+package com.elytraenchants;
+
+import org.bukkit.ChatColor;
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Index of gliding players and the single repeating task that applies
+ * flight enchantments and the action-bar HUD to them. The task only runs
+ * while someone is gliding, and per-tick work only touches the players in the index.
+ */
+final class FlightEngine implements Runnable {
+
+    // Worn data is re-read from the elytra this often while gliding
+    private static final int REFRESH_INTERVAL_TICKS = 20;
+
+    /**
+     * A gliding player and the elytra data read at the last refresh
+     */
+    static final class Glider {
+        final Player player;
+        int index;
+        long vector;
+        final int[] flightLevels = new int[FlightEnchant.all().length];
+        int refreshIn;
+        int boostTicks;
+        int durabilityPercent;
+        int protectionPercent;
+        int hudValue = -1;
+        int hudAge;
+        MessageTemplate hudTemplate;
+
+        Glider(Player player) {
+            this.player = player;
+        }
+
+        int level(FlightEnchant ench) {
+            return flightLevels[ench.ordinal()];
+        }
+    }
+
+    private final Plugin plugin;
+    private final ElytraHud hud;
+    private final MessageBundles messages;
+    private final WornElytraCache wornElytraCache;
+    private final NamespacedKey[] keys;
+    private final List<Glider> gliders = new ArrayList<>();
+    private final Map<UUID, Glider> byPlayer = new HashMap<>();
+    private BukkitTask task;
+
+    private boolean enabled;
+    private boolean glideEnabled;
+    private double dragReductionPerLevel;
+    private boolean boostEnabled;
+    private double boostPerLevel;
+    private int boostDurationTicks;
+    private double maxSpeed;
+
+    FlightEngine(Plugin plugin, ElytraHud hud, MessageBundles messages, WornElytraCache wornElytraCache) {
+        this.plugin = plugin;
+        this.hud = hud;
+        this.messages = messages;
+        this.wornElytraCache = wornElytraCache;
+        FlightEnchant[] all = FlightEnchant.all();
+        this.keys = new NamespacedKey[all.length];
+        for (FlightEnchant ench : all) {
+            keys[ench.ordinal()] = new NamespacedKey(plugin, ench.getKey());
+        }
+    }
+
+    void configure(ConfigurationSection config) {
+        enabled = config.getBoolean("flight.enabled", true);
+        glideEnabled = config.getBoolean("flight.glide-efficiency.enabled", true);
+        dragReductionPerLevel = config.getDouble("flight.glide-efficiency.drag-reduction-per-level", 0.002);
+        boostEnabled = config.getBoolean("flight.firework-boost.enabled", true);
+        boostPerLevel = config.getDouble("flight.firework-boost.boost-per-level", 0.05);
+        boostDurationTicks = config.getInt("flight.firework-boost.duration-ticks", 20);
+        maxSpeed = config.getDouble("flight.max-speed", 2.5);
+        if (!isTracking()) {
+            clear();
+        } else {
+            // Pick up players that were already gliding (e.g. after /reload)
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                if (player.isGliding()) {
+                    startGliding(player);
+                }
+            }
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether gliders are tracked at all (flight enchantments or HUD on)
+     */
+    private boolean isTracking() {
+        return enabled || hud.isEnabled();
+    }
+
+    boolean isEnabled(FlightEnchant ench) {
+        if (!enabled) {
+            return false;
+        }
+        return ench == FlightEnchant.GLIDE_EFFICIENCY ? glideEnabled : boostEnabled;
+    }
+
+    int size() {
+        return gliders.size();
+    }
+
+    Glider getGlider(UUID playerId) {
+        return byPlayer.get(playerId);
+    }
+
+    void startGliding(Player player) {
+        if (!isTracking() || byPlayer.containsKey(player.getUniqueId())) {
+            return;
+        }
+        Glider glider = new Glider(player);
+        glider.index = gliders.size();
+        gliders.add(glider);
+        byPlayer.put(player.getUniqueId(), glider);
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        }
+    }
+
+    void stopGliding(UUID playerId) {
+        Glider glider = byPlayer.remove(playerId);
+        if (glider == null) {
+            return;
+        }
+        // Swap-remove to keep the array dense
+        Glider last = gliders.remove(gliders.size() - 1);
+        if (last != glider) {
+            gliders.set(glider.index, last);
+            last.index = glider.index;
+        }
+        if (gliders.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * A gliding player used a firework rocket
+     */
+    void onFireworkBoost(Player player) {
+        Glider glider = byPlayer.get(player.getUniqueId());
+        if (glider != null && boostEnabled && glider.level(FlightEnchant.FIREWORK_BOOST) > 0) {
+            glider.boostTicks = boostDurationTicks;
+        }
+    }
+
+    void clear() {
+        gliders.clear();
+        byPlayer.clear();
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        for (int i = gliders.size() - 1; i >= 0; i--) {
+            Glider glider = gliders.get(i);
+            Player player = glider.player;
+            if (!player.isValid() || !player.isGliding()) {
+                stopGliding(player.getUniqueId());
+                continue;
+            }
+            if (--glider.refreshIn <= 0) {
+                glider.refreshIn = REFRESH_INTERVAL_TICKS;
+                if (!refresh(glider)) {
+                    stopGliding(player.getUniqueId());
+                    continue;
+                }
+            }
+            if (enabled) {
+                tick(glider);
+            }
+            if (hud.isEnabled()) {
+                hud.update(glider);
+            }
+        }
+    }
+
+    /**
+     * Re-read the worn elytra; returns false if the player no longer wears one
+     */
+    private boolean refresh(Glider glider) {
+        // Shares the damage handler's cached read; expired rentals are dropped from the item first
+        WornElytraCache.State state = wornElytraCache.get(glider.player);
+        if (!state.isWearingElytra()) {
+            return false;
+        }
+        ItemStack chest = glider.player.getInventory().getChestplate();
+        glider.vector = state.getVector();
+        readLevels(chest, glider.flightLevels);
+        if (hud.isEnabled()) {
+            int maxDurability = chest.getType().getMaxDurability();
+            int damage = chest.getItemMeta() instanceof Damageable damageable ? damageable.getDamage() : 0;
+            glider.durabilityPercent = maxDurability > 0
+                ? Math.max(0, (maxDurability - damage) * 100 / maxDurability) : 100;
+            // The reduction the damage handler applies, so vanilla EPF mode counts the other armor too
+            glider.protectionPercent = (int) Math.round(100.0
+                * state.getReduction(EntityDamageEvent.DamageCause.FLY_INTO_WALL));
+        }
+        return true;
+    }
+
+    private void tick(Glider glider) {
+        int glide = glideEnabled ? glider.level(FlightEnchant.GLIDE_EFFICIENCY) : 0;
+        boolean boosting = glider.boostTicks > 0;
+        if (glide == 0 && !boosting) {
+            return;
+        }
+        Player player = glider.player;
+        Vector velocity = player.getVelocity();
+        if (glide > 0) {
+            // Less drag means keeping more forward speed; falling speed is left to vanilla
+            double factor = 1.0 + dragReductionPerLevel * glide;
+            velocity.setX(velocity.getX() * factor);
+            velocity.setZ(velocity.getZ() * factor);
+        }
+        if (boosting) {
+            glider.boostTicks--;
+            velocity.add(player.getLocation().getDirection()
+                .multiply(boostPerLevel * glider.level(FlightEnchant.FIREWORK_BOOST)));
+        }
+        double speed = velocity.length();
+        if (speed > maxSpeed) {
+            velocity.multiply(maxSpeed / speed);
+        }
+        player.setVelocity(velocity);
+    }
+
+    /**
+     * Read the flight enchantment levels stored on an item into levels
+     */
+    void readLevels(ItemStack item, int[] levels) {
+        java.util.Arrays.fill(levels, 0);
+        if (!item.hasItemMeta()) {
+            return;
+        }
+        PersistentDataContainer data = item.getItemMeta().getPersistentDataContainer();
+        for (FlightEnchant ench : FlightEnchant.all()) {
+            Integer level = data.get(keys[ench.ordinal()], PersistentDataType.INTEGER);
+            levels[ench.ordinal()] = level == null ? 0 : level;
+        }
+    }
+
+    /**
+     * Store a flight enchantment level on an item and update its lore line.
+     * The old line is found by its text for the previous level, in the
+     * current messages or as written before the lore came from messages.yml.
+     */
+    void apply(ItemStack item, FlightEnchant ench, int level) {
+        ItemMeta meta = item.getItemMeta();
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        Integer previous = data.get(keys[ench.ordinal()], PersistentDataType.INTEGER);
+        if (level > 0) {
+            data.set(keys[ench.ordinal()], PersistentDataType.INTEGER, level);
+        } else {
+            data.remove(keys[ench.ordinal()]);
+        }
+        MessageTemplate template = messages.getDefault(ench.getLoreKey());
+        List<String> lore = meta.hasLore() ? new ArrayList<>(meta.getLore()) : new ArrayList<>();
+        if (previous != null) {
+            String current = template.render("%level%", toRoman(previous));
+            String legacy = ChatColor.GRAY + ench.getDisplayName() + " " + toRoman(previous);
+            lore.removeIf(line -> line.equals(current) || line.equals(legacy));
+        }
+        if (level > 0) {
+            lore.add(0, template.render("%level%", toRoman(level)));
+        }
+        meta.setLore(lore.isEmpty() ? null : lore);
+        item.setItemMeta(meta);
+    }
+
+    private static String toRoman(int level) {
+        switch (level) {
+            case 1: return "I";
+            case 2: return "II";
+            case 3: return "III";
+            case 4: return "IV";
+            case 5: return "V";
+            default: return String.valueOf(level);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.elytraenchants;
+
+import java.util.Locale;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles config formulas of one variable (level) into lambda trees. Parsing
+ * happens once per load; evaluation is a few primitive calls with no boxing or
+ * allocation. Supported: numbers, level, + - * / ^, unary minus, parentheses
+ * and min, max, abs, sqrt, floor, ceil. Constant sub-expressions are folded.
+ */
+final class Formula {
+
+    /**
+     * A formula that could not be parsed; the message includes the position
+     */
+    static final class FormulaException extends Exception {
+        FormulaException(String source, int position, String problem) {
+            super(problem + " at position " + (position + 1) + " in '" + source + "'");
+        }
+    }
+
+    // A compiled sub-expression; constants are kept as values so they can be folded
+    private static final class Node {
+        final DoubleUnaryOperator op;
+        final boolean constant;
+        final double value;
+
+        Node(DoubleUnaryOperator op) {
+            this.op = op;
+            this.constant = false;
+            this.value = 0.0;
+        }
+
+        Node(double value) {
+            this.op = level -> value;
+            this.constant = true;
+            this.value = value;
+        }
+    }
+
+    private interface Binary {
+        double apply(double a, double b);
+    }
+
+    private final String source;
+    private int pos;
+
+    private Formula(String source) {
+        this.source = source;
+    }
+
+    static DoubleUnaryOperator compile(String source) throws FormulaException {
+        if (source == null || source.trim().isEmpty()) {
+            throw new FormulaException(String.valueOf(source), 0, "Empty formula");
+        }
+        Formula parser = new Formula(source);
+        Node node = parser.expression();
+        parser.skipSpaces();
+        if (parser.pos < source.length()) {
+            throw new FormulaException(source, parser.pos, "Unexpected '" + source.charAt(parser.pos) + "'");
+        }
+        return node.op;
+    }
+
+    // expression := term (('+' | '-') term)*
+    private Node expression() throws FormulaException {
+        Node left = term();
+        while (true) {
+            if (accept('+')) {
+                left = combine(left, term(), (a, b) -> a + b);
+            } else if (accept('-')) {
+                left = combine(left, term(), (a, b) -> a - b);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    // term := power (('*' | '/') power)*
+    private Node term() throws FormulaException {
+        Node left = power();
+        while (true) {
+            if (accept('*')) {
+                left = combine(left, power(), (a, b) -> a * b);
+            } else if (accept('/')) {
+                left = combine(left, power(), (a, b) -> a / b);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    // power := unary ('^' power)?   (right-associative)
+    private Node power() throws FormulaException {
+        Node base = unary();
+        if (accept('^')) {
+            return combine(base, power(), Math::pow);
+        }
+        return base;
+    }
+
+    private Node unary() throws FormulaException {
+        if (accept('-')) {
+            Node operand = unary();
+            if (operand.constant) {
+                return new Node(-operand.value);
+            }
+            DoubleUnaryOperator op = operand.op;
+            return new Node(level -> -op.applyAsDouble(level));
+        }
+        if (accept('+')) {
+            return unary();
+        }
+        return primary();
+    }
+
+    private Node primary() throws FormulaException {
+        skipSpaces();
+        if (pos >= source.length()) {
+            throw new FormulaException(source, pos, "Unexpected end of formula");
+        }
+        char c = source.charAt(pos);
+        if (accept('(')) {
+            Node inner = expression();
+            expect(')');
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            int start = pos;
+            while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                pos++;
+            }
+            try {
+                return new Node(Double.parseDouble(source.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw new FormulaException(source, start, "Bad number '" + source.substring(start, pos) + "'");
+            }
+        }
+        if (Character.isLetter(c)) {
+            int start = pos;
+            while (pos < source.length() && Character.isLetter(source.charAt(pos))) {
+                pos++;
+            }
+            String name = source.substring(start, pos).toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "level":
+                    return new Node(level -> level);
+                case "min":
+                    return call2(Math::min);
+                case "max":
+                    return call2(Math::max);
+                case "abs":
+                    return call1(Math::abs);
+                case "sqrt":
+                    return call1(Math::sqrt);
+                case "floor":
+                    return call1(Math::floor);
+                case "ceil":
+                    return call1(Math::ceil);
+                default:
+                    throw new FormulaException(source, start, "Unknown name '" + name + "'");
+            }
+        }
+        throw new FormulaException(source, pos, "Unexpected '" + c + "'");
+    }
+
+    private Node call1(DoubleUnaryOperator function) throws FormulaException {
+        expect('(');
+        Node argument = expression();
+        expect(')');
+        if (argument.constant) {
+            return new Node(function.applyAsDouble(argument.value));
+        }
+        DoubleUnaryOperator op = argument.op;
+        return new Node(level -> function.applyAsDouble(op.applyAsDouble(level)));
+    }
+
+    private Node call2(Binary function) throws FormulaException {
+        expect('(');
+        Node first = expression();
+        expect(',');
+        Node second = expression();
+        expect(')');
+        return combine(first, second, function);
+    }
+
+    private static Node combine(Node left, Node right, Binary function) {
+        if (left.constant && right.constant) {
+            return new Node(function.apply(left.value, right.value));
+        }
+        DoubleUnaryOperator a = left.op;
+        DoubleUnaryOperator b = right.op;
+        // Specialise the common "constant op level-expression" shapes
+        if (left.constant) {
+            double value = left.value;
+            return new Node(level -> function.apply(value, b.applyAsDouble(level)));
+        }
+        if (right.constant) {
+            double value = right.value;
+            return new Node(level -> function.apply(a.applyAsDouble(level), value));
+        }
+        return new Node(level -> function.apply(a.applyAsDouble(level), b.applyAsDouble(level)));
+    }
+
+    private boolean accept(char expected) {
+        skipSpaces();
+        if (pos < source.length() && source.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) throws FormulaException {
+        if (!accept(expected)) {
+            throw new FormulaException(source, pos, "Expected '" + expected + "'");
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.elytraenchants;
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Rolls loot enchantments onto elytras in item frames of newly generated
+ * chunks, End City ships in particular (main thread only). Up to 1.16 the
+ * frames are part of ChunkLoadEvent's chunk; from 1.17 entities load on their
+ * own and arrive with EntitiesLoadEvent, which is looked up at runtime so the
+ * jar still builds against the 1.16 API. New chunks are remembered until their
+ * entities load or the chunk unloads, so frames in old chunks are never rolled.
+ */
+final class FrameLootListener implements Listener {
+
+    private static final String ENTITIES_LOAD_EVENT = "org.bukkit.event.world.EntitiesLoadEvent";
+
+    private final LootEnchanter lootEnchanter;
+    private final WorldPolicies worldPolicies;
+    private final ItemSignatures itemSignatures;
+    // New chunks by world whose entities have not loaded yet (1.17+ only)
+    private final Map<UUID, Set<Long>> pending = new HashMap<>();
+    private boolean entitiesSeparate;
+
+    FrameLootListener(LootEnchanter lootEnchanter, WorldPolicies worldPolicies, ItemSignatures itemSignatures) {
+        this.lootEnchanter = lootEnchanter;
+        this.worldPolicies = worldPolicies;
+        this.itemSignatures = itemSignatures;
+    }
+
+    /**
+     * Register the chunk handlers and, where the server has it, EntitiesLoadEvent;
+     * returns whether entities load separately from chunks
+     */
+    boolean register(Plugin plugin) {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        Class<? extends Event> entitiesLoad;
+        try {
+            entitiesLoad = Class.forName(ENTITIES_LOAD_EVENT, false, FrameLootListener.class.getClassLoader())
+                .asSubclass(Event.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            return false;
+        }
+        entitiesSeparate = true;
+        plugin.getServer().getPluginManager().registerEvent(entitiesLoad, this, EventPriority.NORMAL, (listener, event) -> {
+            if (event instanceof ChunkEvent chunkEvent) {
+                onEntitiesLoad(chunkEvent.getChunk());
+            }
+        }, plugin, false);
+        return true;
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (!event.isNewChunk() || !lootEnchanter.rollsFrames(event.getWorld())) return;
+        Chunk chunk = event.getChunk();
+        if (entitiesSeparate) {
+            pending.computeIfAbsent(event.getWorld().getUID(), id -> new HashSet<>()).add(key(chunk));
+        }
+        // Up to 1.16, and on 1.17+ servers that already attached the entities
+        rollFrames(chunk);
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        if (pending.isEmpty()) return;
+        Set<Long> chunks = pending.get(event.getWorld().getUID());
+        if (chunks != null && chunks.remove(key(event.getChunk())) && chunks.isEmpty()) {
+            pending.remove(event.getWorld().getUID());
+        }
+    }
+
+    private void onEntitiesLoad(Chunk chunk) {
+        if (pending.isEmpty()) return;
+        UUID worldId = chunk.getWorld().getUID();
+        Set<Long> chunks = pending.get(worldId);
+        if (chunks == null || !chunks.remove(key(chunk))) return;
+        if (chunks.isEmpty()) {
+            pending.remove(worldId);
+        }
+        rollFrames(chunk);
+    }
+
+    private void rollFrames(Chunk chunk) {
+        CompiledPolicy worldPolicy = worldPolicies.get(chunk.getWorld());
+        if (!worldPolicy.isEnabled()) return;
+        for (Entity entity : chunk.getEntities()) {
+            if (!(entity instanceof ItemFrame frame)) continue;
+            ItemStack item = frame.getItem();
+            // Already enchanted elytras are skipped, so a frame seen twice is rolled once
+            if (item.getType() == Material.ELYTRA && item.getEnchantments().isEmpty()
+                    && lootEnchanter.roll(item, worldPolicy)) {
+                itemSignatures.sign(item);
+                frame.setItem(item, false);
+            }
+        }
+    }
+
+    private static long key(Chunk chunk) {
+        return (long) chunk.getX() << 32 | chunk.getZ() & 0xFFFFFFFFL;
+    }
+}
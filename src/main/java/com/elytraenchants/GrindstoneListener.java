@@ -0,0 +1,251 @@
+package com.elytraenchants;
+
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.inventory.GrindstoneInventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.Repairable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Grindstone support for elytras (main thread only). Vanilla removes the
+ * enchantments but keeps flight enchantments, which live in the item's
+ * PersistentDataContainer, and leaves a signature that no longer matches.
+ * Spigot 1.16 has no grindstone prepare event, so the result slot is replaced
+ * a tick after each click, once vanilla has filled it, and again on the click
+ * that takes it. Results come from a {@link GrindstoneResultCache}.
+ */
+final class GrindstoneListener implements Listener {
+
+    private static final int RESULT_SLOT = 2;
+
+    /**
+     * The result for a pair of inputs; result is null when nothing may be
+     * taken, book holds the removed enchantments or is null if there are none
+     */
+    static final class Outcome {
+        final ItemStack result;
+        final ItemStack book;
+
+        Outcome(ItemStack result, ItemStack book) {
+            this.result = result;
+            this.book = book;
+        }
+    }
+
+    // Inputs with active rentals give nothing, as in the anvil
+    private static final Outcome BLOCKED = new Outcome(null, null);
+
+    private final ElytraEnchantsPlugin plugin;
+    private final WorldPolicies worldPolicies;
+    private final TimedEnchants timedEnchants;
+    private final ItemSignatures itemSignatures;
+    private final GrindstoneResultCache results = new GrindstoneResultCache();
+    private FlightEngine flightEngine;
+    private boolean enabled;
+    private boolean book;
+
+    GrindstoneListener(ElytraEnchantsPlugin plugin, WorldPolicies worldPolicies, TimedEnchants timedEnchants,
+                       ItemSignatures itemSignatures) {
+        this.plugin = plugin;
+        this.worldPolicies = worldPolicies;
+        this.timedEnchants = timedEnchants;
+        this.itemSignatures = itemSignatures;
+    }
+
+    void configure(ConfigurationSection config, FlightEngine flightEngine) {
+        this.flightEngine = flightEngine;
+        enabled = config.getBoolean("grindstone.enabled", true);
+        book = config.getBoolean("grindstone.book", false);
+        // Cached results were computed under the previous policies and signing key
+        results.clear();
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onGrindstoneClick(InventoryClickEvent event) {
+        if (!enabled || !(event.getInventory() instanceof GrindstoneInventory grindstone)
+                || !(event.getWhoClicked() instanceof Player player)) return;
+        if (event.getRawSlot() != RESULT_SLOT) {
+            refreshLater(grindstone, player);
+            return;
+        }
+        // Taking the result: make sure it is ours even if the refresh has not run yet
+        Outcome outcome = outcome(grindstone, player);
+        if (outcome == null) return;
+        if (outcome.result == null) {
+            grindstone.setItem(RESULT_SLOT, null);
+            event.setCancelled(true);
+            return;
+        }
+        grindstone.setItem(RESULT_SLOT, outcome.result.clone());
+        if (book && outcome.book != null) {
+            // Vanilla would pay out experience for the same enchantments
+            event.setCancelled(true);
+            takeWithBook(grindstone, player, outcome, event.isShiftClick());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGrindstoneDrag(InventoryDragEvent event) {
+        if (enabled && event.getInventory() instanceof GrindstoneInventory grindstone
+                && event.getWhoClicked() instanceof Player player) {
+            refreshLater(grindstone, player);
+        }
+    }
+
+    private void refreshLater(GrindstoneInventory grindstone, Player player) {
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (!grindstone.getViewers().contains(player)) return;
+            Outcome outcome = outcome(grindstone, player);
+            if (outcome != null) {
+                grindstone.setItem(RESULT_SLOT, outcome.result == null ? null : outcome.result.clone());
+            }
+        });
+    }
+
+    /**
+     * Outcome for the grindstone's current inputs, or null to keep vanilla's
+     */
+    private Outcome outcome(GrindstoneInventory grindstone, Player player) {
+        ItemStack first = present(grindstone.getItem(0));
+        ItemStack second = present(grindstone.getItem(1));
+        if (!isElytra(first) && !isElytra(second)) return null;
+        CompiledPolicy policy = worldPolicies.get(player.getWorld());
+        if (!policy.isEnabled()) return null;
+        long now = System.currentTimeMillis();
+        if (first != null && plugin.expireTimed(first, now)) {
+            grindstone.setItem(0, first);
+        }
+        if (second != null && plugin.expireTimed(second, now)) {
+            grindstone.setItem(1, second);
+        }
+        if (timedEnchants.hasTimed(first) || timedEnchants.hasTimed(second)) {
+            return BLOCKED;
+        }
+        GrindstoneResultCache.Entry cached = results.get(first, second, policy);
+        if (cached != null) {
+            return cached.outcome;
+        }
+        Outcome outcome = compute(first, second);
+        results.put(first, second, policy, outcome);
+        return outcome;
+    }
+
+    /**
+     * Vanilla's grindstone rules for one elytra or two, also dropping flight
+     * enchantments; null if vanilla gives no result either
+     */
+    private Outcome compute(ItemStack first, ItemStack second) {
+        ItemStack base = first != null ? first : second;
+        ItemStack other = first != null ? second : null;
+        if (!isElytra(base) || (other != null && !isElytra(other))) return null;
+        ItemStack result = base.clone();
+        result.setAmount(1);
+        Map<Enchantment, Integer> removed = new HashMap<>();
+        int[] flightLevels = new int[FlightEnchant.all().length];
+        flightEngine.readLevels(base, flightLevels);
+        boolean flight = false;
+        for (int level : flightLevels) {
+            flight |= level > 0;
+        }
+        ItemMeta meta = result.getItemMeta();
+        if (other != null) {
+            // Curses carry over from the second elytra, like vanilla
+            for (Map.Entry<Enchantment, Integer> entry : other.getEnchantments().entrySet()) {
+                if (entry.getKey().isCursed()) {
+                    meta.addEnchant(entry.getKey(), Math.max(entry.getValue(), meta.getEnchantLevel(entry.getKey())), true);
+                } else {
+                    removed.merge(entry.getKey(), entry.getValue(), Math::max);
+                }
+            }
+            if (meta instanceof Damageable damageable) {
+                int max = Material.ELYTRA.getMaxDurability();
+                int remaining = max - damageOf(base) + max - damageOf(other) + max * 5 / 100;
+                damageable.setDamage(Math.max(max - remaining, 0));
+            }
+        }
+        for (Map.Entry<Enchantment, Integer> entry : base.getEnchantments().entrySet()) {
+            if (!entry.getKey().isCursed()) {
+                removed.merge(entry.getKey(), entry.getValue(), Math::max);
+                meta.removeEnchant(entry.getKey());
+            }
+        }
+        // A single elytra with nothing to remove gets no result in vanilla
+        if (other == null && removed.isEmpty() && !flight) return null;
+        if (meta instanceof Repairable repairable) {
+            int cost = 0;
+            for (int i = 0; i < meta.getEnchants().size(); i++) {
+                cost = cost * 2 + 1;
+            }
+            repairable.setRepairCost(cost);
+        }
+        result.setItemMeta(meta);
+        for (FlightEnchant ench : FlightEnchant.all()) {
+            if (flightLevels[ench.ordinal()] > 0) {
+                flightEngine.apply(result, ench, 0);
+            }
+        }
+        // A result is only as legitimate as the elytras it was made from
+        if (itemSignatures.verify(base) == ItemSignatures.Verdict.VALID
+                && (other == null || itemSignatures.verify(other) == ItemSignatures.Verdict.VALID)) {
+            itemSignatures.sign(result);
+        }
+        return new Outcome(result, removed.isEmpty() ? null : book(removed));
+    }
+
+    /**
+     * Hand over the result and the book of removed enchantments in place of experience
+     */
+    private void takeWithBook(GrindstoneInventory grindstone, Player player, Outcome outcome, boolean shiftClick) {
+        ItemStack result = outcome.result.clone();
+        if (shiftClick) {
+            if (!player.getInventory().addItem(result).isEmpty()) return;
+        } else {
+            ItemStack cursor = player.getItemOnCursor();
+            if (cursor != null && cursor.getType() != Material.AIR) return;
+            player.setItemOnCursor(result);
+        }
+        grindstone.setItem(0, null);
+        grindstone.setItem(1, null);
+        grindstone.setItem(RESULT_SLOT, null);
+        for (ItemStack left : player.getInventory().addItem(outcome.book.clone()).values()) {
+            player.getWorld().dropItem(player.getLocation(), left);
+        }
+        player.playSound(player.getLocation(), Sound.BLOCK_GRINDSTONE_USE, 1.0f, 1.0f);
+    }
+
+    private static ItemStack book(Map<Enchantment, Integer> enchantments) {
+        ItemStack book = new ItemStack(Material.ENCHANTED_BOOK);
+        EnchantmentStorageMeta meta = (EnchantmentStorageMeta) book.getItemMeta();
+        for (Map.Entry<Enchantment, Integer> entry : enchantments.entrySet()) {
+            meta.addStoredEnchant(entry.getKey(), entry.getValue(), true);
+        }
+        book.setItemMeta(meta);
+        return book;
+    }
+
+    private static int damageOf(ItemStack item) {
+        return item.getItemMeta() instanceof Damageable damageable ? damageable.getDamage() : 0;
+    }
+
+    private static boolean isElytra(ItemStack item) {
+        return item != null && item.getType() == Material.ELYTRA;
+    }
+
+    private static ItemStack present(ItemStack item) {
+        return item == null || item.getType() == Material.AIR ? null : item;
+    }
+}
@@ -0,0 +1,81 @@
+package com.elytraenchants;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Recent grindstone results by input items and policy (main thread only).
+ * The result is refreshed after every click in the grindstone and checked
+ * again when it is taken, nearly always for the same inputs. A policy carries
+ * its config version, so results from before a reload are never served. Keys
+ * hold copies of the inputs, like {@link AnvilResultCache}.
+ */
+final class GrindstoneResultCache {
+
+    private static final int MAX_ENTRIES = 128;
+
+    /**
+     * A cached computation; outcome is null when the vanilla result stands
+     */
+    static final class Entry {
+        final GrindstoneListener.Outcome outcome;
+
+        private Entry(GrindstoneListener.Outcome outcome) {
+            this.outcome = outcome;
+        }
+    }
+
+    private static final class Key {
+        private final ItemStack first;
+        private final ItemStack second;
+        private final CompiledPolicy policy;
+        private final int hash;
+
+        Key(ItemStack first, ItemStack second, CompiledPolicy policy) {
+            this.first = first;
+            this.second = second;
+            this.policy = policy;
+            this.hash = Objects.hash(first, second, System.identityHashCode(policy));
+        }
+
+        Key copy() {
+            return new Key(first == null ? null : first.clone(), second == null ? null : second.clone(), policy);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && policy == other.policy
+                && Objects.equals(first, other.first) && Objects.equals(second, other.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * The cached result for these inputs, or null if they were not seen recently
+     */
+    Entry get(ItemStack first, ItemStack second, CompiledPolicy policy) {
+        return entries.get(new Key(first, second, policy));
+    }
+
+    void put(ItemStack first, ItemStack second, CompiledPolicy policy, GrindstoneListener.Outcome outcome) {
+        entries.put(new Key(first, second, policy).copy(), new Entry(outcome));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
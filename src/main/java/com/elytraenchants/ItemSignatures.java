@@ -0,0 +1,286 @@
+package com.elytraenchants;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * HMAC signatures over the enchantment state of elytras this plugin creates or
+ * changes (main thread only), so items from dupes, NBT editors or commands of
+ * other plugins can be told apart. The signed state is every enchantment and
+ * level, the flight enchantment levels and the timed enchantment entries,
+ * stored as a truncated HMAC-SHA256 in the item's PersistentDataContainer.
+ * Worn elytras are verified when the worn-elytra cache re-reads them, and the
+ * verdict is cached per player by the signed bytes, so an unchanged item is
+ * never hashed twice and damage events never hash at all.
+ */
+final class ItemSignatures {
+
+    enum Verdict {
+        /** Signed by this server, or only carrying what vanilla can put on an elytra */
+        VALID,
+        /** No signature and enchantments vanilla can't produce */
+        UNSIGNED,
+        /** Signature does not match the item */
+        TAMPERED
+    }
+
+    enum Action {
+        IGNORE,
+        LOG,
+        STRIP
+    }
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final String KEY_FILE = "signing.key";
+
+    // Last verdict per player and the state it was computed from
+    private static final class Check {
+        final byte[] state;
+        final byte[] signature;
+        final Verdict verdict;
+
+        Check(byte[] state, byte[] signature, Verdict verdict) {
+            this.state = state;
+            this.signature = signature;
+            this.verdict = verdict;
+        }
+    }
+
+    private final Plugin plugin;
+    private final TimedEnchants timedEnchants;
+    private final NamespacedKey signatureKey;
+    private final NamespacedKey[] flightKeys;
+    private final Enchantment[] enchantments;
+    private final Map<UUID, Check> checks = new HashMap<>();
+    private Mac mac;
+    private boolean enabled;
+    private Action unsignedAction = Action.LOG;
+    private Action tamperedAction = Action.LOG;
+    private boolean keyGenerated;
+
+    ItemSignatures(Plugin plugin, TimedEnchants timedEnchants) {
+        this.plugin = plugin;
+        this.timedEnchants = timedEnchants;
+        this.signatureKey = new NamespacedKey(plugin, "signature");
+        FlightEnchant[] flights = FlightEnchant.all();
+        this.flightKeys = new NamespacedKey[flights.length];
+        for (FlightEnchant flight : flights) {
+            flightKeys[flight.ordinal()] = new NamespacedKey(plugin, flight.getKey());
+        }
+        this.enchantments = Enchantment.values().clone();
+        Arrays.sort(enchantments, Comparator.comparing(e -> e.getKey().toString()));
+    }
+
+    /**
+     * Read tamper-detection.* and load the signing key, creating signing.key
+     * on first use when none is configured. Items signed before a key was
+     * generated can't be told from tampered ones, so strip falls back to log
+     * for tampered items while the key is new.
+     */
+    void configure(ConfigurationSection config, Logger logger) {
+        enabled = config.getBoolean("tamper-detection.enabled", false);
+        unsignedAction = parseAction(config.getString("tamper-detection.unsigned-action", "log"), Action.LOG, logger);
+        tamperedAction = parseAction(config.getString("tamper-detection.tampered-action", "log"), Action.LOG, logger);
+        checks.clear();
+        try {
+            byte[] key = loadKey(config.getString("tamper-detection.key", ""), logger);
+            Mac loaded = Mac.getInstance(ALGORITHM);
+            loaded.init(new SecretKeySpec(key, ALGORITHM));
+            mac = loaded;
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            logger.severe("Could not load the elytra signing key: " + e.getMessage() + " - items will not be signed");
+            mac = null;
+        }
+        if (keyGenerated && tamperedAction == Action.STRIP) {
+            logger.warning("A new " + KEY_FILE + " was generated this run; tampered elytras are only logged until the"
+                + " next restart, in case items were signed with a lost key. Restore the old key or set"
+                + " tamper-detection.key if that is the case");
+            tamperedAction = Action.LOG;
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled && mac != null;
+    }
+
+    Action actionFor(Verdict verdict) {
+        return verdict == Verdict.TAMPERED ? tamperedAction : verdict == Verdict.UNSIGNED ? unsignedAction : Action.IGNORE;
+    }
+
+    /**
+     * Sign an elytra's current state
+     */
+    void sign(ItemStack item) {
+        if (mac == null || item == null || !item.hasItemMeta()) {
+            return;
+        }
+        ItemMeta meta = item.getItemMeta();
+        meta.getPersistentDataContainer().set(signatureKey, PersistentDataType.BYTE_ARRAY, hmac(state(meta)));
+        item.setItemMeta(meta);
+    }
+
+    Verdict verify(ItemStack item) {
+        if (mac == null || item == null || !item.hasItemMeta()) {
+            return Verdict.VALID;
+        }
+        ItemMeta meta = item.getItemMeta();
+        return verdict(meta, state(meta), meta.getPersistentDataContainer().get(signatureKey, PersistentDataType.BYTE_ARRAY));
+    }
+
+    /**
+     * Verdict for a player's worn elytra, or null if its signed state has not
+     * changed since the last check (that verdict was already acted on)
+     */
+    Verdict check(Player player, ItemStack chest) {
+        if (!isEnabled() || !chest.hasItemMeta()) {
+            return null;
+        }
+        ItemMeta meta = chest.getItemMeta();
+        byte[] state = state(meta);
+        byte[] signature = meta.getPersistentDataContainer().get(signatureKey, PersistentDataType.BYTE_ARRAY);
+        Check last = checks.get(player.getUniqueId());
+        if (last != null && Arrays.equals(last.state, state) && Arrays.equals(last.signature, signature)) {
+            return null;
+        }
+        Verdict verdict = verdict(meta, state, signature);
+        checks.put(player.getUniqueId(), new Check(state, signature, verdict));
+        return verdict;
+    }
+
+    void forget(UUID playerId) {
+        checks.remove(playerId);
+    }
+
+    /**
+     * Remove every enchantment, flight level, timed entry and the signature from an item
+     */
+    void strip(ItemStack item, FlightEngine flightEngine) {
+        for (FlightEnchant flight : FlightEnchant.all()) {
+            flightEngine.apply(item, flight, 0);
+        }
+        ItemMeta meta = item.getItemMeta();
+        for (Enchantment ench : meta.getEnchants().keySet()) {
+            meta.removeEnchant(ench);
+        }
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        timedEnchants.clear(data);
+        data.remove(signatureKey);
+        item.setItemMeta(meta);
+    }
+
+    private Verdict verdict(ItemMeta meta, byte[] state, byte[] signature) {
+        if (signature == null) {
+            return vanillaOnly(meta) ? Verdict.VALID : Verdict.UNSIGNED;
+        }
+        return MessageDigest.isEqual(signature, hmac(state)) ? Verdict.VALID : Verdict.TAMPERED;
+    }
+
+    // Unsigned items predating the plugin may carry what a vanilla anvil allows on an elytra
+    private boolean vanillaOnly(ItemMeta meta) {
+        for (Map.Entry<Enchantment, Integer> entry : meta.getEnchants().entrySet()) {
+            Enchantment ench = entry.getKey();
+            boolean vanilla = ench.equals(Enchantment.MENDING) || ench.equals(Enchantment.DURABILITY)
+                || ench.equals(Enchantment.BINDING_CURSE) || ench.equals(Enchantment.VANISHING_CURSE);
+            if (!vanilla || entry.getValue() > ench.getMaxLevel()) {
+                return false;
+            }
+        }
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        for (NamespacedKey key : flightKeys) {
+            if (data.has(key, PersistentDataType.INTEGER)) {
+                return false;
+            }
+        }
+        return timedEnchants.nextExpiry(data) == 0L;
+    }
+
+    // Canonical bytes of everything the signature covers
+    private byte[] state(ItemMeta meta) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        try {
+            for (Enchantment ench : enchantments) {
+                int level = meta.getEnchantLevel(ench);
+                long[] timed = timedEnchants.entry(data, ench);
+                if (level == 0 && timed == null) {
+                    continue;
+                }
+                out.writeUTF(ench.getKey().toString());
+                out.writeInt(level);
+                if (timed != null) {
+                    out.writeLong(timed[0]);
+                    out.writeLong(timed[1]);
+                }
+            }
+            out.writeByte(0);
+            for (NamespacedKey key : flightKeys) {
+                Integer level = data.get(key, PersistentDataType.INTEGER);
+                out.writeInt(level == null ? 0 : level);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] hmac(byte[] state) {
+        return Arrays.copyOf(mac.doFinal(state), SIGNATURE_BYTES);
+    }
+
+    private byte[] loadKey(String configured, Logger logger) throws IOException {
+        if (!configured.isEmpty()) {
+            return Base64.getDecoder().decode(configured.trim());
+        }
+        Path file = plugin.getDataFolder().toPath().resolve(KEY_FILE);
+        if (Files.isRegularFile(file)) {
+            return Base64.getDecoder().decode(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+        }
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Base64.getEncoder().encode(key));
+        // Kept until restart, so a reload does not start stripping right away
+        keyGenerated = true;
+        logger.info("Generated a new elytra signing key in " + file);
+        return key;
+    }
+
+    private static Action parseAction(String value, Action fallback, Logger logger) {
+        try {
+            return Action.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Unknown tamper-detection action '" + value + "' - using " + fallback.name().toLowerCase(Locale.ROOT));
+            return fallback;
+        }
+    }
+}
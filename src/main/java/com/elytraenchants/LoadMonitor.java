@@ -0,0 +1,151 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Tracks server load and tells the plugin when to shed optional work (main
+ * thread only). A task running every tick measures the time between ticks and
+ * smooths it into an MSPT estimate. Crossing a threshold raises the load level
+ * at once; a level is only left after the estimate has stayed below its
+ * threshold minus the hysteresis for the whole recovery period, one level at
+ * a time, so a server hovering around a threshold does not flap.
+ */
+final class LoadMonitor implements Runnable {
+
+    enum Level {
+        /** Everything runs */
+        NORMAL,
+        /** Thorns capped, HUD, per-event debug logging and update broadcasts paused */
+        DEGRADED,
+        /** Tighter thorns cap, anvil results only from cache */
+        CRITICAL
+    }
+
+    // Weight of the newest sample, a time constant of about 50 ticks
+    private static final double ALPHA = 0.02;
+    // A single long pause (world save, GC) counts for at most this much
+    private static final double MAX_SAMPLE_MSPT = 1000.0;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final Consumer<Level> listener;
+    private BukkitTask task;
+
+    private boolean enabled;
+    private double degradedMspt;
+    private double criticalMspt;
+    private double hysteresisMspt;
+    private long recoverNanos;
+    private int degradedThornsPerTick;
+    private int criticalThornsPerTick;
+
+    private Level level = Level.NORMAL;
+    private double mspt = 50.0;
+    private long lastTick;
+    private long calmSince;
+    private int thornsThisTick;
+
+    LoadMonitor(Plugin plugin, Logger logger, Consumer<Level> listener) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.listener = listener;
+    }
+
+    void configure(ConfigurationSection config) {
+        enabled = config.getBoolean("load-shedding.enabled", true);
+        degradedMspt = config.getDouble("load-shedding.degraded.mspt", 55.0);
+        criticalMspt = Math.max(degradedMspt, config.getDouble("load-shedding.critical.mspt", 80.0));
+        hysteresisMspt = Math.max(0.0, config.getDouble("load-shedding.hysteresis-mspt", 5.0));
+        recoverNanos = TimeUnit.SECONDS.toNanos(Math.max(0L, config.getLong("load-shedding.recover-seconds", 30L)));
+        degradedThornsPerTick = Math.max(0, config.getInt("load-shedding.degraded.thorns-per-tick", 8));
+        criticalThornsPerTick = Math.max(0, config.getInt("load-shedding.critical.thorns-per-tick", 2));
+        if (enabled && task == null) {
+            lastTick = 0L;
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        } else if (!enabled) {
+            stop();
+        }
+    }
+
+    void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        mspt = 50.0;
+        calmSince = 0L;
+        if (level != Level.NORMAL) {
+            level = Level.NORMAL;
+            listener.accept(level);
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        thornsThisTick = 0;
+        if (lastTick != 0L) {
+            // The gap between two runs is the tick period: 50 ms while the server
+            // keeps up, the tick's own duration once it falls behind
+            double sample = Math.min(MAX_SAMPLE_MSPT, (now - lastTick) / NANOS_PER_MILLI);
+            mspt += ALPHA * (sample - mspt);
+            update(now);
+        }
+        lastTick = now;
+    }
+
+    private void update(long now) {
+        Level target = mspt >= criticalMspt ? Level.CRITICAL : mspt >= degradedMspt ? Level.DEGRADED : Level.NORMAL;
+        if (target.ordinal() > level.ordinal()) {
+            logger.warning(String.format("Server at %.1f MSPT - load shedding %s", mspt, target));
+            level = target;
+            calmSince = 0L;
+            listener.accept(level);
+            return;
+        }
+        if (level == Level.NORMAL) {
+            return;
+        }
+        double threshold = level == Level.CRITICAL ? criticalMspt : degradedMspt;
+        if (mspt >= threshold - hysteresisMspt) {
+            calmSince = 0L;
+        } else if (calmSince == 0L) {
+            calmSince = now;
+        } else if (now - calmSince >= recoverNanos) {
+            level = Level.values()[level.ordinal() - 1];
+            calmSince = 0L;
+            logger.info(String.format("Server at %.1f MSPT - load shedding %s", mspt, level));
+            listener.accept(level);
+        }
+    }
+
+    boolean isDegraded() {
+        return level != Level.NORMAL;
+    }
+
+    boolean isCritical() {
+        return level == Level.CRITICAL;
+    }
+
+    /**
+     * Take one of this tick's thorns reflections; false means skip it
+     */
+    boolean tryThorns() {
+        if (level == Level.NORMAL) {
+            return true;
+        }
+        int cap = level == Level.CRITICAL ? criticalThornsPerTick : degradedThornsPerTick;
+        if (thornsThisTick >= cap) {
+            return false;
+        }
+        thornsThisTick++;
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package com.elytraenchants;
+
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Rolls enchantments onto naturally generated elytras (End City ships, chest
+ * loot) from the weighted tables in config. Tables are compiled into alias
+ * tables on every policy load, so a roll is constant-time and allocation-free
+ * even while a pregenerator is producing thousands of chunks.
+ */
+final class LootEnchanter {
+
+    private boolean endShips;
+    private boolean itemFrames;
+    private boolean chests;
+    private int rolls;
+    private double rollChance;
+
+    private Enchantment[] enchantments = new Enchantment[0];
+    private AliasTable enchantTable;
+    private AliasTable[] levelTables = new AliasTable[0];
+
+    /**
+     * Read loot.* and compile the weight tables; enchantments outside the
+     * global policy are left out
+     */
+    void configure(ConfigurationSection config, EnchantmentRegistry registry, CompiledPolicy policy, Logger logger) {
+        boolean enabled = config.getBoolean("loot.enabled", false);
+        endShips = enabled && config.getBoolean("loot.end-ships", true);
+        itemFrames = enabled && config.getBoolean("loot.item-frames", false);
+        chests = enabled && config.getBoolean("loot.chests", true);
+        rolls = Math.max(0, config.getInt("loot.rolls", 2));
+        rollChance = Math.min(1.0, Math.max(0.0, config.getDouble("loot.roll-chance", 0.75)));
+
+        List<Enchantment> picked = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        ConfigurationSection section = config.getConfigurationSection("loot.enchantments");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                int id = registry.resolve(key);
+                double weight = section.getDouble(key, 0.0);
+                if (id < 0) {
+                    logger.warning("Unknown enchantment in loot table: " + key);
+                } else if (!policy.isAllowed(registry.get(id))) {
+                    logger.warning("Loot enchantment " + key + " is not allowed on elytra, ignoring");
+                } else if (weight > 0.0) {
+                    picked.add(registry.get(id));
+                    weights.add(weight);
+                }
+            }
+        }
+        List<Double> levelWeights = config.getDoubleList("loot.level-weights");
+        if (picked.isEmpty() || levelWeights.isEmpty()) {
+            enchantments = new Enchantment[0];
+            enchantTable = null;
+            levelTables = new AliasTable[0];
+            return;
+        }
+
+        enchantments = picked.toArray(new Enchantment[0]);
+        double[] enchantWeights = new double[weights.size()];
+        for (int i = 0; i < enchantWeights.length; i++) {
+            enchantWeights[i] = weights.get(i);
+        }
+        enchantTable = new AliasTable(enchantWeights);
+
+        // One level table per enchantment, cut off at its max level
+        levelTables = new AliasTable[enchantments.length];
+        for (int i = 0; i < enchantments.length; i++) {
+            int levels = Math.max(1, Math.min(enchantments[i].getMaxLevel(), levelWeights.size()));
+            double[] table = new double[levels];
+            double sum = 0.0;
+            for (int level = 0; level < levels; level++) {
+                table[level] = Math.max(0.0, levelWeights.get(level));
+                sum += table[level];
+            }
+            if (sum <= 0.0) {
+                table[0] = 1.0;
+            }
+            levelTables[i] = new AliasTable(table);
+        }
+    }
+
+    boolean rollsChests() {
+        return chests && enchantTable != null;
+    }
+
+    /**
+     * Whether item frames in new chunks of this world get their elytra rolled
+     */
+    boolean rollsFrames(World world) {
+        if (enchantTable == null) {
+            return false;
+        }
+        return itemFrames || (endShips && world.getEnvironment() == World.Environment.THE_END);
+    }
+
+    int size() {
+        return enchantments.length;
+    }
+
+    /**
+     * Roll enchantments onto an elytra in place; returns whether anything was added
+     */
+    boolean roll(ItemStack item, CompiledPolicy policy) {
+        AliasTable table = enchantTable;
+        if (table == null) {
+            return false;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean changed = false;
+        for (int r = 0; r < rolls; r++) {
+            if (random.nextDouble() >= rollChance) {
+                continue;
+            }
+            int index = table.sample(random);
+            Enchantment ench = enchantments[index];
+            // Repeats are skipped rather than re-rolled to keep the cost bounded
+            if (!policy.isAllowed(ench) || item.containsEnchantment(ench)) {
+                continue;
+            }
+            item.addUnsafeEnchantment(ench, levelTables[index].sample(random) + 1);
+            changed = true;
+        }
+        return changed;
+    }
+}
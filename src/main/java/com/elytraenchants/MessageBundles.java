@@ -0,0 +1,135 @@
+package com.elytraenchants;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * messages.yml plus optional messages_&lt;locale&gt;.yml translations, compiled once.
+ * Locales are interned to small ids with the language and default fallbacks
+ * already applied, so resolving a message is two array lookups.
+ */
+final class MessageBundles {
+
+    private static final int DEFAULT_LOCALE = 0;
+    private static final MessageKey[] KEYS = MessageKey.values();
+
+    private MessageTemplate[][] bundles = new MessageTemplate[][] {emptyBundle()};
+    private final Map<String, Integer> localeIds = new HashMap<>();
+    private final Map<UUID, Integer> playerLocales = new HashMap<>();
+
+    /**
+     * Read every messages_&lt;locale&gt;.yml in the data folder, keyed by lower-case locale
+     */
+    static Map<String, YamlConfiguration> readTranslations(File dataFolder) {
+        Map<String, YamlConfiguration> translations = new HashMap<>();
+        File[] files = dataFolder.listFiles((dir, name) -> name.startsWith("messages_") && name.endsWith(".yml"));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                String locale = name.substring("messages_".length(), name.length() - ".yml".length()).toLowerCase(Locale.ROOT);
+                translations.put(locale, YamlConfiguration.loadConfiguration(file));
+            }
+        }
+        return translations;
+    }
+
+    /**
+     * Compile the default bundle and its translations
+     */
+    void load(YamlConfiguration defaults, Map<String, YamlConfiguration> translations, Logger logger, boolean debug) {
+        // Languages first, so regional bundles can fall back to them
+        List<String> locales = new ArrayList<>(translations.keySet());
+        locales.sort((a, b) -> Integer.compare(a.length(), b.length()));
+
+        List<MessageTemplate[]> compiled = new ArrayList<>();
+        MessageTemplate[] defaultBundle = new MessageTemplate[KEYS.length];
+        for (MessageKey key : KEYS) {
+            defaultBundle[key.ordinal()] = MessageTemplate.compile(defaults == null ? "" : defaults.getString(key.getPath(), ""));
+        }
+        compiled.add(defaultBundle);
+        localeIds.clear();
+        for (String locale : locales) {
+            MessageTemplate[] fallback = defaultBundle;
+            int underscore = locale.indexOf('_');
+            if (underscore > 0) {
+                Integer languageId = localeIds.get(locale.substring(0, underscore));
+                if (languageId != null) {
+                    fallback = compiled.get(languageId);
+                }
+            }
+            YamlConfiguration yaml = translations.get(locale);
+            MessageTemplate[] bundle = new MessageTemplate[KEYS.length];
+            for (MessageKey key : KEYS) {
+                String raw = yaml.getString(key.getPath());
+                bundle[key.ordinal()] = raw == null ? fallback[key.ordinal()] : MessageTemplate.compile(raw);
+            }
+            localeIds.put(locale, compiled.size());
+            compiled.add(bundle);
+            if (debug) {
+                logger.info("Loaded message bundle: " + locale);
+            }
+        }
+        bundles = compiled.toArray(new MessageTemplate[0][]);
+    }
+
+    /**
+     * Map a client locale (e.g. "de_at") to a bundle id, falling back to its language, then the default.
+     * Fallbacks are not remembered: locale strings come from clients, so only
+     * configured locales are kept, and this runs once per join or locale change.
+     */
+    int intern(String locale) {
+        if (locale == null || locale.isEmpty()) {
+            return DEFAULT_LOCALE;
+        }
+        String normalized = locale.toLowerCase(Locale.ROOT);
+        Integer id = localeIds.get(normalized);
+        if (id == null) {
+            int underscore = normalized.indexOf('_');
+            Integer languageId = underscore > 0 ? localeIds.get(normalized.substring(0, underscore)) : null;
+            id = languageId == null ? DEFAULT_LOCALE : languageId;
+        }
+        return id;
+    }
+
+    void setLocale(Player player, String locale) {
+        playerLocales.put(player.getUniqueId(), intern(locale));
+    }
+
+    void remove(UUID playerId) {
+        playerLocales.remove(playerId);
+    }
+
+    MessageTemplate get(CommandSender recipient, MessageKey key) {
+        int locale = DEFAULT_LOCALE;
+        if (recipient instanceof Player player) {
+            Integer id = playerLocales.get(player.getUniqueId());
+            if (id != null) {
+                locale = id;
+            }
+        }
+        return bundles[locale][key.ordinal()];
+    }
+
+    /**
+     * Message in the default bundle, for text that is not sent to one player (item lore)
+     */
+    MessageTemplate getDefault(MessageKey key) {
+        return bundles[DEFAULT_LOCALE][key.ordinal()];
+    }
+
+    private static MessageTemplate[] emptyBundle() {
+        MessageTemplate[] bundle = new MessageTemplate[KEYS.length];
+        java.util.Arrays.fill(bundle, MessageTemplate.EMPTY);
+        return bundle;
+    }
+}
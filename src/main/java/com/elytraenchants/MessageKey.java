@@ -0,0 +1,66 @@
+package com.elytraenchants;
+
+import java.util.Locale;
+
+/**
+ * Keys of messages.yml; the ordinal indexes the compiled message bundles
+ */
+enum MessageKey {
+
+    NO_PERMISSION,
+    NO_PERMISSION_ENCHANT,
+    NOT_A_PLAYER,
+    USAGE,
+    NOT_WEARING_ELYTRA,
+    WORLD_DISABLED,
+    RATE_LIMITED,
+    HUD_ACTION_BAR,
+    ENCHANT_NOT_ALLOWED,
+    INVALID_LEVEL,
+    LEVEL_TOO_HIGH,
+    SUCCESS,
+    SUCCESS_TIMED,
+    INVALID_DURATION,
+    ENCHANT_NOT_TIMED,
+    ENCHANT_EXPIRED,
+    ENCHANTS_REMOVED,
+    GUI_TITLE,
+    GUI_ITEM,
+    GUI_COST,
+    GUI_PREVIOUS,
+    GUI_NEXT,
+    GUI_EMPTY,
+    FLIGHT_LORE_GLIDE_EFFICIENCY,
+    FLIGHT_LORE_FIREWORK_BOOST,
+    NOT_ENOUGH_LEVELS,
+    RELOAD_NO_PERMISSION,
+    RELOAD_SUCCESS,
+    RELOAD_USAGE,
+    UPDATE_AVAILABLE,
+    UPDATE_DOWNLOAD,
+    UPDATE_STAGED,
+    UPDATE_UP_TO_DATE,
+    UPDATE_ERROR,
+    BUNDLE_USAGE,
+    BUNDLE_EXPORTED,
+    BUNDLE_ERROR,
+    TRACE_USAGE,
+    TRACE_STARTED,
+    TRACE_STOPPED,
+    TRACE_STATUS,
+    TRACE_ALREADY_RUNNING,
+    TRACE_NOT_RUNNING,
+    TRACE_FILE_NOT_FOUND,
+    TRACE_REPLAY_STARTED,
+    TRACE_REPLAY_RESULT,
+    TRACE_REPLAY_ERROR;
+
+    private final String path = name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+    /**
+     * Key in messages.yml (e.g. "no-permission")
+     */
+    String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,82 @@
+package com.elytraenchants;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message with color codes translated and %placeholders% located once at
+ * load time. Messages without placeholders render to a cached string.
+ */
+final class MessageTemplate {
+
+    static final MessageTemplate EMPTY = compile("");
+
+    private final String text;
+    // Alternating literal / placeholder segments, starting with a literal
+    private final String[] segments;
+
+    private MessageTemplate(String text, String[] segments) {
+        this.text = text;
+        this.segments = segments;
+    }
+
+    static MessageTemplate compile(String raw) {
+        String text = raw == null ? "" : ChatColor.translateAlternateColorCodes('&', raw);
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int open = text.indexOf('%');
+        while (open >= 0) {
+            int close = text.indexOf('%', open + 1);
+            if (close < 0) {
+                break;
+            }
+            String name = text.substring(open, close + 1);
+            if (name.length() > 2 && name.chars().allMatch(c -> c == '%' || c == '_' || c == '-' || Character.isLetterOrDigit(c))) {
+                segments.add(text.substring(start, open));
+                segments.add(name);
+                start = close + 1;
+                open = text.indexOf('%', start);
+            } else {
+                open = close;
+            }
+        }
+        if (segments.isEmpty()) {
+            return new MessageTemplate(text, null);
+        }
+        segments.add(text.substring(start));
+        return new MessageTemplate(text, segments.toArray(new String[0]));
+    }
+
+    boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    /**
+     * Render with placeholder values given as pairs, e.g. "%level%", "3".
+     * Placeholders without a value are left as-is.
+     */
+    String render(String... placeholders) {
+        if (segments == null || placeholders.length == 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if ((i & 1) == 0) {
+                sb.append(segment);
+                continue;
+            }
+            String value = segment;
+            for (int p = 0; p + 1 < placeholders.length; p += 2) {
+                if (placeholders[p].equals(segment)) {
+                    value = placeholders[p + 1];
+                    break;
+                }
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.elytraenchants;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * Paper-only hooks, looked up at runtime so the jar still builds against and
+ * runs on plain Spigot. Paper fires PlayerArmorChangeEvent once an armor slot
+ * has really changed, including enchantment changes on an item of the same
+ * type, so on Paper it replaces the handlers of {@link ArmorChangeListener},
+ * which run for every click, interact and respawn and can only guess.
+ */
+final class PaperAdapter {
+
+    private static final String ARMOR_CHANGE_EVENT = "com.destroystokyo.paper.event.player.PlayerArmorChangeEvent";
+
+    private PaperAdapter() {
+    }
+
+    /**
+     * Keep the worn-elytra cache in step with armor changes; returns whether
+     * Paper's event is used rather than the Spigot listener
+     */
+    static boolean registerArmorTracking(Plugin plugin, WornElytraCache wornElytraCache) {
+        PluginManager pluginManager = plugin.getServer().getPluginManager();
+        Class<? extends Event> armorChange = findEvent(ARMOR_CHANGE_EVENT);
+        if (armorChange == null) {
+            pluginManager.registerEvents(new ArmorChangeListener(wornElytraCache), plugin);
+            return false;
+        }
+        // The event fires after the slot changed, so the entry can be dropped
+        // outright instead of being kept dirty until the next tick
+        pluginManager.registerEvent(armorChange, new Listener() { }, EventPriority.MONITOR, (listener, event) -> {
+            if (event instanceof PlayerEvent playerEvent) {
+                wornElytraCache.invalidate(playerEvent.getPlayer().getUniqueId());
+            }
+        }, plugin, false);
+        return true;
+    }
+
+    private static Class<? extends Event> findEvent(String name) {
+        try {
+            return Class.forName(name, false, PaperAdapter.class.getClassLoader()).asSubclass(Event.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.elytraenchants;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Caches a {@link PermissionSnapshot} per online player (main thread only).
+ * Snapshots are computed on join and dropped on quit, world change and policy
+ * reload. Bukkit has no event for permission plugin changes, so snapshots also
+ * expire after a configurable time and are then recomputed on next use.
+ */
+final class PermissionCache {
+
+    private final Map<UUID, PermissionSnapshot> snapshots = new HashMap<>();
+    private EnchantmentRegistry registry;
+    private Set<Enchantment> allowed;
+    private long ttlMillis;
+    private int generation;
+
+    /**
+     * Point the cache at a new policy; every cached snapshot becomes stale
+     */
+    void reset(EnchantmentRegistry registry, Set<Enchantment> allowed, long ttlMillis) {
+        this.registry = registry;
+        this.allowed = allowed;
+        this.ttlMillis = ttlMillis;
+        generation++;
+        snapshots.clear();
+    }
+
+    PermissionSnapshot get(CommandSender sender) {
+        long now = System.currentTimeMillis();
+        if (!(sender instanceof Player player)) {
+            // Console and command blocks are rare - resolve every time
+            return PermissionSnapshot.compute(sender, registry, allowed, generation, now);
+        }
+        PermissionSnapshot snapshot = snapshots.get(player.getUniqueId());
+        if (snapshot == null || !snapshot.isValid(generation, now, ttlMillis)) {
+            snapshot = PermissionSnapshot.compute(player, registry, allowed, generation, now);
+            snapshots.put(player.getUniqueId(), snapshot);
+        }
+        return snapshot;
+    }
+
+    void refresh(Player player) {
+        snapshots.put(player.getUniqueId(),
+            PermissionSnapshot.compute(player, registry, allowed, generation, System.currentTimeMillis()));
+    }
+
+    void invalidate(UUID playerId) {
+        snapshots.remove(playerId);
+    }
+}
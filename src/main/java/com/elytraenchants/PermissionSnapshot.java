@@ -0,0 +1,134 @@
+package com.elytraenchants;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.permissions.Permissible;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+import java.util.Set;
+
+/**
+ * Resolved plugin permissions of one sender, packed into bitmasks so that
+ * commands and tab completion never call hasPermission on the hot path.
+ */
+final class PermissionSnapshot {
+
+    static final int USE = 1;
+    static final int ENCHANT = 1 << 1;
+    static final int ENCHANT_ALL = 1 << 2;
+    static final int RELOAD = 1 << 3;
+    static final int UPDATE = 1 << 4;
+    static final int TRACE = 1 << 5;
+
+    private static final String MAX_LEVEL_PREFIX = "elytraenchants.maxlevel.";
+
+    private final int flags;
+    private final long[] enchantBits;
+    private final int flightBits;
+    private final int[] maxLevels;
+    private final int generation;
+    private final long computedAt;
+
+    private PermissionSnapshot(int flags, long[] enchantBits, int flightBits, int[] maxLevels, int generation, long computedAt) {
+        this.flags = flags;
+        this.enchantBits = enchantBits;
+        this.flightBits = flightBits;
+        this.maxLevels = maxLevels;
+        this.generation = generation;
+        this.computedAt = computedAt;
+    }
+
+    /**
+     * Resolve every permission the plugin checks for a sender.
+     * Per-enchantment nodes are only resolved for allowed enchantments.
+     */
+    static PermissionSnapshot compute(Permissible sender, EnchantmentRegistry registry,
+                                      Set<Enchantment> allowed, int generation, long now) {
+        int flags = 0;
+        if (sender.hasPermission("elytraenchants.use")) flags |= USE;
+        if (sender.hasPermission("elytraenchants.enchant")) flags |= ENCHANT;
+        if (sender.hasPermission("elytraenchants.enchant.*")) flags |= ENCHANT_ALL;
+        if (sender.hasPermission("elytraenchants.reload")) flags |= RELOAD;
+        if (sender.hasPermission("elytraenchants.update")) flags |= UPDATE;
+        if (sender.hasPermission("elytraenchants.trace")) flags |= TRACE;
+
+        int size = registry.size();
+        long[] enchantBits = new long[(size + 63) >>> 6];
+        for (Enchantment ench : allowed) {
+            int id = registry.idOf(ench);
+            if (id >= 0 && sender.hasPermission(registry.permissionNode(id))) {
+                enchantBits[id >>> 6] |= 1L << id;
+            }
+        }
+
+        int flightBits = 0;
+        for (FlightEnchant ench : FlightEnchant.all()) {
+            if (sender.hasPermission(ench.getPermissionNode())) {
+                flightBits |= 1 << ench.ordinal();
+            }
+        }
+
+        // elytraenchants.maxlevel.<enchantment|*>.<level> - highest granted level wins
+        int[] maxLevels = new int[size];
+        int wildcardMax = 0;
+        for (PermissionAttachmentInfo info : sender.getEffectivePermissions()) {
+            String node = info.getPermission();
+            if (!info.getValue() || !node.startsWith(MAX_LEVEL_PREFIX)) {
+                continue;
+            }
+            int dot = node.lastIndexOf('.');
+            if (dot <= MAX_LEVEL_PREFIX.length()) {
+                continue;
+            }
+            int level;
+            try {
+                level = Integer.parseInt(node.substring(dot + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            String name = node.substring(MAX_LEVEL_PREFIX.length(), dot);
+            if (name.equals("*")) {
+                wildcardMax = Math.max(wildcardMax, level);
+            } else {
+                int id = registry.resolve(name);
+                if (id >= 0) {
+                    maxLevels[id] = Math.max(maxLevels[id], level);
+                }
+            }
+        }
+        if (wildcardMax > 0) {
+            for (int id = 0; id < size; id++) {
+                maxLevels[id] = Math.max(maxLevels[id], wildcardMax);
+            }
+        }
+        return new PermissionSnapshot(flags, enchantBits, flightBits, maxLevels, generation, now);
+    }
+
+    boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Whether the sender may apply an enchantment (specific node or wildcard)
+     */
+    boolean canEnchant(int id) {
+        return (flags & ENCHANT_ALL) != 0 || (enchantBits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Whether the sender may apply a flight enchantment (specific node or wildcard)
+     */
+    boolean canEnchant(FlightEnchant ench) {
+        return (flags & ENCHANT_ALL) != 0 || (flightBits & (1 << ench.ordinal())) != 0;
+    }
+
+    /**
+     * Highest level the sender may apply, or 0 if no limit is set
+     */
+    int maxLevel(int id) {
+        return maxLevels[id];
+    }
+
+    boolean isValid(int currentGeneration, long now, long ttlMillis) {
+        return generation == currentGeneration && now - computedAt < ttlMillis;
+    }
+}
@@ -0,0 +1,268 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned, checksummed binary snapshot of the effective config and message
+ * bundles, for running many servers from one policy. One node exports it with
+ * /elytraenchants bundle export; nodes started with -Delytraenchants.bundle=&lt;file&gt;
+ * read it through a memory mapping instead of parsing and migrating YAML, and
+ * re-map it when a newer version is exported.
+ *
+ * Layout: header (magic, format, version), config entries, default messages,
+ * translations, then a CRC32 of everything before it. Entries are flattened
+ * paths with typed values, rebuilt into in-memory configurations on load.
+ */
+final class PolicyBundle {
+
+    static final String PROPERTY = "elytraenchants.bundle";
+
+    private static final int MAGIC = 0x45455042; // "EEPB"
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+
+    private static final byte VALUE_BOOLEAN = 0;
+    private static final byte VALUE_LONG = 1;
+    private static final byte VALUE_DOUBLE = 2;
+    private static final byte VALUE_STRING = 3;
+    private static final byte VALUE_LIST = 4;
+
+    private final long version;
+    private final YamlConfiguration config;
+    private final YamlConfiguration messages;
+    private final Map<String, YamlConfiguration> translations;
+
+    private PolicyBundle(long version, YamlConfiguration config, YamlConfiguration messages,
+                         Map<String, YamlConfiguration> translations) {
+        this.version = version;
+        this.config = config;
+        this.messages = messages;
+        this.translations = translations;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    YamlConfiguration getConfig() {
+        return config;
+    }
+
+    YamlConfiguration getMessages() {
+        return messages;
+    }
+
+    Map<String, YamlConfiguration> getTranslations() {
+        return translations;
+    }
+
+    /**
+     * Serialize a policy; cheap enough for the main thread, the write is done separately
+     */
+    static byte[] encode(long version, ConfigurationSection config, ConfigurationSection messages,
+                         Map<String, ? extends ConfigurationSection> translations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeLong(version);
+        writeSection(out, config);
+        writeSection(out, messages);
+        out.writeInt(translations.size());
+        for (Map.Entry<String, ? extends ConfigurationSection> entry : translations.entrySet()) {
+            writeString(out, entry.getKey());
+            writeSection(out, entry.getValue());
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write through a temporary file and rename, so readers never map a partial bundle
+     */
+    static void write(Path file, byte[] bundle) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bundle);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Version from the header alone, for cheap change checks
+     */
+    static long readVersion(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            return checkHeader(header);
+        }
+    }
+
+    /**
+     * Map and verify a bundle; throws on a bad checksum or unknown format
+     */
+    static PolicyBundle read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("not an ElytraEnchants policy bundle");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("checksum mismatch (bundle incomplete or corrupted)");
+            }
+            long version = checkHeader(buffer);
+            YamlConfiguration config = readSection(buffer);
+            YamlConfiguration messages = readSection(buffer);
+            int count = buffer.getInt();
+            Map<String, YamlConfiguration> translations = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                translations.put(readString(buffer), readSection(buffer));
+            }
+            if (buffer.position() != end) {
+                throw new IOException("unexpected data after policy");
+            }
+            return new PolicyBundle(version, config, messages, translations);
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("truncated policy bundle");
+        }
+    }
+
+    private static long checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("not an ElytraEnchants policy bundle");
+        }
+        short format = buffer.getShort();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("unsupported bundle format " + format);
+        }
+        return buffer.getLong();
+    }
+
+    private static void writeSection(DataOutputStream out, ConfigurationSection section) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (String path : section.getKeys(true)) {
+            if (!section.isConfigurationSection(path)) {
+                paths.add(path);
+            }
+        }
+        out.writeInt(paths.size());
+        for (String path : paths) {
+            writeString(out, path);
+            writeValue(out, section.get(path));
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Boolean b) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(n.doubleValue());
+        } else if (value instanceof List<?> list) {
+            out.writeByte(VALUE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    private static YamlConfiguration readSection(ByteBuffer buffer) throws IOException {
+        YamlConfiguration section = new YamlConfiguration();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            section.set(readString(buffer), readValue(buffer));
+        }
+        return section;
+    }
+
+    private static Object readValue(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case VALUE_BOOLEAN:
+                return buffer.get() != 0;
+            case VALUE_LONG: {
+                long value = buffer.getLong();
+                // Bukkit's getInt only accepts Integer values as ints
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            }
+            case VALUE_DOUBLE:
+                return buffer.getDouble();
+            case VALUE_STRING:
+                return readString(buffer);
+            case VALUE_LIST: {
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            default:
+                throw new IOException("unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player token buckets for the actions a client can trigger as fast as it
+ * sends packets (main thread only). Each online player holds a small slot
+ * number; bucket state lives in flat primitive arrays indexed by
+ * slot * BUCKETS + bucket, so a check is one map lookup and a little arithmetic.
+ */
+final class RateLimiter {
+
+    static final int COMMAND = 0;
+    static final int TAB_COMPLETE = 1;
+    static final int ANVIL = 2;
+    static final int BUCKETS = 3;
+
+    private static final String[] CONFIG_KEYS = {"command", "tab-complete", "anvil"};
+    private static final double[] DEFAULT_RATES = {2.0, 10.0, 10.0};
+    private static final double[] DEFAULT_BURSTS = {5.0, 20.0, 20.0};
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    private double[] tokens = new double[16 * BUCKETS];
+    private long[] updatedAt = new long[16 * BUCKETS];
+
+    private boolean enabled;
+    // Tokens added per nanosecond and bucket capacity, by bucket
+    private final double[] ratePerNano = new double[BUCKETS];
+    private final double[] burst = new double[BUCKETS];
+
+    void configure(ConfigurationSection config) {
+        enabled = config.getBoolean("rate-limit.enabled", true);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            String path = "rate-limit." + CONFIG_KEYS[bucket];
+            double perSecond = Math.max(0.01, config.getDouble(path + ".per-second", DEFAULT_RATES[bucket]));
+            ratePerNano[bucket] = perSecond / 1_000_000_000.0;
+            burst[bucket] = Math.max(1.0, config.getDouble(path + ".burst", DEFAULT_BURSTS[bucket]));
+        }
+        // Existing buckets start full under the new limits
+        Arrays.fill(tokens, Double.NaN);
+    }
+
+    /**
+     * Take a token from one of the player's buckets; false means the action
+     * should be skipped
+     */
+    boolean tryAcquire(Player player, int bucket) {
+        if (!enabled) {
+            return true;
+        }
+        int index = slotOf(player.getUniqueId()) * BUCKETS + bucket;
+        long now = System.nanoTime();
+        double available = tokens[index];
+        if (Double.isNaN(available)) {
+            available = burst[bucket];
+        } else {
+            available = Math.min(burst[bucket], available + (now - updatedAt[index]) * ratePerNano[bucket]);
+        }
+        updatedAt[index] = now;
+        if (available < 1.0) {
+            tokens[index] = available;
+            return false;
+        }
+        tokens[index] = available - 1.0;
+        return true;
+    }
+
+    private int slotOf(UUID playerId) {
+        Integer slot = slots.get(playerId);
+        if (slot != null) {
+            return slot;
+        }
+        int assigned = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if ((assigned + 1) * BUCKETS > tokens.length) {
+            int length = tokens.length * 2;
+            tokens = Arrays.copyOf(tokens, length);
+            updatedAt = Arrays.copyOf(updatedAt, length);
+        }
+        Arrays.fill(tokens, assigned * BUCKETS, (assigned + 1) * BUCKETS, Double.NaN);
+        slots.put(playerId, assigned);
+        return assigned;
+    }
+
+    /**
+     * Give the player's slot back (on quit)
+     */
+    void release(UUID playerId) {
+        Integer slot = slots.remove(playerId);
+        if (slot == null) {
+            return;
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    void clear() {
+        slots.clear();
+        freeCount = 0;
+        nextSlot = 0;
+    }
+}
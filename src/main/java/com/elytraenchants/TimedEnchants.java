@@ -0,0 +1,248 @@
+package com.elytraenchants;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Enchantments that expire (main thread only). The expiry lives on the item:
+ * per enchantment a timed_&lt;key&gt; entry holding the expiry time and the
+ * level to fall back to, plus the item's earliest expiry under timed so an
+ * untimed item costs a single lookup. Items are never scanned; an expired
+ * enchantment is removed the next time the item is worn or put in an anvil.
+ * For elytras being worn, a timer per wearer in a {@link TimingWheel} with
+ * one-second ticks wakes the plugin when the earliest expiry is due.
+ */
+final class TimedEnchants implements Runnable {
+
+    private static final long TICK_MILLIS = 1000L;
+
+    private final Plugin plugin;
+    private final NamespacedKey earliestKey;
+    private final Map<Enchantment, NamespacedKey> keys = new HashMap<>();
+    private final Map<UUID, TimingWheel.Timer<UUID>> timers = new HashMap<>();
+    private final TimingWheel<UUID> wheel;
+    private final Consumer<UUID> onDue;
+    private BukkitTask task;
+
+    /**
+     * onDue is called with a wearer whose worn elytra has an expiry due
+     */
+    TimedEnchants(Plugin plugin, Consumer<UUID> onDue) {
+        this.plugin = plugin;
+        this.earliestKey = new NamespacedKey(plugin, "timed");
+        this.onDue = onDue;
+        this.wheel = new TimingWheel<>(System.currentTimeMillis() / TICK_MILLIS);
+    }
+
+    void start() {
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 20L, 20L);
+        }
+    }
+
+    void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        wheel.clear();
+        timers.clear();
+    }
+
+    @Override
+    public void run() {
+        wheel.advance(System.currentTimeMillis() / TICK_MILLIS, playerId -> {
+            timers.remove(playerId);
+            onDue.accept(playerId);
+        });
+    }
+
+    /**
+     * Apply an enchantment level until a point in time. Renting again replaces
+     * the expiry but keeps the level the item had before the first rental.
+     */
+    void grant(ItemStack item, Enchantment ench, int level, long expiresAt) {
+        ItemMeta meta = item.getItemMeta();
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        NamespacedKey key = keyOf(ench);
+        long[] existing = data.get(key, PersistentDataType.LONG_ARRAY);
+        long previous = existing != null && existing.length == 2 ? existing[1] : meta.getEnchantLevel(ench);
+        data.set(key, PersistentDataType.LONG_ARRAY, new long[] {expiresAt, previous});
+        meta.addEnchant(ench, level, true);
+        updateEarliest(data);
+        item.setItemMeta(meta);
+    }
+
+    /**
+     * Earliest expiry on an item, or 0 if it has no timed enchantments
+     */
+    long nextExpiry(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) {
+            return 0L;
+        }
+        return nextExpiry(item.getItemMeta().getPersistentDataContainer());
+    }
+
+    long nextExpiry(PersistentDataContainer data) {
+        Long earliest = data.get(earliestKey, PersistentDataType.LONG);
+        return earliest == null ? 0L : earliest;
+    }
+
+    /**
+     * Expiry and fallback level of a timed enchantment, or null
+     */
+    long[] entry(PersistentDataContainer data, Enchantment ench) {
+        long[] entry = data.get(keyOf(ench), PersistentDataType.LONG_ARRAY);
+        return entry != null && entry.length == 2 ? entry : null;
+    }
+
+    /**
+     * Drop every timed entry, leaving the enchantments as they are
+     */
+    void clear(PersistentDataContainer data) {
+        for (Enchantment ench : Enchantment.values()) {
+            data.remove(keyOf(ench));
+        }
+        data.remove(earliestKey);
+    }
+
+    boolean hasTimed(ItemStack item) {
+        return nextExpiry(item) != 0L;
+    }
+
+    boolean isDue(ItemStack item, long now) {
+        long earliest = nextExpiry(item);
+        return earliest != 0L && earliest <= now;
+    }
+
+    /**
+     * Remove the enchantments of an item that have expired, restoring the
+     * levels they replaced; returns whether the item changed
+     */
+    boolean expire(ItemStack item, long now) {
+        if (!isDue(item, now)) {
+            return false;
+        }
+        ItemMeta meta = item.getItemMeta();
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        for (Enchantment ench : Enchantment.values()) {
+            NamespacedKey key = keyOf(ench);
+            long[] entry = data.get(key, PersistentDataType.LONG_ARRAY);
+            if (entry == null || entry.length != 2 || entry[0] > now) {
+                continue;
+            }
+            data.remove(key);
+            meta.removeEnchant(ench);
+            if (entry[1] > 0) {
+                meta.addEnchant(ench, (int) entry[1], true);
+            }
+        }
+        updateEarliest(data);
+        item.setItemMeta(meta);
+        return true;
+    }
+
+    /**
+     * Schedule a wake-up for the next expiry on a player's worn elytra
+     */
+    void watch(Player player, ItemStack chest) {
+        long next = nextExpiry(chest);
+        UUID playerId = player.getUniqueId();
+        TimingWheel.Timer<UUID> timer = timers.get(playerId);
+        long deadline = (next + TICK_MILLIS - 1) / TICK_MILLIS;
+        if (timer != null && (next == 0L || timer.deadline != deadline)) {
+            wheel.cancel(timer);
+            timers.remove(playerId);
+            timer = null;
+        }
+        if (next != 0L && timer == null) {
+            timers.put(playerId, wheel.schedule(playerId, deadline));
+        }
+    }
+
+    void forget(UUID playerId) {
+        TimingWheel.Timer<UUID> timer = timers.remove(playerId);
+        if (timer != null) {
+            wheel.cancel(timer);
+        }
+    }
+
+    int pending() {
+        return wheel.size();
+    }
+
+    /**
+     * Parse a duration such as 90s, 30m, 2h, 7d or 1h30m into milliseconds, or -1
+     */
+    static long parseDuration(String text) {
+        String value = text.toLowerCase(Locale.ROOT);
+        long total = 0L;
+        long number = -1L;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                if (number > 1_000_000L) {
+                    return -1L;
+                }
+                continue;
+            }
+            long unit = c == 's' ? 1_000L : c == 'm' ? 60_000L : c == 'h' ? 3_600_000L : c == 'd' ? 86_400_000L : 0L;
+            if (unit == 0L || number < 0) {
+                return -1L;
+            }
+            total += number * unit;
+            number = -1L;
+        }
+        return number >= 0 || total <= 0L ? -1L : total;
+    }
+
+    /**
+     * Format milliseconds the way parseDuration reads them, e.g. 1h30m
+     */
+    static String formatDuration(long millis) {
+        long seconds = Math.max(1L, (millis + 999L) / 1000L);
+        StringBuilder text = new StringBuilder();
+        long[] units = {86_400L, 3_600L, 60L, 1L};
+        char[] names = {'d', 'h', 'm', 's'};
+        for (int i = 0; i < units.length; i++) {
+            if (seconds >= units[i]) {
+                text.append(seconds / units[i]).append(names[i]);
+                seconds %= units[i];
+            }
+        }
+        return text.toString();
+    }
+
+    private void updateEarliest(PersistentDataContainer data) {
+        long earliest = Long.MAX_VALUE;
+        for (Enchantment ench : Enchantment.values()) {
+            long[] entry = data.get(keyOf(ench), PersistentDataType.LONG_ARRAY);
+            if (entry != null && entry.length == 2) {
+                earliest = Math.min(earliest, entry[0]);
+            }
+        }
+        if (earliest == Long.MAX_VALUE) {
+            data.remove(earliestKey);
+        } else {
+            data.set(earliestKey, PersistentDataType.LONG, earliest);
+        }
+    }
+
+    private NamespacedKey keyOf(Enchantment ench) {
+        return keys.computeIfAbsent(ench, e -> new NamespacedKey(plugin, "timed_" + e.getKey().getKey()));
+    }
+}
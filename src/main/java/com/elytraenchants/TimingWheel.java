@@ -0,0 +1,173 @@
+package com.elytraenchants;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (main thread only). Four wheels of 64 slots cover
+ * 64, 64^2, 64^3 and 64^4 ticks; a timer goes into the coarsest wheel it needs
+ * and is moved down a level each time the wheel below wraps around, so
+ * scheduling and cancelling are O(1) and advancing costs O(1) per tick plus
+ * the timers that fire or move. Slots are intrusive doubly linked lists.
+ * Deadlines further out than the top wheel are parked in its last slot and
+ * re-placed when they cascade.
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    /**
+     * A scheduled value; cancel it through the wheel that returned it
+     */
+    static final class Timer<T> {
+        final T value;
+        final long deadline;
+        private Timer<T> prev;
+        private Timer<T> next;
+        private int level = -1;
+        private int slot;
+
+        private Timer(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        boolean isScheduled() {
+            return level >= 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final Timer<T>[][] heads = new Timer[LEVELS][SLOTS];
+    // Next tick to process
+    private long now;
+    private int size;
+
+    TimingWheel(long start) {
+        this.now = start;
+    }
+
+    long now() {
+        return now;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a value for a tick; deadlines already passed fire on the next advance
+     */
+    Timer<T> schedule(T value, long deadline) {
+        Timer<T> timer = new Timer<>(value, deadline);
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    void cancel(Timer<T> timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    /**
+     * Process every tick up to and including a tick, handing fired values to a consumer
+     */
+    void advance(long to, Consumer<T> fired) {
+        while (now <= to) {
+            int index = (int) (now & MASK);
+            // When a wheel wraps, the next slot of the one above is spread over the wheels below
+            for (int level = 1; level < LEVELS && index == 0; level++) {
+                index = (int) ((now >>> (BITS * level)) & MASK);
+                cascade(level, index);
+            }
+            Timer<T> timer = heads[0][(int) (now & MASK)];
+            heads[0][(int) (now & MASK)] = null;
+            while (timer != null) {
+                Timer<T> next = timer.next;
+                timer.prev = null;
+                timer.next = null;
+                timer.level = -1;
+                if (timer.deadline > now) {
+                    insert(timer);
+                } else {
+                    size--;
+                    fired.accept(timer.value);
+                }
+                timer = next;
+            }
+            now++;
+        }
+    }
+
+    void clear() {
+        for (Timer<T>[] wheel : heads) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                for (Timer<T> timer = wheel[slot]; timer != null; timer = timer.next) {
+                    timer.level = -1;
+                }
+                wheel[slot] = null;
+            }
+        }
+        size = 0;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<T> timer = heads[level][slot];
+        heads[level][slot] = null;
+        while (timer != null) {
+            Timer<T> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer<T> timer) {
+        long deadline = timer.deadline;
+        long delta = deadline - now;
+        int level;
+        if (delta < 0) {
+            deadline = now;
+            level = 0;
+        } else if (delta >= SPAN) {
+            deadline = now + SPAN - 1;
+            level = LEVELS - 1;
+        } else {
+            level = 0;
+            while (delta >= 1L << (BITS * (level + 1))) {
+                level++;
+            }
+        }
+        int slot = (int) ((deadline >>> (BITS * level)) & MASK);
+        Timer<T> head = heads[level][slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        heads[level][slot] = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            heads[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+}
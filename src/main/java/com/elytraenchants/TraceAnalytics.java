@@ -0,0 +1,409 @@
+package com.elytraenchants;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline reports over event traces collected from any number of servers.
+ * Runs from the plugin jar without a server or the Bukkit API; enum names
+ * come from the dictionaries in the traces themselves. Files are scanned in
+ * parallel, each through a sliding memory-mapped window:
+ *
+ *   java -cp ElytraEnchants.jar com.elytraenchants.TraceAnalytics [--csv &lt;dir&gt;] &lt;file-or-directory&gt;...
+ *
+ * Reports enchantment popularity on worn elytras and anvil results, damage
+ * mitigated per cause, thorns procs per attacker type and enchantment levels
+ * above the vanilla maximum. Without --csv the reports are printed as tables.
+ */
+public final class TraceAnalytics {
+
+    private static final String[] SLOT_NAMES = {
+        "protection", "fire_protection", "blast_protection", "projectile_protection",
+        "thorns", "mending", "unbreaking", "binding_curse", "vanishing_curse"
+    };
+    private static final int[] VANILLA_MAX = {4, 4, 4, 4, 3, 1, 3, 1, 1};
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final int MAX_FILES_PER_FINDING = 5;
+
+    /**
+     * Aggregates of one or more trace files; merged after the parallel scan
+     */
+    private static final class Stats {
+        long files;
+        long records;
+        final List<String> errors = new ArrayList<>();
+        // [slot][level] - events with the elytra worn, and anvil results
+        final long[][] worn = new long[EnchantVector.SLOTS][EnchantVector.MAX_LEVEL + 1];
+        final long[][] anvil = new long[EnchantVector.SLOTS][EnchantVector.MAX_LEVEL + 1];
+        // cause -> {events, damage, damage after reduction}
+        final Map<String, double[]> mitigation = new TreeMap<>();
+        // attacker -> {checks, procs}
+        final Map<String, long[]> thorns = new TreeMap<>();
+        // "slot level" -> files it was seen in
+        final Map<String, Set<String>> suspiciousFiles = new TreeMap<>();
+
+        void count(long[][] grid, long vector, String file) {
+            for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+                int level = EnchantVector.level(vector, slot);
+                if (level == 0) {
+                    continue;
+                }
+                grid[slot][level]++;
+                if (level > VANILLA_MAX[slot]) {
+                    Set<String> files = suspiciousFiles.computeIfAbsent(SLOT_NAMES[slot] + " " + level, k -> new TreeSet<>());
+                    if (files.size() < MAX_FILES_PER_FINDING) {
+                        files.add(file);
+                    }
+                }
+            }
+        }
+
+        void merge(Stats other) {
+            files += other.files;
+            records += other.records;
+            errors.addAll(other.errors);
+            for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+                for (int level = 0; level <= EnchantVector.MAX_LEVEL; level++) {
+                    worn[slot][level] += other.worn[slot][level];
+                    anvil[slot][level] += other.anvil[slot][level];
+                }
+            }
+            other.mitigation.forEach((cause, m) -> {
+                double[] total = mitigation.computeIfAbsent(cause, k -> new double[3]);
+                for (int i = 0; i < 3; i++) {
+                    total[i] += m[i];
+                }
+            });
+            other.thorns.forEach((attacker, t) -> {
+                long[] total = thorns.computeIfAbsent(attacker, k -> new long[2]);
+                total[0] += t[0];
+                total[1] += t[1];
+            });
+            other.suspiciousFiles.forEach((finding, files) -> {
+                Set<String> total = suspiciousFiles.computeIfAbsent(finding, k -> new TreeSet<>());
+                for (String file : files) {
+                    if (total.size() < MAX_FILES_PER_FINDING) {
+                        total.add(file);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sequential reads over a file through a window that is re-mapped as it is consumed
+     */
+    private static final class SegmentReader {
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private MappedByteBuffer window;
+
+        SegmentReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0L);
+        }
+
+        private void map(long position) throws IOException {
+            base = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+        }
+
+        /**
+         * Make the next bytes readable; false at a clean end of file
+         */
+        boolean ensure(int bytes) throws IOException {
+            if (window.remaining() >= bytes) {
+                return true;
+            }
+            long position = base + window.position();
+            if (position + bytes > size) {
+                return false;
+            }
+            map(position);
+            return true;
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return window.get();
+        }
+
+        short getShort() throws IOException {
+            require(2);
+            return window.getShort();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return window.getLong();
+        }
+
+        double getDouble() throws IOException {
+            require(8);
+            return window.getDouble();
+        }
+
+        // DataOutputStream.writeUTF; dictionary names are plain ASCII enum names
+        String getUTF() throws IOException {
+            int length = getShort() & 0xFFFF;
+            require(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (!ensure(bytes)) {
+                throw new IOException("truncated record at byte " + (base + window.position()));
+            }
+        }
+    }
+
+    private TraceAnalytics() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path csvDir = null;
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--csv") && i + 1 < args.length) {
+                csvDir = Paths.get(args[++i]);
+            } else {
+                roots.add(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.err.println("Usage: java -cp ElytraEnchants.jar com.elytraenchants.TraceAnalytics [--csv <dir>] <file-or-directory>...");
+            System.exit(2);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            try (Stream<Path> walk = Files.walk(root)) {
+                files.addAll(walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".eetrace"))
+                    .collect(Collectors.toList()));
+            }
+        }
+        long start = System.nanoTime();
+        Stats stats = files.parallelStream().collect(Stats::new, TraceAnalytics::scan, Stats::merge);
+        long millis = (System.nanoTime() - start) / 1_000_000L;
+
+        if (csvDir == null) {
+            printReports(stats, System.out);
+        } else {
+            Files.createDirectories(csvDir);
+            writeCsv(stats, csvDir);
+            System.out.println("Wrote CSV reports to " + csvDir.toAbsolutePath());
+        }
+        System.out.println(stats.records + " records from " + stats.files + " traces in " + millis + " ms");
+        for (String error : stats.errors) {
+            System.err.println("Skipped rest of " + error);
+        }
+    }
+
+    private static void scan(Stats stats, Path file) {
+        String name = file.getFileName().toString();
+        // Dictionary ids are per file
+        Map<Short, String> causes = new java.util.HashMap<>();
+        Map<Short, String> entities = new java.util.HashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return;
+            }
+            SegmentReader in = new SegmentReader(channel);
+            if (in.getInt() != TraceRecorder.MAGIC) {
+                throw new IOException("not an ElytraEnchants trace");
+            }
+            short version = in.getShort();
+            if (version < 1 || version > TraceRecorder.FORMAT_VERSION) {
+                throw new IOException("unsupported trace format " + version);
+            }
+            // Format 2 added the world, the player flag and the other armor
+            boolean withWorlds = version >= 2;
+            in.getUTF(); // server version
+            in.getLong(); // start time
+            stats.files++;
+            while (in.ensure(1)) {
+                byte type = in.getByte();
+                switch (type) {
+                    case TraceRecorder.RECORD_DICTIONARY: {
+                        byte kind = in.getByte();
+                        short id = in.getShort();
+                        String value = in.getUTF();
+                        if (kind == TraceRecorder.DICTIONARY_CAUSE) {
+                            causes.put(id, value);
+                        } else if (kind == TraceRecorder.DICTIONARY_ENTITY) {
+                            entities.put(id, value);
+                        }
+                        continue;
+                    }
+                    case TraceRecorder.RECORD_DAMAGE: {
+                        if (withWorlds) {
+                            in.getByte(); // flags
+                        }
+                        String cause = causes.getOrDefault(in.getShort(), "UNKNOWN");
+                        if (withWorlds) {
+                            in.getShort(); // world
+                        }
+                        double damage = in.getDouble();
+                        long vector = in.getLong();
+                        if (withWorlds) {
+                            in.getLong(); // other armor
+                        }
+                        double result = in.getDouble();
+                        double[] m = stats.mitigation.computeIfAbsent(cause, k -> new double[3]);
+                        m[0]++;
+                        m[1] += damage;
+                        m[2] += result;
+                        stats.count(stats.worn, vector, name);
+                        break;
+                    }
+                    case TraceRecorder.RECORD_THORNS: {
+                        String attacker = entities.getOrDefault(in.getShort(), "UNKNOWN");
+                        if (withWorlds) {
+                            in.getShort(); // world
+                        }
+                        long vector = in.getLong();
+                        boolean proc = (in.getByte() & TraceRecorder.FLAG_PROC) != 0;
+                        long[] t = stats.thorns.computeIfAbsent(attacker, k -> new long[2]);
+                        t[0]++;
+                        if (proc) {
+                            t[1]++;
+                        }
+                        stats.count(stats.worn, vector, name);
+                        break;
+                    }
+                    case TraceRecorder.RECORD_ANVIL: {
+                        byte flags = in.getByte();
+                        in.getShort(); // first material
+                        in.getShort(); // second material
+                        if (withWorlds) {
+                            in.getShort(); // world
+                        }
+                        in.getLong(); // first vector
+                        in.getLong(); // second vector
+                        long result = in.getLong();
+                        in.getInt(); // cost
+                        if ((flags & TraceRecorder.FLAG_RESULT) != 0) {
+                            stats.count(stats.anvil, result, name);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("unknown record type " + type);
+                }
+                stats.records++;
+            }
+        } catch (IOException e) {
+            // Keep what was read so far; a trace cut off by a crash is still useful
+            stats.errors.add(file + ": " + e.getMessage());
+        }
+    }
+
+    private static void printReports(Stats stats, PrintStream out) {
+        out.println("== Enchantment popularity (events worn / anvil results) ==");
+        out.printf("%-22s %5s %14s %14s%n", "enchantment", "level", "worn", "anvil");
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            for (int level = 1; level <= EnchantVector.MAX_LEVEL; level++) {
+                if (stats.worn[slot][level] > 0 || stats.anvil[slot][level] > 0) {
+                    out.printf("%-22s %5d %14d %14d%n", SLOT_NAMES[slot], level, stats.worn[slot][level], stats.anvil[slot][level]);
+                }
+            }
+        }
+
+        out.println();
+        out.println("== Damage mitigation per cause ==");
+        out.printf("%-22s %12s %14s %14s %9s%n", "cause", "events", "damage", "mitigated", "percent");
+        stats.mitigation.forEach((cause, m) -> out.printf("%-22s %12d %14.1f %14.1f %8.2f%%%n",
+            cause, (long) m[0], m[1], m[1] - m[2], percent(m[1] - m[2], m[1])));
+
+        out.println();
+        out.println("== Thorns procs per attacker type ==");
+        out.printf("%-22s %12s %12s %9s%n", "attacker", "hits", "procs", "rate");
+        stats.thorns.forEach((attacker, t) -> out.printf("%-22s %12d %12d %8.2f%%%n",
+            attacker, t[0], t[1], percent(t[1], t[0])));
+
+        out.println();
+        out.println("== Levels above the vanilla maximum ==");
+        if (stats.suspiciousFiles.isEmpty()) {
+            out.println("none");
+        }
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            for (int level = VANILLA_MAX[slot] + 1; level <= EnchantVector.MAX_LEVEL; level++) {
+                long worn = stats.worn[slot][level];
+                long anvil = stats.anvil[slot][level];
+                if (worn > 0 || anvil > 0) {
+                    out.printf("%-22s %5d %14d %14d  %s%n", SLOT_NAMES[slot], level, worn, anvil,
+                        String.join(", ", stats.suspiciousFiles.get(SLOT_NAMES[slot] + " " + level)));
+                }
+            }
+        }
+        out.println();
+    }
+
+    private static void writeCsv(Stats stats, Path dir) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("enchantment,level,worn,anvil");
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            for (int level = 1; level <= EnchantVector.MAX_LEVEL; level++) {
+                if (stats.worn[slot][level] > 0 || stats.anvil[slot][level] > 0) {
+                    lines.add(SLOT_NAMES[slot] + "," + level + "," + stats.worn[slot][level] + "," + stats.anvil[slot][level]);
+                }
+            }
+        }
+        Files.write(dir.resolve("enchant-popularity.csv"), lines);
+
+        lines = new ArrayList<>();
+        lines.add("cause,events,damage,mitigated");
+        for (Map.Entry<String, double[]> entry : stats.mitigation.entrySet()) {
+            double[] m = entry.getValue();
+            lines.add(entry.getKey() + "," + (long) m[0] + "," + m[1] + "," + (m[1] - m[2]));
+        }
+        Files.write(dir.resolve("mitigation.csv"), lines);
+
+        lines = new ArrayList<>();
+        lines.add("attacker,hits,procs");
+        for (Map.Entry<String, long[]> entry : stats.thorns.entrySet()) {
+            lines.add(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+        }
+        Files.write(dir.resolve("thorns.csv"), lines);
+
+        lines = new ArrayList<>();
+        lines.add("enchantment,level,vanilla_max,worn,anvil,files");
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            for (int level = VANILLA_MAX[slot] + 1; level <= EnchantVector.MAX_LEVEL; level++) {
+                if (stats.worn[slot][level] > 0 || stats.anvil[slot][level] > 0) {
+                    lines.add(SLOT_NAMES[slot] + "," + level + "," + VANILLA_MAX[slot] + "," + stats.worn[slot][level] + ","
+                        + stats.anvil[slot][level] + "," + String.join(" ", stats.suspiciousFiles.get(SLOT_NAMES[slot] + " " + level)));
+                }
+            }
+        }
+        Files.write(dir.resolve("suspicious-levels.csv"), lines);
+    }
+
+    private static double percent(double part, double whole) {
+        return whole == 0 ? 0.0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,371 @@
+package com.elytraenchants;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Records the events handled by the plugin into a compact binary trace.
+ * The main thread only copies primitives into a preallocated ring buffer;
+ * a background thread drains the ring and writes the file. When the ring
+ * is full new records are dropped rather than blocking the server.
+ * Every record names the world it happened in, so replay can use that
+ * world's policy; damage records also carry the protection enchantments of
+ * the other armor pieces, which the vanilla EPF depends on.
+ */
+final class TraceRecorder implements Runnable {
+
+    static final int MAGIC = 0x45455452; // "EETR"
+    static final short FORMAT_VERSION = 2;
+
+    static final byte RECORD_DICTIONARY = 0;
+    static final byte RECORD_DAMAGE = 1;
+    static final byte RECORD_THORNS = 2;
+    static final byte RECORD_ANVIL = 3;
+
+    static final byte DICTIONARY_CAUSE = 0;
+    static final byte DICTIONARY_ENTITY = 1;
+    static final byte DICTIONARY_MATERIAL = 2;
+    static final byte DICTIONARY_WORLD = 3;
+
+    static final byte FLAG_PROC = 1;
+    static final byte FLAG_RENAMED = 1 << 1;
+    static final byte FLAG_NAMED = 1 << 2;
+    static final byte FLAG_RESULT = 1 << 3;
+    static final byte FLAG_PLAYER = 1 << 4;
+
+    // Armor enchantments packed per piece by packArmor, 4 bits each
+    private static final int ARMOR_BITS = 4;
+    private static final int ARMOR_MAX_LEVEL = (1 << ARMOR_BITS) - 1;
+    private static final Enchantment[] ARMOR_ENCHANTMENTS = {
+        Enchantment.PROTECTION_ENVIRONMENTAL,
+        Enchantment.PROTECTION_FIRE,
+        Enchantment.PROTECTION_EXPLOSIONS,
+        Enchantment.PROTECTION_PROJECTILE,
+        Enchantment.PROTECTION_FALL
+    };
+
+    private static final long DRAIN_INTERVAL_NANOS = 20_000_000L; // 20ms
+
+    private final File file;
+    private final Logger logger;
+    private final int capacity;
+    private final int mask;
+
+    // Ring slots - written by the main thread, read by the writer thread
+    private final byte[] types;
+    private final byte[] flags;
+    private final short[] keyA;
+    private final short[] keyB;
+    private final short[] worlds;
+    private final long[] vectorA;
+    private final long[] vectorB;
+    private final long[] vectorC;
+    private final double[] valueA;
+    private final double[] valueB;
+    private final int[] costs;
+
+    private final AtomicLong head = new AtomicLong(); // next slot to drain
+    private final AtomicLong tail = new AtomicLong(); // next slot to fill
+    private volatile long dropped;
+    private volatile long written;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    // World names by id; ids are handed out on the main thread, names read by the writer
+    private final Map<String, Short> worldIds = new HashMap<>();
+    private final List<String> worldNames = new CopyOnWriteArrayList<>();
+
+    // Writer thread only
+    private final boolean[][] announced = new boolean[3][];
+    private final BitSet announcedWorlds = new BitSet();
+
+    TraceRecorder(File file, int bufferSize, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+        this.capacity = Integer.highestOneBit(Math.max(1024, bufferSize - 1) << 1);
+        this.mask = capacity - 1;
+        this.types = new byte[capacity];
+        this.flags = new byte[capacity];
+        this.keyA = new short[capacity];
+        this.keyB = new short[capacity];
+        this.worlds = new short[capacity];
+        this.vectorA = new long[capacity];
+        this.vectorB = new long[capacity];
+        this.vectorC = new long[capacity];
+        this.valueA = new double[capacity];
+        this.valueB = new double[capacity];
+        this.costs = new int[capacity];
+        this.announced[DICTIONARY_CAUSE] = new boolean[EntityDamageEvent.DamageCause.values().length];
+        this.announced[DICTIONARY_ENTITY] = new boolean[EntityType.values().length];
+        this.announced[DICTIONARY_MATERIAL] = new boolean[Material.values().length];
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void start() {
+        running = true;
+        writerThread = new Thread(this, "ElytraEnchants-TraceWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop recording and wait for the remaining records to be flushed
+     */
+    void stop() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(5000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+    }
+
+    /**
+     * A hit on an elytra wearer; armor is the other pieces as packed by packArmor
+     */
+    void recordDamage(World world, boolean player, EntityDamageEvent.DamageCause cause, double damage,
+                      long vector, long armor, double result) {
+        int slot = claim();
+        if (slot < 0) return;
+        types[slot] = RECORD_DAMAGE;
+        flags[slot] = player ? FLAG_PLAYER : 0;
+        keyA[slot] = (short) cause.ordinal();
+        worlds[slot] = worldId(world);
+        vectorA[slot] = vector;
+        vectorB[slot] = armor;
+        valueA[slot] = damage;
+        valueB[slot] = result;
+        publish();
+    }
+
+    void recordThorns(World world, EntityType attacker, long vector, boolean proc) {
+        int slot = claim();
+        if (slot < 0) return;
+        types[slot] = RECORD_THORNS;
+        keyA[slot] = (short) attacker.ordinal();
+        worlds[slot] = worldId(world);
+        vectorA[slot] = vector;
+        flags[slot] = proc ? FLAG_PROC : 0;
+        publish();
+    }
+
+    void recordAnvil(World world, Material first, Material second, long firstVector, long secondVector,
+                     boolean renamed, boolean named, long resultVector, int cost, boolean hasResult) {
+        int slot = claim();
+        if (slot < 0) return;
+        worlds[slot] = worldId(world);
+        byte f = 0;
+        if (renamed) f |= FLAG_RENAMED;
+        if (named) f |= FLAG_NAMED;
+        if (hasResult) f |= FLAG_RESULT;
+        types[slot] = RECORD_ANVIL;
+        flags[slot] = f;
+        keyA[slot] = (short) first.ordinal();
+        keyB[slot] = (short) (second == null ? -1 : second.ordinal());
+        vectorA[slot] = firstVector;
+        vectorB[slot] = secondVector;
+        vectorC[slot] = resultVector;
+        costs[slot] = cost;
+        publish();
+    }
+
+    /**
+     * Protection enchantment levels of the helmet, leggings and boots in one
+     * long (levels above 15 are clamped); items may be null
+     */
+    static long packArmor(ItemStack helmet, ItemStack legs, ItemStack boots) {
+        long packed = 0L;
+        ItemStack[] pieces = {helmet, legs, boots};
+        for (int piece = 0; piece < pieces.length; piece++) {
+            ItemStack item = pieces[piece];
+            if (item == null || !item.hasItemMeta()) {
+                continue;
+            }
+            for (int i = 0; i < ARMOR_ENCHANTMENTS.length; i++) {
+                long level = Math.min(ARMOR_MAX_LEVEL, item.getEnchantmentLevel(ARMOR_ENCHANTMENTS[i]));
+                packed |= level << ((piece * ARMOR_ENCHANTMENTS.length + i) * ARMOR_BITS);
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Level of an armor enchantment on one piece (0 helmet, 1 leggings, 2 boots) of a packArmor value
+     */
+    static int armorLevel(long packed, int piece, int enchantment) {
+        return (int) (packed >>> ((piece * ARMOR_ENCHANTMENTS.length + enchantment) * ARMOR_BITS)) & ARMOR_MAX_LEVEL;
+    }
+
+    static Enchantment armorEnchantment(int index) {
+        return ARMOR_ENCHANTMENTS[index];
+    }
+
+    static int armorEnchantments() {
+        return ARMOR_ENCHANTMENTS.length;
+    }
+
+    private short worldId(World world) {
+        return worldIds.computeIfAbsent(world.getName(), name -> {
+            worldNames.add(name);
+            return (short) (worldNames.size() - 1);
+        });
+    }
+
+    /**
+     * Reserve the next ring slot (main thread only), or -1 if the ring is full
+     */
+    private int claim() {
+        if (!running || !Bukkit.isPrimaryThread()) {
+            return -1;
+        }
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            dropped++;
+            return -1;
+        }
+        return (int) (t & mask);
+    }
+
+    private void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    @Override
+    public void run() {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeUTF(Bukkit.getBukkitVersion());
+            out.writeLong(System.currentTimeMillis());
+            while (running) {
+                if (drain(out) == 0) {
+                    out.flush();
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                }
+            }
+            drain(out);
+        } catch (IOException e) {
+            running = false;
+            logger.warning("Trace writer stopped: " + e.getMessage());
+        }
+    }
+
+    private int drain(DataOutputStream out) throws IOException {
+        long h = head.get();
+        long t = tail.get();
+        int count = 0;
+        for (; h < t; h++, count++) {
+            int slot = (int) (h & mask);
+            switch (types[slot]) {
+                case RECORD_DAMAGE:
+                    announce(out, DICTIONARY_CAUSE, keyA[slot],
+                        EntityDamageEvent.DamageCause.values()[keyA[slot]].name());
+                    announceWorld(out, worlds[slot]);
+                    out.writeByte(RECORD_DAMAGE);
+                    out.writeByte(flags[slot]);
+                    out.writeShort(keyA[slot]);
+                    out.writeShort(worlds[slot]);
+                    out.writeDouble(valueA[slot]);
+                    out.writeLong(vectorA[slot]);
+                    out.writeLong(vectorB[slot]);
+                    out.writeDouble(valueB[slot]);
+                    break;
+                case RECORD_THORNS:
+                    announce(out, DICTIONARY_ENTITY, keyA[slot], EntityType.values()[keyA[slot]].name());
+                    announceWorld(out, worlds[slot]);
+                    out.writeByte(RECORD_THORNS);
+                    out.writeShort(keyA[slot]);
+                    out.writeShort(worlds[slot]);
+                    out.writeLong(vectorA[slot]);
+                    out.writeByte(flags[slot]);
+                    break;
+                case RECORD_ANVIL:
+                    announce(out, DICTIONARY_MATERIAL, keyA[slot], Material.values()[keyA[slot]].name());
+                    if (keyB[slot] >= 0) {
+                        announce(out, DICTIONARY_MATERIAL, keyB[slot], Material.values()[keyB[slot]].name());
+                    }
+                    announceWorld(out, worlds[slot]);
+                    out.writeByte(RECORD_ANVIL);
+                    out.writeByte(flags[slot]);
+                    out.writeShort(keyA[slot]);
+                    out.writeShort(keyB[slot]);
+                    out.writeShort(worlds[slot]);
+                    out.writeLong(vectorA[slot]);
+                    out.writeLong(vectorB[slot]);
+                    out.writeLong(vectorC[slot]);
+                    out.writeInt(costs[slot]);
+                    break;
+                default:
+                    break;
+            }
+            head.lazySet(h + 1);
+        }
+        written += count;
+        return count;
+    }
+
+    /**
+     * Write a dictionary entry the first time an enum constant appears, so
+     * traces replay by name even if enum ordinals differ between versions
+     */
+    private void announce(DataOutputStream out, byte kind, short id, String name) throws IOException {
+        if (announced[kind][id]) {
+            return;
+        }
+        announced[kind][id] = true;
+        out.writeByte(RECORD_DICTIONARY);
+        out.writeByte(kind);
+        out.writeShort(id);
+        out.writeUTF(name);
+    }
+
+    private void announceWorld(DataOutputStream out, short id) throws IOException {
+        if (announcedWorlds.get(id)) {
+            return;
+        }
+        announcedWorlds.set(id);
+        out.writeByte(RECORD_DICTIONARY);
+        out.writeByte(DICTIONARY_WORLD);
+        out.writeShort(id);
+        out.writeUTF(worldNames.get(id));
+    }
+}
@@ -0,0 +1,430 @@
+package com.elytraenchants;
+
+import org.bukkit.Material;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads traces written by {@link TraceRecorder} and feeds them back through
+ * the code the listeners run: worn-elytra state and {@link DamageListener}'s
+ * reduction (ElytraReductionEvent included), its thorns roll, and the anvil
+ * computation, each under the policy of the world the event was recorded in.
+ * Recorded results are compared with the replayed ones so behaviour changes
+ * show up as mismatches. Format 1 traces carry no world or other armor and
+ * replay under the global policy without them.
+ *
+ * A replay is streamed: an async task decodes records into a bounded queue
+ * and a main-thread task replays them within a time budget per tick, so a
+ * trace of any length neither holds all events in memory nor stalls the
+ * server. Anvil results go through a cache private to the replay and are
+ * never signed, so replayed items can't leak into the live cache.
+ */
+final class TraceReplayer implements Runnable {
+
+    // Main-thread time a replay may take per tick
+    private static final long TICK_BUDGET_NANOS = 10_000_000L;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final Object END = new Object();
+
+    // A decoding error, handed to the main thread in place of an event
+    private static final class Failure {
+        final Exception error;
+
+        Failure(Exception error) {
+            this.error = error;
+        }
+    }
+
+    static final class DamageRecord {
+        final String world;
+        final boolean player;
+        final EntityDamageEvent.DamageCause cause;
+        final double damage;
+        final long vector;
+        final long armor;
+        final double result;
+
+        DamageRecord(String world, boolean player, EntityDamageEvent.DamageCause cause, double damage,
+                     long vector, long armor, double result) {
+            this.world = world;
+            this.player = player;
+            this.cause = cause;
+            this.damage = damage;
+            this.vector = vector;
+            this.armor = armor;
+            this.result = result;
+        }
+    }
+
+    static final class ThornsRecord {
+        final String world;
+        final EntityType attacker;
+        final long vector;
+        final boolean proc;
+
+        ThornsRecord(String world, EntityType attacker, long vector, boolean proc) {
+            this.world = world;
+            this.attacker = attacker;
+            this.vector = vector;
+            this.proc = proc;
+        }
+    }
+
+    static final class AnvilRecord {
+        final String world;
+        final Material first;
+        final Material second;
+        final long firstVector;
+        final long secondVector;
+        final byte flags;
+        final long resultVector;
+        final int cost;
+
+        AnvilRecord(String world, Material first, Material second, long firstVector, long secondVector,
+                    byte flags, long resultVector, int cost) {
+            this.world = world;
+            this.first = first;
+            this.second = second;
+            this.firstVector = firstVector;
+            this.secondVector = secondVector;
+            this.flags = flags;
+            this.resultVector = resultVector;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Outcome of a replay run
+     */
+    static final class Result {
+        String serverVersion;
+        long events;
+        long mismatches;
+        long thornsProcs;
+        long unresolved;
+        long elapsedNanos;
+    }
+
+    /**
+     * Decodes a trace file one event at a time (any thread, one at a time);
+     * enum references are resolved by name
+     */
+    static final class Reader implements Closeable {
+        final String serverVersion;
+        final long startedAt;
+        long unresolved;
+        private final DataInputStream in;
+        private final boolean withWorlds;
+        private final Map<Short, EntityDamageEvent.DamageCause> causes = new HashMap<>();
+        private final Map<Short, EntityType> entities = new HashMap<>();
+        private final Map<Short, Material> materials = new HashMap<>();
+        private final Map<Short, String> worlds = new HashMap<>();
+
+        Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            try {
+                if (in.readInt() != TraceRecorder.MAGIC) {
+                    throw new IOException("not an ElytraEnchants trace");
+                }
+                short version = in.readShort();
+                if (version < 1 || version > TraceRecorder.FORMAT_VERSION) {
+                    throw new IOException("unsupported trace format " + version);
+                }
+                withWorlds = version >= 2;
+                serverVersion = in.readUTF();
+                startedAt = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * The next event, or null at the end of the trace
+         */
+        Object next() throws IOException {
+            while (true) {
+                int type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return null;
+                }
+                switch (type) {
+                    case TraceRecorder.RECORD_DICTIONARY: {
+                        byte kind = in.readByte();
+                        short id = in.readShort();
+                        String name = in.readUTF();
+                        if (kind == TraceRecorder.DICTIONARY_CAUSE) {
+                            causes.put(id, valueOf(EntityDamageEvent.DamageCause.class, name));
+                        } else if (kind == TraceRecorder.DICTIONARY_ENTITY) {
+                            entities.put(id, valueOf(EntityType.class, name));
+                        } else if (kind == TraceRecorder.DICTIONARY_WORLD) {
+                            worlds.put(id, name);
+                        } else {
+                            materials.put(id, Material.matchMaterial(name));
+                        }
+                        break;
+                    }
+                    case TraceRecorder.RECORD_DAMAGE: {
+                        byte flags = withWorlds ? in.readByte() : 0;
+                        EntityDamageEvent.DamageCause cause = causes.get(in.readShort());
+                        String world = withWorlds ? worlds.get(in.readShort()) : null;
+                        double damage = in.readDouble();
+                        long vector = in.readLong();
+                        long armor = withWorlds ? in.readLong() : 0L;
+                        double result = in.readDouble();
+                        if (cause == null) {
+                            unresolved++;
+                        } else {
+                            return new DamageRecord(world, (flags & TraceRecorder.FLAG_PLAYER) != 0,
+                                cause, damage, vector, armor, result);
+                        }
+                        break;
+                    }
+                    case TraceRecorder.RECORD_THORNS: {
+                        EntityType attacker = entities.get(in.readShort());
+                        String world = withWorlds ? worlds.get(in.readShort()) : null;
+                        long vector = in.readLong();
+                        byte flags = in.readByte();
+                        if (attacker == null) {
+                            unresolved++;
+                        } else {
+                            return new ThornsRecord(world, attacker, vector, (flags & TraceRecorder.FLAG_PROC) != 0);
+                        }
+                        break;
+                    }
+                    case TraceRecorder.RECORD_ANVIL: {
+                        byte flags = in.readByte();
+                        Material first = materials.get(in.readShort());
+                        short secondId = in.readShort();
+                        Material second = secondId < 0 ? null : materials.get(secondId);
+                        String world = withWorlds ? worlds.get(in.readShort()) : null;
+                        long firstVector = in.readLong();
+                        long secondVector = in.readLong();
+                        long resultVector = in.readLong();
+                        int cost = in.readInt();
+                        if (first == null || (secondId >= 0 && second == null)) {
+                            unresolved++;
+                        } else {
+                            return new AnvilRecord(world, first, second, firstVector, secondVector,
+                                flags, resultVector, cost);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("corrupt trace: unknown record type " + type);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static <E extends Enum<E>> E valueOf(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private final ElytraEnchantsPlugin plugin;
+    private final Player standIn;
+    private final Consumer<Result> onDone;
+    private final Consumer<Exception> onError;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AnvilResultCache anvilResults = new AnvilResultCache();
+    private final Result result = new Result();
+    private volatile boolean stopped;
+    private BukkitTask task;
+
+    private TraceReplayer(ElytraEnchantsPlugin plugin, Player standIn, Consumer<Result> onDone, Consumer<Exception> onError) {
+        this.plugin = plugin;
+        this.standIn = standIn;
+        this.onDone = onDone;
+        this.onError = onError;
+    }
+
+    /**
+     * Start replaying a trace file (main thread); standIn, if any, is passed
+     * as the player of recorded player hits so ElytraReductionEvent listeners
+     * run. Exactly one of onDone and onError is called, on the main thread.
+     */
+    static void start(ElytraEnchantsPlugin plugin, File file, Player standIn,
+                      Consumer<Result> onDone, Consumer<Exception> onError) {
+        TraceReplayer replay = new TraceReplayer(plugin, standIn, onDone, onError);
+        replay.task = plugin.getServer().getScheduler().runTaskTimer(plugin, replay, 1L, 1L);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> replay.decode(file));
+    }
+
+    // Async: decode into the queue, waiting while the main thread catches up
+    private void decode(File file) {
+        try (Reader reader = new Reader(file)) {
+            result.serverVersion = reader.serverVersion;
+            Object event;
+            while ((event = reader.next()) != null) {
+                if (!hand(event)) return;
+            }
+            result.unresolved = reader.unresolved;
+            hand(END);
+        } catch (IOException | RuntimeException e) {
+            hand(new Failure(e));
+        }
+    }
+
+    private boolean hand(Object event) {
+        try {
+            while (!queue.offer(event, 1L, TimeUnit.SECONDS)) {
+                if (stopped || !plugin.isEnabled()) return false;
+            }
+            return !stopped;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Main thread, every tick: replay queued events until the tick budget is spent
+     */
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        Object event;
+        while ((event = queue.poll()) != null) {
+            if (event == END) {
+                finish();
+                onDone.accept(result);
+                return;
+            }
+            if (event instanceof Failure failure) {
+                finish();
+                onError.accept(failure.error);
+                return;
+            }
+            replay(event);
+            if (System.nanoTime() >= deadline) return;
+        }
+    }
+
+    private void finish() {
+        stopped = true;
+        task.cancel();
+    }
+
+    private void replay(Object event) {
+        WorldPolicies worldPolicies = plugin.getWorldPolicies();
+        DamageListener damageListener = plugin.getDamageListener();
+        if (event instanceof DamageRecord record) {
+            // Items are built outside the timed part, as the live handlers get them ready-made
+            ItemStack[] armor = buildArmor(record);
+            long start = System.nanoTime();
+            CompiledPolicy policy = worldPolicies.forName(record.world);
+            WornElytraCache.State state = plugin.getWornElytraCache().read(armor[0], armor[1], armor[2], armor[3]);
+            if (!policy.isEnabled()) {
+                // Recorded, so the plugin handled it then
+                result.mismatches++;
+            } else {
+                double damage = damageListener.mitigate(record.player ? standIn : null, state, record.cause, record.damage);
+                if (Double.compare(damage, record.result) != 0) {
+                    result.mismatches++;
+                }
+            }
+            result.elapsedNanos += System.nanoTime() - start;
+        } else if (event instanceof ThornsRecord record) {
+            long start = System.nanoTime();
+            if (!worldPolicies.forName(record.world).isEnabled()) {
+                result.mismatches++;
+            } else if (damageListener.rollThorns(EnchantVector.level(record.vector, EnchantVector.THORNS))) {
+                result.thornsProcs++;
+            }
+            result.elapsedNanos += System.nanoTime() - start;
+        } else if (event instanceof AnvilRecord record) {
+            ItemStack[] anvil = buildAnvilInputs(record);
+            String rename = (record.flags & TraceRecorder.FLAG_RENAMED) != 0 ? "replay" : null;
+            long start = System.nanoTime();
+            CompiledPolicy policy = worldPolicies.forName(record.world);
+            ElytraEnchantsPlugin.AnvilOutcome outcome = policy.isEnabled()
+                ? plugin.anvilOutcome(anvil[0], anvil[1], rename, policy, anvilResults, false) : null;
+            boolean expected = (record.flags & TraceRecorder.FLAG_RESULT) != 0;
+            if (expected != (outcome != null)) {
+                result.mismatches++;
+            } else if (outcome != null && (outcome.cost != record.cost
+                    || EnchantVector.of(outcome.result.getEnchantments()) != record.resultVector)) {
+                result.mismatches++;
+            }
+            result.elapsedNanos += System.nanoTime() - start;
+        }
+        result.events++;
+    }
+
+    /**
+     * Helmet, elytra, leggings and boots of a damage record
+     */
+    private static ItemStack[] buildArmor(DamageRecord record) {
+        ItemStack chest = new ItemStack(Material.ELYTRA);
+        EnchantVector.apply(record.vector, chest);
+        Material[] types = {Material.DIAMOND_HELMET, Material.DIAMOND_LEGGINGS, Material.DIAMOND_BOOTS};
+        ItemStack[] pieces = new ItemStack[3];
+        for (int piece = 0; piece < pieces.length; piece++) {
+            pieces[piece] = new ItemStack(types[piece]);
+            for (int i = 0; i < TraceRecorder.armorEnchantments(); i++) {
+                int level = TraceRecorder.armorLevel(record.armor, piece, i);
+                if (level > 0) {
+                    pieces[piece].addUnsafeEnchantment(TraceRecorder.armorEnchantment(i), level);
+                }
+            }
+        }
+        return new ItemStack[] {pieces[0], chest, pieces[1], pieces[2]};
+    }
+
+    private static ItemStack[] buildAnvilInputs(AnvilRecord record) {
+        ItemStack first = new ItemStack(record.first);
+        EnchantVector.apply(record.firstVector, first);
+        if ((record.flags & TraceRecorder.FLAG_NAMED) != 0) {
+            var meta = first.getItemMeta();
+            meta.setDisplayName("replay");
+            first.setItemMeta(meta);
+        }
+        ItemStack second = null;
+        if (record.second != null) {
+            second = new ItemStack(record.second);
+            if (record.second == Material.ENCHANTED_BOOK) {
+                EnchantmentStorageMeta meta = (EnchantmentStorageMeta) second.getItemMeta();
+                for (int i = 0; i < EnchantVector.SLOTS; i++) {
+                    int level = EnchantVector.level(record.secondVector, i);
+                    if (level > 0) {
+                        meta.addStoredEnchant(EnchantVector.enchantment(i), level, true);
+                    }
+                }
+                second.setItemMeta(meta);
+            } else {
+                EnchantVector.apply(record.secondVector, second);
+            }
+        }
+        return new ItemStack[] {first, second};
+    }
+}
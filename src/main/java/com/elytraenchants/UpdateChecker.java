@@ -0,0 +1,340 @@
+package com.elytraenchants;
+
+import org.bukkit.entity.Player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SpigotMC update checks and auto-download staging. Created on the first
+ * check, so servers with the update checker disabled never load it.
+ */
+final class UpdateChecker {
+
+    // Spigot resource ID for update checking
+    private static final int SPIGOT_RESOURCE_ID = 126943;
+
+    private final ElytraEnchantsPlugin plugin;
+    private final DebugLog debug;
+    private final String jarName;
+
+    // Store update info for new players
+    private volatile String latestVersion = null;
+    private volatile boolean updateAvailable = false;
+    // Version already placed in the update folder by auto-download
+    private volatile String stagedVersion = null;
+
+    UpdateChecker(ElytraEnchantsPlugin plugin, DebugLog debug, String jarName) {
+        this.plugin = plugin;
+        this.debug = debug;
+        this.jarName = jarName;
+    }
+
+    /**
+     * Download and stage an update (async); failures only cost the download
+     */
+    private void downloadUpdate(String version) {
+        String checksumUrl = plugin.getConfig().getString("update-checker.auto-download.checksum-url", "");
+        if (checksumUrl.isEmpty()) {
+            // A jar is only staged once its SHA-256 matches a published checksum
+            plugin.getLogger().warning("Not downloading update " + version
+                + ": update-checker.auto-download.checksum-url is not set");
+            return;
+        }
+        String cacheDir = plugin.getConfig().getString("update-checker.auto-download.cache-dir", "");
+        UpdateDownloader downloader = new UpdateDownloader(
+            cacheDir.isEmpty() ? plugin.getDataFolder().toPath().resolve("update-cache") : Paths.get(cacheDir),
+            plugin.getConfig().getString("update-checker.auto-download.url",
+                "https://api.spiget.org/v2/resources/" + SPIGOT_RESOURCE_ID + "/download"),
+            checksumUrl,
+            plugin.getLogger());
+        try {
+            downloader.stage(version, plugin.getServer().getUpdateFolderFile().toPath(), jarName);
+            stagedVersion = version;
+            plugin.getLogger().info("Update " + version + " downloaded - it will be installed on the next restart");
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                for (Player onlinePlayer : plugin.getServer().getOnlinePlayers()) {
+                    if (onlinePlayer.isOp()) {
+                        onlinePlayer.sendMessage(plugin.msg(onlinePlayer, MessageKey.UPDATE_STAGED, "%latest%", version));
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Could not download update " + version + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Public method to manually check for updates (can be called from commands)
+     */
+    void checkForUpdatesManually() {
+        checkForUpdatesManually(null);
+    }
+    
+    /**
+     * Public method to manually check for updates with player feedback
+     */
+    void checkForUpdatesManually(Player player) {
+        if (plugin.getConfig().getBoolean("update-checker.enabled", true)) {
+            debug.info(DebugLog.Category.UPDATE, () -> "Manually checking for updates...");
+            checkForUpdates(player);
+        } else {
+            debug.info(DebugLog.Category.UPDATE, () -> "Update checking is disabled in config");
+            if (player != null) {
+                player.sendMessage("§c[ElytraEnchants] Update checking is disabled in config");
+            }
+        }
+    }
+    
+    /**
+     * Check for plugin updates using SpigotMC API
+     */
+    void checkForUpdates() {
+        checkForUpdates(null);
+    }
+    
+    /**
+     * Check for plugin updates using SpigotMC API with player feedback
+     */
+    private void checkForUpdates(Player player) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                String url = "https://api.spigotmc.org/legacy/update.php?resource=" + SPIGOT_RESOURCE_ID;
+                URLConnection connection = URI.create(url).toURL().openConnection();
+                connection.setRequestProperty("User-Agent", "ElytraEnchants-UpdateChecker");
+                connection.setConnectTimeout(5000);
+                connection.setReadTimeout(5000);
+                
+                String latestVersion;
+                try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream()))) {
+                    latestVersion = reader.readLine();
+                }
+                
+                String currentVersion = plugin.getDescription().getVersion();
+                
+                debug.info(DebugLog.Category.UPDATE, () -> "Update check - API returned: '" + latestVersion + "', Current: '" + currentVersion + "'");
+                
+                if (isNewerVersion(latestVersion, currentVersion, debug)) {
+                    // Store update info for new players
+                    this.latestVersion = latestVersion;
+                    this.updateAvailable = true;
+                    
+                    if (plugin.getConfig().getBoolean("update-checker.auto-download.enabled", false)
+                            && !latestVersion.equals(stagedVersion)) {
+                        downloadUpdate(latestVersion);
+                    }
+                    
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        String updateUrl = "https://www.spigotmc.org/resources/" + SPIGOT_RESOURCE_ID;
+                        
+                        if (debug.isEnabled(DebugLog.Category.UPDATE)) {
+                            plugin.getLogger().info("§a[ElytraEnchants] Update available: " + latestVersion);
+                            plugin.getLogger().info("§a[ElytraEnchants] Current version: " + currentVersion);
+                            plugin.getLogger().info("§a[ElytraEnchants] Download: " + updateUrl);
+                        }
+                        
+                        // Send update message to the player who requested the check
+                        if (player != null) {
+                            player.sendMessage(plugin.msg(player, MessageKey.UPDATE_AVAILABLE, "%latest%", latestVersion, "%current%", currentVersion));
+                            player.sendMessage(plugin.msg(player, MessageKey.UPDATE_DOWNLOAD, "%url%", updateUrl));
+                        }
+                        
+                        // Send update message to all online OP'd players with a delay to show after MOTD
+                        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                            // Paused under load; ops still see it when they next join
+                            if (plugin.isLoadDegraded()) return;
+                            for (Player onlinePlayer : plugin.getServer().getOnlinePlayers()) {
+                                if (onlinePlayer.isOp() && (player == null || !onlinePlayer.equals(player))) {
+                                    onlinePlayer.sendMessage(plugin.msg(onlinePlayer, MessageKey.UPDATE_AVAILABLE, "%latest%", latestVersion, "%current%", currentVersion));
+                                    onlinePlayer.sendMessage(plugin.msg(onlinePlayer, MessageKey.UPDATE_DOWNLOAD, "%url%", updateUrl));
+                                }
+                            }
+                        }, 100L); // 5 seconds delay (100 ticks = 5 seconds)
+                    });
+                } else {
+                    // Plugin is up to date
+                    debug.info(DebugLog.Category.UPDATE, () -> "Plugin is up to date (version " + currentVersion + ")");
+                    
+                    // Send "up to date" message to the player who requested the check
+                    if (player != null) {
+                        plugin.getServer().getScheduler().runTask(plugin, () -> {
+                            player.sendMessage(plugin.msg(player, MessageKey.UPDATE_UP_TO_DATE, "%version%", currentVersion));
+                        });
+                    }
+                }
+            } catch (Exception e) {
+                debug.warning(DebugLog.Category.UPDATE, () -> "Could not check for updates: " + e.getMessage());
+                
+                // Send error message to the player who requested the check
+                if (player != null) {
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        player.sendMessage(plugin.msg(player, MessageKey.UPDATE_ERROR, "%error%", e.getMessage()));
+                    });
+                }
+            }
+        });
+    }
+    
+    /**
+     * Compare version strings to check if latest is newer
+     * Handles dev versions (e.g., "1.1.4-Dev2a") by comparing base version numbers
+     * Dev builds will be prompted to update to release versions of the same base version
+     */
+    static boolean isNewerVersion(String latest, String current, DebugLog debug) {
+        if (latest == null || current == null) {
+            debug.info(DebugLog.Category.UPDATE, () -> "Version comparison failed - null values: latest=" + latest + ", current=" + current);
+            return false;
+        }
+        
+        // Store original strings to check for dev/release status
+        String originalLatest = latest.trim();
+        String originalCurrent = current.trim();
+        
+        // Clean version strings - remove common prefixes like "Alpha", "Beta", "v", etc.
+        String cleanLatest = originalLatest.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
+        String cleanCurrent = originalCurrent.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
+        
+        // Also handle case variations
+        cleanLatest = cleanLatest.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
+        cleanCurrent = cleanCurrent.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
+        
+        // Check if versions have dev/build suffixes before removing them
+        boolean latestIsDev = cleanLatest.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
+        boolean currentIsDev = cleanCurrent.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
+        
+        // Remove dev/build suffixes for base version comparison
+        String baseLatest = cleanLatest.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
+        String baseCurrent = cleanCurrent.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
+        
+        debug.info(DebugLog.Category.UPDATE, () -> "Comparing versions - Latest: '" + originalLatest + "' -> base: '" + baseLatest + "' (dev: " + latestIsDev + "), Current: '" + originalCurrent + "' -> base: '" + baseCurrent + "' (dev: " + currentIsDev + ")");
+        
+        // Simple version comparison - handles basic semantic versioning (1.0.2 vs 1.0.3)
+        try {
+            String[] latestParts = baseLatest.split("\\.");
+            String[] currentParts = baseCurrent.split("\\.");
+            
+            int maxLength = Math.max(latestParts.length, currentParts.length);
+            
+            for (int i = 0; i < maxLength; i++) {
+                // Extract numeric part from each version segment (handles "4-Dev2a" -> "4")
+                String latestPartStr = i < latestParts.length ? latestParts[i].replaceAll("[^0-9].*$", "") : "0";
+                String currentPartStr = i < currentParts.length ? currentParts[i].replaceAll("[^0-9].*$", "") : "0";
+                
+                int latestPart = latestPartStr.isEmpty() ? 0 : Integer.parseInt(latestPartStr);
+                int currentPart = currentPartStr.isEmpty() ? 0 : Integer.parseInt(currentPartStr);
+                int position = i;
+                
+                debug.info(DebugLog.Category.UPDATE, () -> "Comparing part " + position + ": " + latestPart + " vs " + currentPart);
+                
+                if (latestPart > currentPart) {
+                    debug.info(DebugLog.Category.UPDATE, () -> "Latest version is newer at position " + position);
+                    return true;
+                } else if (latestPart < currentPart) {
+                    debug.info(DebugLog.Category.UPDATE, () -> "Current version is newer at position " + position);
+                    return false; // Current version is newer, don't prompt for update
+                }
+            }
+            
+            // Base versions are equal - check if we should update from dev to release or dev to dev
+            if (baseLatest.equals(baseCurrent)) {
+                // If latest is a release version and current is a dev version (same base), prompt for update
+                if (!latestIsDev && currentIsDev) {
+                    debug.info(DebugLog.Category.UPDATE, () -> "Base versions equal - latest is release, current is dev, prompting for update");
+                    return true; // Dev build should update to release version
+                } 
+                // If both are dev versions, compare dev numbers and letters
+                else if (latestIsDev && currentIsDev) {
+                    // Extract dev version info (e.g., "Dev3b" -> number=3, letter='b')
+                    int latestDevNum = extractDevNumber(cleanLatest);
+                    int currentDevNum = extractDevNumber(cleanCurrent);
+                    char latestDevLetter = extractDevLetter(cleanLatest);
+                    char currentDevLetter = extractDevLetter(cleanCurrent);
+                    
+                    debug.info(DebugLog.Category.UPDATE, () -> "Both are dev versions - Latest: Dev" + latestDevNum + latestDevLetter + ", Current: Dev" + currentDevNum + currentDevLetter);
+                    
+                    // Compare dev numbers first
+                    if (latestDevNum > currentDevNum) {
+                        debug.info(DebugLog.Category.UPDATE, () -> "Latest dev number is higher, prompting for update");
+                        return true; // Newer dev number
+                    } else if (latestDevNum < currentDevNum) {
+                        debug.info(DebugLog.Category.UPDATE, () -> "Current dev number is higher, no update needed");
+                        return false; // Current dev number is higher
+                    } else {
+                        // Dev numbers are equal, compare letters (a < b)
+                        if (latestDevLetter > currentDevLetter) {
+                            debug.info(DebugLog.Category.UPDATE, () -> "Latest dev letter is higher, prompting for update");
+                            return true; // Newer dev letter (e.g., b > a)
+                        } else {
+                            debug.info(DebugLog.Category.UPDATE, () -> "Current dev version is same or newer, no update needed");
+                            return false; // Same or older dev letter
+                        }
+                    }
+                } else {
+                    debug.info(DebugLog.Category.UPDATE, () -> "Base versions equal - no update needed");
+                    return false; // Both are release versions, or current is release and latest is dev (shouldn't happen)
+                }
+            }
+            
+            debug.info(DebugLog.Category.UPDATE, () -> "Versions are equal");
+            return false; // Versions are equal
+        } catch (NumberFormatException e) {
+            debug.warning(DebugLog.Category.UPDATE, () -> "Version parsing failed, using string comparison: " + e.getMessage());
+            // If version parsing fails, do simple string comparison
+            boolean result = !baseLatest.equals(baseCurrent);
+            debug.info(DebugLog.Category.UPDATE, () -> "String comparison result: " + result);
+            return result;
+        }
+    }
+    
+    /**
+     * Extract the dev number from a version string (e.g., "1.1.4-Dev3b" -> 3)
+     * Returns 0 if no dev number is found
+     */
+    private static int extractDevNumber(String version) {
+        Pattern pattern = Pattern.compile("(?i)[-_]dev(\\d+)");
+        Matcher matcher = pattern.matcher(version);
+        if (matcher.find()) {
+            try {
+                return Integer.parseInt(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Extract the dev letter from a version string (e.g., "1.1.4-Dev3b" -> 'b')
+     * Returns 'a' if no dev letter is found (default)
+     */
+    private static char extractDevLetter(String version) {
+        Pattern pattern = Pattern.compile("(?i)[-_]dev\\d+([a-z])");
+        Matcher matcher = pattern.matcher(version);
+        if (matcher.find()) {
+            return matcher.group(1).toLowerCase().charAt(0);
+        }
+        return 'a'; // Default to 'a' if no letter found
+    }
+
+    /**
+     * Tell an OP'd player who just joined about an available update, after the MOTD
+     */
+    void notifyOnJoin(Player player) {
+        if (!updateAvailable || !player.isOp()) {
+            return;
+        }
+        String currentVersion = plugin.getDescription().getVersion();
+        String updateUrl = "https://www.spigotmc.org/resources/" + SPIGOT_RESOURCE_ID;
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            player.sendMessage(plugin.msg(player, MessageKey.UPDATE_AVAILABLE, "%latest%", latestVersion, "%current%", currentVersion));
+            player.sendMessage(plugin.msg(player, MessageKey.UPDATE_DOWNLOAD, "%url%", updateUrl));
+        }, 100L); // 5 seconds delay (100 ticks = 5 seconds)
+    }
+}
@@ -0,0 +1,246 @@
+package com.elytraenchants;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+
+/**
+ * Downloads a new plugin jar into Bukkit's update folder (async threads only).
+ * The jar is streamed to disk with FileChannel.transferFrom, verified and
+ * staged in a cache directory under an exclusive file lock, so server
+ * instances sharing the directory download each version once and reuse it.
+ * Every file becomes visible only through an atomic rename of a finished copy.
+ * A jar is only used when its SHA-256 matches the published checksum and its
+ * plugin.yml names the expected version, so a file planted in the cache or a
+ * download URL that serves a different version is never staged.
+ */
+final class UpdateDownloader {
+
+    private static final long CHUNK = 1L << 20;
+    private static final long MAX_SIZE = 64L << 20;
+    private static final int TIMEOUT_MILLIS = 15_000;
+
+    private final Path cacheDir;
+    private final String urlTemplate;
+    private final String checksumUrlTemplate;
+    private final Logger logger;
+
+    UpdateDownloader(Path cacheDir, String urlTemplate, String checksumUrlTemplate, Logger logger) {
+        this.cacheDir = cacheDir;
+        this.urlTemplate = urlTemplate;
+        this.checksumUrlTemplate = checksumUrlTemplate;
+        this.logger = logger;
+    }
+
+    /**
+     * Make a verified jar of a version available in the update folder under the
+     * current jar's name; Bukkit swaps it in on the next start
+     */
+    void stage(String version, Path updateFolder, String jarName) throws IOException {
+        Path staged = fetch(version);
+        Files.createDirectories(updateFolder);
+        Path target = updateFolder.resolve(jarName);
+        Path temp = updateFolder.resolve(jarName + ".part");
+        try (FileChannel in = FileChannel.open(staged, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for (long position = 0; position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+        moveAtomically(temp, target);
+    }
+
+    /**
+     * The verified jar of a version in the host cache, downloading it if no other instance has
+     */
+    Path fetch(String version) throws IOException {
+        Files.createDirectories(cacheDir);
+        String base = "ElytraEnchants-" + version.replaceAll("[^A-Za-z0-9._-]", "_");
+        Path staged = cacheDir.resolve(base + ".jar");
+        try (FileChannel lockChannel = FileChannel.open(cacheDir.resolve(base + ".lock"),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.lock()) {
+            String expected = expectedChecksum(version);
+            if (Files.isRegularFile(staged)) {
+                try {
+                    verify(staged, expected, version);
+                    logger.info("Using update " + version + " already downloaded to " + staged);
+                    return staged;
+                } catch (IOException e) {
+                    logger.warning("Discarding cached update " + staged + ": " + e.getMessage());
+                    Files.delete(staged);
+                }
+            }
+            Path part = cacheDir.resolve(base + ".jar.part");
+            download(urlTemplate.replace("%version%", version), part);
+            try {
+                verify(part, expected, version);
+            } catch (IOException e) {
+                Files.deleteIfExists(part);
+                throw e;
+            }
+            moveAtomically(part, staged);
+            return staged;
+        }
+    }
+
+    private void download(String url, Path file) throws IOException {
+        URLConnection connection = open(url);
+        long length = connection.getContentLengthLong();
+        if (length > MAX_SIZE) {
+            throw new IOException("download is " + length + " bytes, larger than " + MAX_SIZE);
+        }
+        try (InputStream stream = connection.getInputStream();
+             ReadableByteChannel in = Channels.newChannel(stream);
+             FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (true) {
+                // For a stream source transferFrom returns 0 only at end of stream
+                long transferred = out.transferFrom(in, position, CHUNK);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                if (position > MAX_SIZE) {
+                    throw new IOException("download exceeds " + MAX_SIZE + " bytes");
+                }
+            }
+            if (length >= 0 && position != length) {
+                throw new IOException("download ended after " + position + " of " + length + " bytes");
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Check the SHA-256 and that the file is the ElytraEnchants jar of the version
+     */
+    private void verify(Path jar, String expected, String version) throws IOException {
+        String actual = sha256(jar);
+        if (!expected.equals(actual)) {
+            throw new IOException("SHA-256 mismatch: expected " + expected + ", got " + actual);
+        }
+        try (JarFile file = new JarFile(jar.toFile(), true)) {
+            ZipEntry descriptor = file.getEntry("plugin.yml");
+            if (descriptor == null) {
+                throw new IOException("not a plugin jar (no plugin.yml)");
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(file.getInputStream(descriptor), StandardCharsets.UTF_8))) {
+                String name = null;
+                String jarVersion = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("name:")) {
+                        name = unquote(line.substring("name:".length()));
+                    } else if (line.startsWith("version:")) {
+                        jarVersion = unquote(line.substring("version:".length()));
+                    }
+                }
+                if (!"ElytraEnchants".equals(name)) {
+                    throw new IOException("jar is not ElytraEnchants");
+                }
+                // Download URLs without %version% (like Spiget's) serve whatever is latest
+                if (!version.equals(jarVersion)) {
+                    throw new IOException("jar is version " + jarVersion + ", not " + version);
+                }
+            }
+        }
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && (trimmed.startsWith("'") && trimmed.endsWith("'")
+                || trimmed.startsWith("\"") && trimmed.endsWith("\""))) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private String expectedChecksum(String version) throws IOException {
+        if (checksumUrlTemplate == null || checksumUrlTemplate.isEmpty()) {
+            throw new IOException("no checksum URL configured");
+        }
+        URLConnection connection = open(checksumUrlTemplate.replace("%version%", version));
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            // sha256sum format: "<hex>  <file name>"
+            String line = reader.readLine();
+            String hex = line == null ? "" : line.trim().split("\\s+")[0].toLowerCase(Locale.ROOT);
+            if (!hex.matches("[0-9a-f]{64}")) {
+                throw new IOException("checksum URL did not return a SHA-256");
+            }
+            return hex;
+        }
+    }
+
+    private static URLConnection open(String url) throws IOException {
+        URLConnection connection = URI.create(url).toURL().openConnection();
+        connection.setRequestProperty("User-Agent", "ElytraEnchants-Updater");
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        if (connection instanceof HttpURLConnection http) {
+            http.setInstanceFollowRedirects(true);
+            int status = http.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " from " + url);
+            }
+        }
+        return connection;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void moveAtomically(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.elytraenchants;
+
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Per-world enchantment policies (main thread only). Each loaded world gets a
+ * small id when it loads and its compiled policy is stored at that index.
+ * Bukkit offers no per-world slot for plugin data, so the id is found through
+ * a one-entry cache of the last world seen (almost always a hit) backed by an
+ * identity map; picking the policy is then a single array read.
+ */
+final class WorldPolicies {
+
+    private CompiledPolicy global;
+    private Map<String, CompiledPolicy> overrides = Map.of();
+    private CompiledPolicy[] byWorldId = new CompiledPolicy[8];
+    private final Map<World, Integer> worldIds = new IdentityHashMap<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private int nextId;
+
+    private World lastWorld;
+    private int lastId = -1;
+
+    /**
+     * Install a newly compiled set of policies and re-resolve loaded worlds
+     */
+    void load(CompiledPolicy global, Map<String, CompiledPolicy> overrides, Collection<World> worlds) {
+        this.global = global;
+        this.overrides = overrides;
+        for (Map.Entry<World, Integer> entry : worldIds.entrySet()) {
+            byWorldId[entry.getValue()] = resolve(entry.getKey());
+        }
+        for (World world : worlds) {
+            registerWorld(world);
+        }
+    }
+
+    void registerWorld(World world) {
+        if (worldIds.containsKey(world)) {
+            return;
+        }
+        int id = freeIds.isEmpty() ? nextId++ : freeIds.pop();
+        if (id >= byWorldId.length) {
+            byWorldId = java.util.Arrays.copyOf(byWorldId, byWorldId.length * 2);
+        }
+        byWorldId[id] = resolve(world);
+        worldIds.put(world, id);
+    }
+
+    void unregisterWorld(World world) {
+        Integer id = worldIds.remove(world);
+        if (id == null) {
+            return;
+        }
+        byWorldId[id] = null;
+        freeIds.push(id);
+        if (lastWorld == world) {
+            lastWorld = null;
+            lastId = -1;
+        }
+    }
+
+    CompiledPolicy getGlobal() {
+        return global;
+    }
+
+    /**
+     * Policy for a world, falling back to the global policy for unknown worlds
+     */
+    CompiledPolicy get(World world) {
+        if (world != lastWorld) {
+            Integer id = worldIds.get(world);
+            if (id == null) {
+                return global;
+            }
+            lastWorld = world;
+            lastId = id;
+        }
+        return byWorldId[lastId];
+    }
+
+    /**
+     * Policy for a world by name, loaded or not (trace replay); null is the global policy
+     */
+    CompiledPolicy forName(String worldName) {
+        CompiledPolicy policy = worldName == null ? null : overrides.get(worldName);
+        return policy == null ? global : policy;
+    }
+
+    private CompiledPolicy resolve(World world) {
+        CompiledPolicy policy = overrides.get(world.getName());
+        return policy == null ? global : policy;
+    }
+}
@@ -0,0 +1,218 @@
+package com.elytraenchants;
+
+import com.elytraenchants.api.ElytraState;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-player cache of the worn elytra's enchant vector and per-cause
+ * reduction (main thread only). In vanilla protection mode the reduction is
+ * the combined EPF of every armor slot, so it is cached with the item types it
+ * was read from; the damage handler only compares those types per hit and
+ * re-reads enchantments after an armor change. A worn elytra is also
+ * fingerprinted by its enchant vector and earliest rental expiry, so an
+ * elytra changed in place is re-read. Entries are dropped whenever an
+ * event may have changed the player's armor. Armor events fire before the
+ * change is applied, so a player stays dirty (read but not cached) until the next tick.
+ */
+final class WornElytraCache {
+
+    private static final EntityDamageEvent.DamageCause[] CAUSES = EntityDamageEvent.DamageCause.values();
+    private static final double[] NO_REDUCTION = new double[CAUSES.length];
+
+    /**
+     * Immutable elytra state shared with API callers
+     */
+    static final class State implements ElytraState {
+        private final boolean wearing;
+        private final long vector;
+        // Earliest rental expiry of the elytra, 0 if none
+        private final long expiry;
+        // Helmet, chestplate, leggings and boots types at read time
+        private final Material[] armorTypes;
+        private final double[] reductions;
+
+        State(boolean wearing, long vector, long expiry, Material[] armorTypes, double[] reductions) {
+            this.wearing = wearing;
+            this.vector = vector;
+            this.expiry = expiry;
+            this.armorTypes = armorTypes;
+            this.reductions = reductions;
+        }
+
+        long getVector() {
+            return vector;
+        }
+
+        /**
+         * Whether the state was read from these items: same types and, for a
+         * worn elytra, the same enchantments and rental expiry
+         */
+        boolean matches(ItemStack helmet, ItemStack chest, ItemStack legs, ItemStack boots, ToLongFunction<ItemStack> expiryOf) {
+            if (armorTypes[0] != typeOf(helmet) || armorTypes[1] != typeOf(chest)
+                    || armorTypes[2] != typeOf(legs) || armorTypes[3] != typeOf(boots)) {
+                return false;
+            }
+            return !wearing || vector == EnchantVector.of(chest.getEnchantments()) && expiry == expiryOf.applyAsLong(chest);
+        }
+
+        @Override
+        public boolean isWearingElytra() {
+            return wearing;
+        }
+
+        @Override
+        public int getLevel(Enchantment enchantment) {
+            int slot = EnchantVector.slotOf(enchantment);
+            return slot < 0 ? 0 : EnchantVector.level(vector, slot);
+        }
+
+        @Override
+        public double getReduction(EntityDamageEvent.DamageCause cause) {
+            return reductions[cause.ordinal()];
+        }
+    }
+
+    private final Plugin plugin;
+    // Called when a player's elytra is re-read; true if it changed the item
+    private final BiPredicate<Player, ItemStack> onRead;
+    // Earliest rental expiry of an elytra, part of its fingerprint
+    private final ToLongFunction<ItemStack> expiryOf;
+    private final Map<UUID, State> states = new HashMap<>();
+    private final Set<UUID> dirty = new HashSet<>();
+    private boolean vanillaProtection;
+
+    WornElytraCache(Plugin plugin, BiPredicate<Player, ItemStack> onRead, ToLongFunction<ItemStack> expiryOf) {
+        this.plugin = plugin;
+        this.onRead = onRead;
+        this.expiryOf = expiryOf;
+    }
+
+    /**
+     * Switch between vanilla EPF and elytra-only reductions; drops every entry
+     */
+    void setVanillaProtection(boolean vanillaProtection) {
+        this.vanillaProtection = vanillaProtection;
+        clear();
+    }
+
+    boolean isVanillaProtection() {
+        return vanillaProtection;
+    }
+
+    /**
+     * Current state of a player's armor, re-read only if the cached one is
+     * missing or was taken from different items
+     */
+    State get(Player player) {
+        UUID playerId = player.getUniqueId();
+        PlayerInventory inventory = player.getInventory();
+        ItemStack helmet = inventory.getHelmet();
+        ItemStack chest = inventory.getChestplate();
+        ItemStack legs = inventory.getLeggings();
+        ItemStack boots = inventory.getBoots();
+        State state = states.get(playerId);
+        if (state == null || !state.matches(helmet, chest, legs, boots, expiryOf)) {
+            // A newly worn elytra may carry expired rentals or fail verification
+            if (chest != null && chest.getType() == Material.ELYTRA && onRead.test(player, chest)) {
+                inventory.setChestplate(chest);
+            }
+            state = read(helmet, chest, legs, boots);
+            if (!dirty.contains(playerId)) {
+                states.put(playerId, state);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Current state of a player's armor without acting on it: a re-read does
+     * not expire rentals, check the signature or cache the result, so API
+     * callers never change the player's items
+     */
+    State peek(Player player) {
+        PlayerInventory inventory = player.getInventory();
+        ItemStack helmet = inventory.getHelmet();
+        ItemStack chest = inventory.getChestplate();
+        ItemStack legs = inventory.getLeggings();
+        ItemStack boots = inventory.getBoots();
+        State state = states.get(player.getUniqueId());
+        if (state != null && state.matches(helmet, chest, legs, boots, expiryOf)) {
+            return state;
+        }
+        return read(helmet, chest, legs, boots);
+    }
+
+    /**
+     * Build a state from worn items without caching it (mobs, armor stands)
+     */
+    State read(ItemStack helmet, ItemStack chest, ItemStack legs, ItemStack boots) {
+        Material[] types = {typeOf(helmet), typeOf(chest), typeOf(legs), typeOf(boots)};
+        if (types[1] != Material.ELYTRA) {
+            return new State(false, 0L, 0L, types, NO_REDUCTION);
+        }
+        long vector = EnchantVector.of(chest.getEnchantments());
+        double[] reductions;
+        if (vanillaProtection) {
+            reductions = vanillaReductions(ArmorProtection.compute(helmet, chest, legs, boots));
+        } else {
+            reductions = new double[CAUSES.length];
+            int prot = EnchantVector.level(vector, EnchantVector.PROTECTION);
+            int fire = EnchantVector.level(vector, EnchantVector.FIRE_PROTECTION);
+            int blast = EnchantVector.level(vector, EnchantVector.BLAST_PROTECTION);
+            int proj = EnchantVector.level(vector, EnchantVector.PROJECTILE_PROTECTION);
+            for (EntityDamageEvent.DamageCause cause : CAUSES) {
+                reductions[cause.ordinal()] = ElytraEnchantsPlugin.computeReduction(cause, prot, fire, blast, proj);
+            }
+        }
+        return new State(true, vector, expiryOf.applyAsLong(chest), types, reductions);
+    }
+
+    /**
+     * Per-cause reductions for combined EPF values indexed by cause ordinal
+     */
+    static double[] vanillaReductions(byte[] epf) {
+        double[] reductions = new double[CAUSES.length];
+        for (int i = 0; i < reductions.length; i++) {
+            reductions[i] = ArmorProtection.reduction(epf[i]);
+        }
+        return reductions;
+    }
+
+    /**
+     * Drop a player's state because their armor may be about to change
+     */
+    void markDirty(UUID playerId) {
+        states.remove(playerId);
+        if (dirty.isEmpty()) {
+            plugin.getServer().getScheduler().runTask(plugin, dirty::clear);
+        }
+        dirty.add(playerId);
+    }
+
+    void invalidate(UUID playerId) {
+        states.remove(playerId);
+    }
+
+    void clear() {
+        states.clear();
+        dirty.clear();
+    }
+
+    private static Material typeOf(ItemStack item) {
+        return item == null ? Material.AIR : item.getType();
+    }
+}
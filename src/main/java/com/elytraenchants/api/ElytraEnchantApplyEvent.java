@@ -0,0 +1,84 @@
+package com.elytraenchants.api;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Called before ElytraEnchants applies an enchantment to an elytra.
+ * Only fired when at least one listener is registered.
+ */
+public class ElytraEnchantApplyEvent extends Event implements Cancellable {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    /**
+     * Where the enchantment is coming from
+     */
+    public enum Source {
+        COMMAND,
+        ENCHANTING_TABLE,
+        MENU
+    }
+
+    private final Player player;
+    private final ItemStack item;
+    private final Enchantment enchantment;
+    private final Source source;
+    private int level;
+    private boolean cancelled;
+
+    public ElytraEnchantApplyEvent(Player player, ItemStack item, Enchantment enchantment, int level, Source source) {
+        this.player = player;
+        this.item = item;
+        this.enchantment = enchantment;
+        this.level = level;
+        this.source = source;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public ItemStack getItem() {
+        return item;
+    }
+
+    public Enchantment getEnchantment() {
+        return enchantment;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
@@ -0,0 +1,32 @@
+package com.elytraenchants.api;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Service registered by ElytraEnchants with Bukkit's ServicesManager.
+ * <pre>
+ * ElytraEnchantsApi api = Bukkit.getServicesManager().load(ElytraEnchantsApi.class);
+ * </pre>
+ * All methods must be called from the main server thread.
+ */
+public interface ElytraEnchantsApi {
+
+    /**
+     * Get the cached state of a player's worn elytra.
+     * The returned object is shared and immutable; it is replaced, not
+     * modified, when the player's chest slot changes. Reading it never
+     * changes the player's items.
+     */
+    ElytraState getElytraState(Player player);
+
+    /**
+     * Get the currently loaded server-wide enchantment policy
+     */
+    EnchantPolicy getPolicy();
+
+    /**
+     * Get the enchantment policy for a world, including per-world overrides
+     */
+    EnchantPolicy getPolicy(World world);
+}
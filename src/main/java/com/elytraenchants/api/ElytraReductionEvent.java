@@ -0,0 +1,75 @@
+package com.elytraenchants.api;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.entity.EntityDamageEvent;
+
+/**
+ * Called when a player's elytra is about to reduce incoming damage.
+ * Only fired when at least one listener is registered, and not for mobs
+ * enabled through the entities config list.
+ */
+public class ElytraReductionEvent extends Event implements Cancellable {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final Player player;
+    private final EntityDamageEvent.DamageCause cause;
+    private final double damage;
+    private double reduction;
+    private boolean cancelled;
+
+    public ElytraReductionEvent(Player player, EntityDamageEvent.DamageCause cause, double damage, double reduction) {
+        this.player = player;
+        this.cause = cause;
+        this.damage = damage;
+        this.reduction = reduction;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public EntityDamageEvent.DamageCause getCause() {
+        return cause;
+    }
+
+    /**
+     * Damage before the elytra reduction is applied
+     */
+    public double getDamage() {
+        return damage;
+    }
+
+    /**
+     * Fraction of damage (0.0 - 1.0) that will be removed
+     */
+    public double getReduction() {
+        return reduction;
+    }
+
+    public void setReduction(double reduction) {
+        this.reduction = Math.max(0.0, Math.min(1.0, reduction));
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
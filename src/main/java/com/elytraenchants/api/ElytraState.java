@@ -0,0 +1,28 @@
+package com.elytraenchants.api;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.event.entity.EntityDamageEvent;
+
+/**
+ * Immutable snapshot of the elytra worn by a player
+ */
+public interface ElytraState {
+
+    /**
+     * Whether the player was wearing an elytra when this state was taken
+     */
+    boolean isWearingElytra();
+
+    /**
+     * Level of an elytra enchantment, or 0 if absent.
+     * Only the enchantments ElytraEnchants acts on are tracked (protections,
+     * thorns, mending, unbreaking and curses).
+     */
+    int getLevel(Enchantment enchantment);
+
+    /**
+     * Fraction of damage (0.0 - 1.0) removed for a damage cause. In vanilla
+     * protection mode this is the combined reduction of all worn armor
+     */
+    double getReduction(EntityDamageEvent.DamageCause cause);
+}
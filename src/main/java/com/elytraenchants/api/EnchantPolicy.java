@@ -0,0 +1,30 @@
+package com.elytraenchants.api;
+
+import org.bukkit.enchantments.Enchantment;
+
+import java.util.Set;
+
+/**
+ * The compiled set of enchantments allowed on elytra, either server-wide or
+ * for one world. A new policy object is published every time the
+ * configuration is reloaded.
+ */
+public interface EnchantPolicy {
+
+    /**
+     * Whether ElytraEnchants is active at all where this policy applies
+     */
+    boolean isEnabled();
+
+    boolean isAllowed(Enchantment enchantment);
+
+    /**
+     * Unmodifiable set of allowed enchantments
+     */
+    Set<Enchantment> getAllowedEnchantments();
+
+    /**
+     * Incremented on every reload, so callers can cache derived data
+     */
+    int getVersion();
+}
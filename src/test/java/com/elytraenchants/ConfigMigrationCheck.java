@@ -0,0 +1,75 @@
+package com.elytraenchants;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Migrates a user config.yml built from the shipped one against the shipped
+ * defaults and checks that free-form sections survive: a loot weight the user
+ * added is kept, a default weight the user removed is not added back, and a
+ * world override is kept. Runs outside a server with the fuzz profile.
+ */
+public final class ConfigMigrationCheck {
+
+    private ConfigMigrationCheck() {
+    }
+
+    public static void main(String[] args) throws IOException, InvalidConfigurationException {
+        List<String> defaultLines = readDefaults();
+        YamlConfiguration defaults = new YamlConfiguration();
+        defaults.loadFromString(String.join("\n", defaultLines));
+
+        YamlConfiguration user = new YamlConfiguration();
+        user.loadFromString(String.join("\n", defaultLines));
+        user.set("config_version", defaults.getInt("config_version") - 1);
+        user.set("loot.enchantments.UNBREAKING", null);
+        user.set("loot.enchantments.PROTECTION_FIRE", 5);
+        user.set("worlds.world_the_end.enabled", false);
+
+        ConfigMigrator migrator = new ConfigMigrator(null, new DebugLog(Logger.getLogger("ConfigMigrationCheck")));
+        List<String> merged = migrator.mergeConfigs(defaultLines, user, defaults);
+        Set<String> deprecated = migrator.findDeprecatedKeys(user, defaults);
+        YamlConfiguration result = new YamlConfiguration();
+        result.loadFromString(String.join("\n", merged));
+
+        check(result.getInt("loot.enchantments.PROTECTION_FIRE", 0) == 5, "user loot weight PROTECTION_FIRE was dropped");
+        check(!result.contains("loot.enchantments.UNBREAKING"), "removed default loot weight UNBREAKING was added back");
+        check(result.getInt("loot.enchantments.THORNS", 0) == defaults.getInt("loot.enchantments.THORNS"),
+            "default loot weight THORNS changed");
+        check(!result.getBoolean("worlds.world_the_end.enabled", true), "world override was dropped");
+        check(result.getInt("loot.rolls", 0) == defaults.getInt("loot.rolls"), "loot.rolls changed");
+        check(deprecated.isEmpty(), "user keys reported as deprecated: " + deprecated);
+        System.out.println("OK: config migration keeps free-form sections");
+    }
+
+    private static List<String> readDefaults() throws IOException {
+        InputStream in = ConfigMigrationCheck.class.getResourceAsStream("/config.yml");
+        if (in == null) {
+            throw new IOException("config.yml is not on the classpath");
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static void check(boolean ok, String detail) {
+        if (!ok) {
+            throw new IllegalStateException("Config migration check failed: " + detail);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.elytraenchants;
+
+import org.bukkit.event.entity.EntityDamageEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * Differential fuzzer for the plugin's pure logic: random damage causes,
+ * enchantment vectors, armor sets and version strings are run through both
+ * the live code and {@link ReferenceModel}, and any difference fails the run
+ * with the seed and input needed to reproduce it. Damage is checked in both
+ * protection modes: legacy elytra-only reduction and vanilla EPF with the
+ * MAGIC modifier rewrite. Test sources only, so it never ships in the jar;
+ * runs outside a server:
+ *
+ *   mvn -Pfuzz verify                                          (quick run)
+ *   mvn -Pfuzz verify -Dfuzz.iterations=0 -Dfuzz.minutes=30   (long run)
+ *
+ * Anvil combinations are checked on {@link AnvilMerge}, the vector merge
+ * behind the anvil result; building the result item needs a server's
+ * ItemStack and is covered by trace replay instead.
+ */
+public final class DifferentialFuzzer {
+
+    private static final EntityDamageEvent.DamageCause[] CAUSES = EntityDamageEvent.DamageCause.values();
+    private static final AnvilMerge.Input[] ANVIL_INPUTS = AnvilMerge.Input.values();
+    private static final String[] VERSION_PREFIXES = {"", "", "", "v", "V", "version ", "Version", "Alpha ", "beta", "Release "};
+    private static final String[] VERSION_SUFFIXES = {"", "", "", "-Dev", "-dev", "_dev", "-SNAPSHOT", "-rc", "-build", "-pre", "-Beta", "-x"};
+
+    private final SplittableRandom random;
+    private final DebugLog quiet = new DebugLog(Logger.getLogger("DifferentialFuzzer"));
+    private long cases;
+
+    private DifferentialFuzzer(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Arguments: iterations (0 = run for the given minutes), seed, minutes
+     */
+    public static void main(String[] args) {
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 100_000L;
+        long seed = args.length > 1 && !args[1].isEmpty() ? Long.parseLong(args[1]) : System.nanoTime();
+        long minutes = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+        long deadline = iterations > 0 ? Long.MAX_VALUE : System.nanoTime() + minutes * 60_000_000_000L;
+
+        System.out.println("Differential fuzzing with seed " + seed
+            + (iterations > 0 ? ", " + iterations + " iterations" : ", " + minutes + " minutes"));
+        DifferentialFuzzer fuzzer = new DifferentialFuzzer(seed);
+        long start = System.nanoTime();
+        for (long i = 0; iterations <= 0 || i < iterations; i++) {
+            if ((i & 0xFFF) == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            fuzzer.damageCase(seed);
+            fuzzer.epfCase(seed);
+            fuzzer.vectorCase(seed);
+            fuzzer.anvilCase(seed);
+            fuzzer.versionCase(seed);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000L;
+        System.out.println("OK: " + fuzzer.cases + " cases in " + millis + " ms, no differences");
+    }
+
+    private void damageCase(long seed) {
+        EntityDamageEvent.DamageCause cause = CAUSES[random.nextInt(CAUSES.length)];
+        long vector = randomVector();
+        int prot = EnchantVector.level(vector, EnchantVector.PROTECTION);
+        int fire = EnchantVector.level(vector, EnchantVector.FIRE_PROTECTION);
+        int blast = EnchantVector.level(vector, EnchantVector.BLAST_PROTECTION);
+        int proj = EnchantVector.level(vector, EnchantVector.PROJECTILE_PROTECTION);
+        double expected = ReferenceModel.reduction(cause, prot, fire, blast, proj);
+        double actual = EffectFormulas.DEFAULT.reduction(cause, prot, fire, blast, proj);
+        check(Double.compare(expected, actual) == 0, seed, "reduction(" + cause + ", " + prot + ", "
+            + fire + ", " + blast + ", " + proj + ") = " + actual + ", reference " + expected);
+
+        int thorns = EnchantVector.level(vector, EnchantVector.THORNS);
+        check(Double.compare(ReferenceModel.thornsChance(thorns), EffectFormulas.DEFAULT.thornsChance(thorns)) == 0,
+            seed, "thornsChance(" + thorns + ")");
+    }
+
+    private void epfCase(long seed) {
+        EntityDamageEvent.DamageCause cause = CAUSES[random.nextInt(CAUSES.length)];
+        // Helmet, elytra, leggings, boots; mostly vanilla levels, sometimes far past the cap
+        int[][] levels = new int[4][5];
+        int[] sums = new int[5];
+        for (int[] piece : levels) {
+            for (int e = 0; e < piece.length; e++) {
+                piece[e] = random.nextInt(3) == 0 ? 0 : random.nextInt(8) == 0 ? random.nextInt(256) : random.nextInt(5);
+                sums[e] += piece[e];
+            }
+        }
+        double expected = ReferenceModel.epfReduction(cause, levels);
+        double[] reductions = WornElytraCache.vanillaReductions(
+            ArmorProtection.fromLevels(sums[0], sums[1], sums[2], sums[3], sums[4]));
+        double actual = reductions[cause.ordinal()];
+        check(Double.compare(expected, actual) == 0, seed, "EPF reduction(" + cause + ", "
+            + java.util.Arrays.deepToString(levels) + ") = " + actual + ", reference " + expected);
+
+        double afterArmor = random.nextInt(10) == 0 ? 0.0 : random.nextDouble() * 1000.0;
+        double mitigated = DamageListener.reduce(afterArmor, actual);
+        double expectedMagic = ReferenceModel.magicModifier(afterArmor, expected);
+        double magic = DamageListener.magicModifier(afterArmor, mitigated);
+        // Rounding differs between the two forms, so allow a few ulps
+        check(Math.abs(expectedMagic - magic) <= Math.ulp(afterArmor) * 4, seed, "MAGIC modifier(" + afterArmor
+            + ", " + actual + ") = " + magic + ", reference " + expectedMagic);
+        check(mitigated >= 0.0 && mitigated <= afterArmor, seed, "mitigated " + afterArmor + " to " + mitigated);
+    }
+
+    private void vectorCase(long seed) {
+        int[] levels = new int[EnchantVector.SLOTS];
+        long vector = 0L;
+        int updates = 1 + random.nextInt(12);
+        for (int u = 0; u < updates; u++) {
+            int slot = random.nextInt(EnchantVector.SLOTS);
+            // Include out-of-range levels to cover clamping
+            int level = random.nextInt(8) == 0 ? random.nextInt(-300, 300) : random.nextInt(6);
+            levels = ReferenceModel.withLevel(levels, slot, level);
+            vector = EnchantVector.with(vector, slot, level);
+        }
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            check(levels[slot] == EnchantVector.level(vector, slot), seed,
+                "EnchantVector slot " + slot + " = " + EnchantVector.level(vector, slot) + ", reference " + levels[slot]);
+        }
+    }
+
+    private void anvilCase(long seed) {
+        AnvilMerge.Input input = ANVIL_INPUTS[random.nextInt(ANVIL_INPUTS.length)];
+        long first = sparseVector();
+        long second = sparseVector();
+        int allowedSlots = random.nextInt(1 << EnchantVector.SLOTS);
+        Set<Integer> allowed = new HashSet<>();
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            if ((allowedSlots & 1 << slot) != 0) {
+                allowed.add(slot);
+            }
+        }
+        Map<Integer, Integer> expected = ReferenceModel.anvil(input.name(), levels(first), levels(second), allowed);
+        long actual = AnvilMerge.merge(input, first, second, allowedSlots);
+        String detail = "merge(" + input + ", " + Long.toHexString(first) + ", " + Long.toHexString(second) + ", "
+            + Integer.toBinaryString(allowedSlots) + ") = " + Long.toHexString(actual) + ", reference " + expected;
+        check((expected == null) == (actual == AnvilMerge.UNCHANGED), seed, detail);
+        if (expected != null) {
+            check(expected.equals(levels(actual)), seed, detail);
+        }
+    }
+
+    private void versionCase(long seed) {
+        String latest = randomVersion();
+        String current = random.nextInt(4) == 0 ? latest : randomVersion();
+        boolean expected = ReferenceModel.isNewerVersion(latest, current);
+        boolean actual = UpdateChecker.isNewerVersion(latest, current, quiet);
+        check(expected == actual, seed, "isNewerVersion(\"" + latest + "\", \"" + current + "\") = "
+            + actual + ", reference " + expected);
+    }
+
+    private long randomVector() {
+        long vector = 0L;
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            // Mostly vanilla levels, sometimes anything the 7-bit slot holds
+            int level = random.nextInt(4) == 0 ? random.nextInt(EnchantVector.MAX_LEVEL + 1) : random.nextInt(6);
+            vector = EnchantVector.with(vector, slot, level);
+        }
+        return vector;
+    }
+
+    /**
+     * Random vector with most slots empty, so items without enchantments come up
+     */
+    private long sparseVector() {
+        long vector = 0L;
+        if (random.nextInt(4) == 0) {
+            return vector;
+        }
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            if (random.nextInt(3) == 0) {
+                int level = random.nextInt(8) == 0 ? random.nextInt(EnchantVector.MAX_LEVEL + 1) : random.nextInt(6);
+                vector = EnchantVector.with(vector, slot, level);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Non-zero levels of a vector by slot, as an item's enchantment map holds them
+     */
+    private static Map<Integer, Integer> levels(long vector) {
+        Map<Integer, Integer> levels = new HashMap<>();
+        for (int slot = 0; slot < EnchantVector.SLOTS; slot++) {
+            int level = EnchantVector.level(vector, slot);
+            if (level > 0) {
+                levels.put(slot, level);
+            }
+        }
+        return levels;
+    }
+
+    private String randomVersion() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION_PREFIXES[random.nextInt(VERSION_PREFIXES.length)]);
+        int parts = 1 + random.nextInt(4);
+        for (int p = 0; p < parts; p++) {
+            if (p > 0) {
+                sb.append('.');
+            }
+            switch (random.nextInt(10)) {
+                case 0:
+                    // Longer than an int - exercises the string comparison fallback
+                    sb.append(random.nextLong(1_000_000_000_000L));
+                    break;
+                case 1:
+                    sb.append(random.nextInt(10)).append((char) ('a' + random.nextInt(26)));
+                    break;
+                case 2:
+                    break;
+                default:
+                    sb.append(random.nextInt(12));
+            }
+        }
+        String suffix = VERSION_SUFFIXES[random.nextInt(VERSION_SUFFIXES.length)];
+        sb.append(suffix);
+        if (!suffix.isEmpty() && random.nextBoolean()) {
+            sb.append(random.nextInt(5));
+            if (random.nextBoolean()) {
+                sb.append((char) ('a' + random.nextInt(4)));
+            }
+        }
+        if (random.nextInt(20) == 0) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private void check(boolean same, long seed, String detail) {
+        cases++;
+        if (!same) {
+            throw new IllegalStateException("Difference after " + cases + " cases (seed " + seed + "): " + detail);
+        }
+    }
+}
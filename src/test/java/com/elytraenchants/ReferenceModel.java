@@ -0,0 +1,218 @@
+package com.elytraenchants;
+
+import org.bukkit.event.entity.EntityDamageEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Frozen copies of the plugin's pure decision logic, as it behaved before any
+ * performance work. {@link DifferentialFuzzer} checks the live code against
+ * these. Do not change them when optimising - only when behaviour is meant to change.
+ */
+final class ReferenceModel {
+
+    private ReferenceModel() {
+    }
+
+    /**
+     * Elytra damage reduction, written out per enchantment as in 1.0.4
+     */
+    static double reduction(EntityDamageEvent.DamageCause cause, int prot, int fireProt, int blastProt, int projProt) {
+        double reduction = 0.0;
+        if (prot > 0) {
+            reduction += 0.04 * prot;
+        }
+        if (fireProt > 0) {
+            if (cause == EntityDamageEvent.DamageCause.FIRE
+                    || cause == EntityDamageEvent.DamageCause.FIRE_TICK
+                    || cause == EntityDamageEvent.DamageCause.LAVA) {
+                reduction += 0.08 * fireProt;
+            }
+        }
+        if (blastProt > 0) {
+            if (cause == EntityDamageEvent.DamageCause.BLOCK_EXPLOSION
+                    || cause == EntityDamageEvent.DamageCause.ENTITY_EXPLOSION) {
+                reduction += 0.08 * blastProt;
+            }
+        }
+        if (projProt > 0) {
+            if (cause == EntityDamageEvent.DamageCause.PROJECTILE) {
+                reduction += 0.08 * projProt;
+            }
+        }
+        if (reduction > 0.8) {
+            reduction = 0.8;
+        }
+        return reduction;
+    }
+
+    /**
+     * Vanilla EPF reduction over all worn armor, elytra included, as Minecraft
+     * computes it: per piece and enchantment, summed, capped at 20, 4% a point.
+     * levels[piece][enchantment] holds Protection, Fire, Blast, Projectile
+     * Protection and Feather Falling.
+     */
+    static double epfReduction(EntityDamageEvent.DamageCause cause, int[][] levels) {
+        if (cause == EntityDamageEvent.DamageCause.VOID
+                || cause == EntityDamageEvent.DamageCause.STARVATION
+                || cause == EntityDamageEvent.DamageCause.SUICIDE) {
+            return 0.0;
+        }
+        int epf = 0;
+        for (int[] piece : levels) {
+            epf += piece[0];
+            if (cause == EntityDamageEvent.DamageCause.FIRE
+                    || cause == EntityDamageEvent.DamageCause.FIRE_TICK
+                    || cause == EntityDamageEvent.DamageCause.LAVA
+                    || cause == EntityDamageEvent.DamageCause.HOT_FLOOR) {
+                epf += piece[1] * 2;
+            }
+            if (cause == EntityDamageEvent.DamageCause.BLOCK_EXPLOSION
+                    || cause == EntityDamageEvent.DamageCause.ENTITY_EXPLOSION) {
+                epf += piece[2] * 2;
+            }
+            if (cause == EntityDamageEvent.DamageCause.PROJECTILE) {
+                epf += piece[3] * 2;
+            }
+            if (cause == EntityDamageEvent.DamageCause.FALL) {
+                epf += piece[4] * 3;
+            }
+        }
+        if (epf > 20) {
+            epf = 20;
+        }
+        return epf / 25.0;
+    }
+
+    /**
+     * The MAGIC modifier vanilla would apply to damage left after armor
+     */
+    static double magicModifier(double afterArmor, double reduction) {
+        return -afterArmor * reduction;
+    }
+
+    static double thornsChance(int thorns) {
+        return 0.15 + 0.15 * thorns;
+    }
+
+    /**
+     * Anvil enchantment merge as in 1.0.4's onPrepareAnvil, with enchantments
+     * as EnchantVector slots and item maps holding only non-zero levels.
+     * secondKind is ELYTRA, BOOK or CHESTPLATE; returns null where the
+     * result was left alone
+     */
+    static Map<Integer, Integer> anvil(String secondKind, Map<Integer, Integer> first, Map<Integer, Integer> second,
+                                       Set<Integer> allowedEnchantments) {
+        // Elytra + Elytra: merge all enchantments, keep highest level
+        if (secondKind.equals("ELYTRA")) {
+            Map<Integer, Integer> result = new HashMap<>(first);
+            boolean changed = false;
+            Map<Integer, Integer> all = new HashMap<>();
+            all.putAll(first);
+            for (Map.Entry<Integer, Integer> entry : second.entrySet()) {
+                all.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+            for (Map.Entry<Integer, Integer> entry : all.entrySet()) {
+                result.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+            return changed ? result : null;
+        }
+        // Book or chestplate to Elytra
+        Map<Integer, Integer> result = new HashMap<>(first);
+        boolean changed = false;
+        for (Map.Entry<Integer, Integer> entry : second.entrySet()) {
+            if (allowedEnchantments.contains(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+        }
+        return changed ? result : null;
+    }
+
+    /**
+     * Enchantment levels as a plain array, the model for {@link EnchantVector}
+     */
+    static int[] withLevel(int[] levels, int slot, int level) {
+        int[] copy = levels.clone();
+        copy[slot] = Math.max(0, Math.min(EnchantVector.MAX_LEVEL, level));
+        return copy;
+    }
+
+    /**
+     * Update check version comparison as in 1.0.4, without logging
+     */
+    static boolean isNewerVersion(String latest, String current) {
+        if (latest == null || current == null) {
+            return false;
+        }
+        String originalLatest = latest.trim();
+        String originalCurrent = current.trim();
+
+        String cleanLatest = originalLatest.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
+        String cleanCurrent = originalCurrent.replaceAll("^(v|version|alpha|beta|release)\\s*", "").trim();
+        cleanLatest = cleanLatest.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
+        cleanCurrent = cleanCurrent.replaceAll("^(Alpha|Beta|Release|V|Version)\\s*", "").trim();
+
+        boolean latestIsDev = cleanLatest.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
+        boolean currentIsDev = cleanCurrent.matches(".*[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$");
+
+        String baseLatest = cleanLatest.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
+        String baseCurrent = cleanCurrent.replaceAll("[-_](?i)(dev|snapshot|alpha|beta|rc|build|pre)[\\d\\w]*$", "").trim();
+
+        try {
+            String[] latestParts = baseLatest.split("\\.");
+            String[] currentParts = baseCurrent.split("\\.");
+            int maxLength = Math.max(latestParts.length, currentParts.length);
+            for (int i = 0; i < maxLength; i++) {
+                String latestPartStr = i < latestParts.length ? latestParts[i].replaceAll("[^0-9].*$", "") : "0";
+                String currentPartStr = i < currentParts.length ? currentParts[i].replaceAll("[^0-9].*$", "") : "0";
+                int latestPart = latestPartStr.isEmpty() ? 0 : Integer.parseInt(latestPartStr);
+                int currentPart = currentPartStr.isEmpty() ? 0 : Integer.parseInt(currentPartStr);
+                if (latestPart > currentPart) {
+                    return true;
+                } else if (latestPart < currentPart) {
+                    return false;
+                }
+            }
+            if (baseLatest.equals(baseCurrent)) {
+                if (!latestIsDev && currentIsDev) {
+                    return true;
+                } else if (latestIsDev && currentIsDev) {
+                    int latestDevNum = devNumber(cleanLatest);
+                    int currentDevNum = devNumber(cleanCurrent);
+                    if (latestDevNum != currentDevNum) {
+                        return latestDevNum > currentDevNum;
+                    }
+                    return devLetter(cleanLatest) > devLetter(cleanCurrent);
+                }
+                return false;
+            }
+            return false;
+        } catch (NumberFormatException e) {
+            return !baseLatest.equals(baseCurrent);
+        }
+    }
+
+    private static int devNumber(String version) {
+        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("(?i)[-_]dev(\\d+)").matcher(version);
+        if (matcher.find()) {
+            try {
+                return Integer.parseInt(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static char devLetter(String version) {
+        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("(?i)[-_]dev\\d+([a-z])").matcher(version);
+        if (matcher.find()) {
+            return matcher.group(1).toLowerCase().charAt(0);
+        }
+        return 'a';
+    }
+}